@@ -0,0 +1,99 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import com.hierynomus.smbj.share.InMemoryDiskShare;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.Selectors;
+import org.apache.commons.vfs2.impl.DefaultFileSystemManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recursive upload of a local folder tree into the share with {@link FileObject#copyFrom}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CopyBenchmark {
+
+    @Param({"1000"})
+    public long roundTripMicros;
+
+    @Param({"125000000"})
+    public long bytesPerSecond;
+
+    @Param({"10"})
+    public int folders;
+
+    @Param({"20"})
+    public int filesPerFolder;
+
+    @Param({"262144"})
+    public int fileSize;
+
+    @Param({"1", "4"})
+    public int copyParallelism;
+
+    private Path localTree;
+    private DefaultFileSystemManager manager;
+    private FileObject source;
+    private FileObject target;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        localTree = Files.createTempDirectory("smb-copy-benchmark");
+        byte[] content = new byte[fileSize];
+        for (int f = 0; f < folders; f++) {
+            Path folder = Files.createDirectories(localTree.resolve("folder-" + f));
+            for (int i = 0; i < filesPerFolder; i++) {
+                try (OutputStream out = Files.newOutputStream(folder.resolve("file-" + i + ".dat"))) {
+                    out.write(content);
+                }
+            }
+        }
+
+        InMemoryDiskShare share = new InMemoryDiskShare("share", new SimulatedLink(Duration.ofNanos(roundTripMicros * 1_000), bytesPerSecond));
+        manager = InMemorySmbFileProvider.createManager(share);
+        FileSystemOptions options = new FileSystemOptions();
+        SmbFileSystemConfigBuilder.getInstance().setCopyParallelism(options, copyParallelism);
+        source = manager.resolveFile(localTree.toUri().toString());
+        target = manager.resolveFile("smb://localhost/share/target", options);
+    }
+
+    @Setup(Level.Invocation)
+    public void clearTarget() throws Exception {
+        target.deleteAll();
+        target.refresh();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        source.deleteAll();
+        manager.close();
+    }
+
+    @Benchmark
+    public void copyFrom() throws Exception {
+        target.copyFrom(source, Selectors.SELECT_ALL);
+    }
+}
@@ -0,0 +1,75 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import com.hierynomus.smbj.share.InMemoryDiskShare;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.impl.DefaultFileSystemManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Listing a large folder, resolving every child and enumerating it as a stream.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ListingBenchmark {
+
+    @Param({"1000"})
+    public long roundTripMicros;
+
+    @Param({"10000"})
+    public int children;
+
+    private DefaultFileSystemManager manager;
+    private SmbFileObject folder;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        InMemoryDiskShare share = new InMemoryDiskShare("share", new SimulatedLink(Duration.ofNanos(roundTripMicros * 1_000), 0));
+        byte[] content = new byte[16];
+        for (int i = 0; i < children; i++) {
+            share.createFile("inbox\\file-" + i + ".dat", content);
+        }
+        manager = InMemorySmbFileProvider.createManager(share);
+        folder = (SmbFileObject) manager.resolveFile("smb://localhost/share/inbox");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        manager.close();
+    }
+
+    @Benchmark
+    public int getChildren() throws Exception {
+        folder.refresh();
+        return folder.getChildren().length;
+    }
+
+    @Benchmark
+    public int directoryStream() throws Exception {
+        int count = 0;
+        try (SmbDirectoryStream entries = folder.openDirectoryStream()) {
+            for (SmbDirectoryEntry ignored : entries) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
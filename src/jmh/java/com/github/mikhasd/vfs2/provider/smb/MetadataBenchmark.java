@@ -0,0 +1,83 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import com.hierynomus.smbj.share.InMemoryDiskShare;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.impl.DefaultFileSystemManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Existence, type, size and last modified time lookups of known and missing files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MetadataBenchmark {
+
+    private static final int FILES = 1_000;
+
+    @Param({"1000"})
+    public long roundTripMicros;
+
+    @Param({"0", "60"})
+    public int metadataCacheSeconds;
+
+    private DefaultFileSystemManager manager;
+    private FileObject[] files;
+    private FileObject missing;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        InMemoryDiskShare share = new InMemoryDiskShare("share", new SimulatedLink(Duration.ofNanos(roundTripMicros * 1_000), 0));
+        byte[] content = new byte[1024];
+        for (int i = 0; i < FILES; i++) {
+            share.createFile("data\\file-" + i + ".dat", content);
+        }
+        manager = InMemorySmbFileProvider.createManager(share);
+
+        FileSystemOptions options = new FileSystemOptions();
+        SmbFileSystemConfigBuilder.getInstance().setMetadataCacheTimeToLive(options, Duration.ofSeconds(metadataCacheSeconds));
+        files = new FileObject[FILES];
+        for (int i = 0; i < FILES; i++) {
+            files[i] = manager.resolveFile("smb://localhost/share/data/file-" + i + ".dat", options);
+        }
+        missing = manager.resolveFile("smb://localhost/share/data/missing.dat", options);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        manager.close();
+    }
+
+    @Benchmark
+    public long existingFile() throws Exception {
+        FileObject file = files[next++ % FILES];
+        file.refresh();
+        return file.exists() && file.isFile() ? file.getContent().getSize() + file.getContent().getLastModifiedTime() : -1;
+    }
+
+    @Benchmark
+    public boolean missingFile() throws Exception {
+        missing.refresh();
+        return missing.exists();
+    }
+}
@@ -0,0 +1,93 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import com.hierynomus.smbj.share.InMemoryDiskShare;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.impl.DefaultFileSystemManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of reading and writing a whole file through the content streams.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SequentialIoBenchmark {
+
+    @Param({"1000"})
+    public long roundTripMicros;
+
+    @Param({"125000000"})
+    public long bytesPerSecond;
+
+    @Param({"67108864"})
+    public int fileSize;
+
+    @Param({"4"})
+    public int requestsInFlight;
+
+    private DefaultFileSystemManager manager;
+    private FileObject source;
+    private FileObject target;
+    private final byte[] buffer = new byte[64 * 1024];
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        InMemoryDiskShare share = new InMemoryDiskShare("share", new SimulatedLink(Duration.ofNanos(roundTripMicros * 1_000), bytesPerSecond));
+        share.createFile("source.bin", new byte[fileSize]);
+        manager = InMemorySmbFileProvider.createManager(share);
+
+        FileSystemOptions options = new FileSystemOptions();
+        SmbFileSystemConfigBuilder configBuilder = SmbFileSystemConfigBuilder.getInstance();
+        configBuilder.setReadAheadWindow(options, requestsInFlight);
+        configBuilder.setMaxWritesInFlight(options, requestsInFlight);
+        source = manager.resolveFile("smb://localhost/share/source.bin", options);
+        target = manager.resolveFile("smb://localhost/share/target.bin", options);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        manager.close();
+    }
+
+    @Benchmark
+    public long read() throws Exception {
+        long total = 0;
+        try (InputStream in = source.getContent().getInputStream()) {
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                total += read;
+            }
+        }
+        return total;
+    }
+
+    @Benchmark
+    public void write() throws Exception {
+        try (OutputStream out = target.getContent().getOutputStream()) {
+            for (long written = 0; written < fileSize; written += buffer.length) {
+                out.write(buffer, 0, (int) Math.min(buffer.length, fileSize - written));
+            }
+        }
+    }
+}
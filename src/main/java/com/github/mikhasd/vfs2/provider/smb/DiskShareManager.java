@@ -4,29 +4,186 @@ import com.hierynomus.smbj.session.Session;
 import com.hierynomus.smbj.share.DiskShare;
 
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class DiskShareManager {
 
     private final SessionFactory sessionFactory;
     private final String shareName;
-    private DiskShare diskShare;
-
+    private final SmbMetricsListener metrics;
+    private final SmbBackoff reconnectBackoff;
+    private final Stripe[] stripes;
+    private final AtomicInteger nextStripe = new AtomicInteger();
 
     public DiskShareManager(SessionFactory sessionFactory, String shareName) {
+        this(sessionFactory, shareName, 1);
+    }
+
+    /**
+     * @param stripes number of independently connected {@link DiskShare}s, each over its own session and connection,
+     *                calls to {@link #getDiskShare()} are distributed among them round-robin.
+     */
+    public DiskShareManager(SessionFactory sessionFactory, String shareName, int stripes) {
+        this(sessionFactory, shareName, stripes, SmbMetricsListener.NONE);
+    }
+
+    public DiskShareManager(SessionFactory sessionFactory, String shareName, int stripes, SmbMetricsListener metrics) {
+        this(sessionFactory, shareName, stripes, metrics, new SmbBackoff(
+                SmbFileSystemConfigBuilder.DEFAULT_RECONNECT_BACKOFF,
+                SmbFileSystemConfigBuilder.DEFAULT_RECONNECT_MAX_BACKOFF
+        ));
+    }
+
+    /**
+     * @param reconnectBackoff delay after a failed connection attempt during which callers fail with that same error
+     *                         instead of connecting again.
+     */
+    DiskShareManager(SessionFactory sessionFactory, String shareName, int stripes, SmbMetricsListener metrics, SmbBackoff reconnectBackoff) {
         this.sessionFactory = sessionFactory;
         this.shareName = shareName;
+        this.metrics = metrics;
+        this.reconnectBackoff = reconnectBackoff;
+        this.stripes = new Stripe[Math.max(1, stripes)];
+        for (int i = 0; i < this.stripes.length; i++) {
+            this.stripes[i] = new Stripe(i);
+        }
     }
 
     public DiskShare getDiskShare() throws SmbProviderException {
-        if(!isConnected()){
-            Session session = this.sessionFactory.create();
-            this.diskShare = (DiskShare) session.connectShare(this.shareName);
+        return nextStripe().getDiskShare();
+    }
+
+    private Stripe nextStripe() {
+        if (stripes.length == 1) {
+            return stripes[0];
         }
+        return stripes[Math.floorMod(nextStripe.getAndIncrement(), stripes.length)];
+    }
 
-        return this.diskShare;
+    public void close() {
+        for (Stripe stripe : stripes) {
+            stripe.close();
+        }
     }
 
-    private boolean isConnected() {
-        return Objects.nonNull(this.diskShare) && this.diskShare.isConnected();
+    /**
+     * One connected share. Connecting is single flight: the first caller finding the share disconnected performs the
+     * handshake while the others wait for its outcome, and after a failure every caller gets that failure, wrapped in
+     * an exception of its own, until the backoff delay has passed.
+     */
+    private class Stripe {
+        private final int index;
+        private Session session;
+        private volatile DiskShare diskShare;
+        private CompletableFuture<DiskShare> connecting;
+        private boolean everConnected;
+        private int failedAttempts;
+        private Throwable lastFailure;
+        private long retryAt;
+
+        private Stripe(int index) {
+            this.index = index;
+        }
+
+        private DiskShare getDiskShare() throws SmbProviderException {
+            DiskShare current = this.diskShare;
+            if (isConnected(current)) {
+                return current;
+            }
+            final CompletableFuture<DiskShare> attempt;
+            final boolean leader;
+            synchronized (this) {
+                if (isConnected(this.diskShare)) {
+                    return this.diskShare;
+                }
+                leader = Objects.isNull(connecting);
+                if (leader) {
+                    if (failedAttempts > 0 && System.currentTimeMillis() < retryAt) {
+                        throw failed(lastFailure);
+                    }
+                    releaseSession();
+                    connecting = new CompletableFuture<>();
+                }
+                attempt = connecting;
+            }
+            if (leader) {
+                connect(attempt);
+            }
+            return await(attempt);
+        }
+
+        private void connect(CompletableFuture<DiskShare> attempt) {
+            try {
+                Session connected = sessionFactory.create(index);
+                final DiskShare share;
+                try {
+                    share = (DiskShare) connected.connectShare(shareName);
+                } catch (RuntimeException e) {
+                    sessionFactory.release(index, connected);
+                    throw e;
+                }
+                final boolean reconnect;
+                synchronized (this) {
+                    this.session = connected;
+                    this.diskShare = share;
+                    this.connecting = null;
+                    this.failedAttempts = 0;
+                    this.lastFailure = null;
+                    reconnect = everConnected;
+                    everConnected = true;
+                }
+                if (reconnect) {
+                    metrics.reconnected(sessionFactory.getKey().getHostname(), shareName);
+                }
+                attempt.complete(share);
+            } catch (Throwable e) {
+                synchronized (this) {
+                    this.connecting = null;
+                    this.failedAttempts++;
+                    this.lastFailure = e;
+                    this.retryAt = System.currentTimeMillis() + reconnectBackoff.delayMillis(failedAttempts);
+                }
+                attempt.completeExceptionally(e);
+                if (e instanceof Error) {
+                    throw (Error) e;
+                }
+            }
+        }
+
+        private DiskShare await(CompletableFuture<DiskShare> attempt) throws SmbProviderException {
+            try {
+                return attempt.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw SmbProviderException.connectionInterrupted(sessionFactory.getKey().getHostname(), e);
+            } catch (ExecutionException e) {
+                throw failed(e.getCause());
+            }
+        }
+
+        /**
+         * @return a new exception for the calling thread, the failure of the attempt is shared by every caller.
+         */
+        private SmbProviderException failed(Throwable failure) {
+            return SmbProviderException.connectionError(sessionFactory.getKey().getHostname(), failure);
+        }
+
+        private boolean isConnected(DiskShare diskShare) {
+            return Objects.nonNull(diskShare) && diskShare.isConnected();
+        }
+
+        private void releaseSession() {
+            if (Objects.nonNull(this.session)) {
+                sessionFactory.release(index, this.session);
+                this.session = null;
+                this.diskShare = null;
+            }
+        }
+
+        private synchronized void close() {
+            releaseSession();
+        }
     }
 }
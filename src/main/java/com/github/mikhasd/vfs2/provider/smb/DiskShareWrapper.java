@@ -3,56 +3,180 @@ package com.github.mikhasd.vfs2.provider.smb;
 import com.hierynomus.msdtyp.AccessMask;
 import com.hierynomus.msfscc.FileAttributes;
 import com.hierynomus.msfscc.fileinformation.FileAllInformation;
-import com.hierynomus.msfscc.fileinformation.FileIdBothDirectoryInformation;
 import com.hierynomus.msfscc.fileinformation.FileInformation;
 import com.hierynomus.mssmb2.SMB2CreateDisposition;
 import com.hierynomus.mssmb2.SMB2CreateOptions;
 import com.hierynomus.mssmb2.SMB2ShareAccess;
+import com.hierynomus.protocol.transport.TransportException;
+import com.hierynomus.smbj.common.SMBRuntimeException;
 import com.hierynomus.smbj.share.Directory;
+import com.hierynomus.smbj.share.DiskEntry;
 import com.hierynomus.smbj.share.DiskShare;
 import com.hierynomus.smbj.share.File;
 
-import java.util.List;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Objects;
 import java.util.Set;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
+import static com.hierynomus.msdtyp.AccessMask.DELETE;
+import static com.hierynomus.msdtyp.AccessMask.FILE_EXECUTE;
+import static com.hierynomus.msdtyp.AccessMask.FILE_LIST_DIRECTORY;
+import static com.hierynomus.msdtyp.AccessMask.FILE_READ_ATTRIBUTES;
+import static com.hierynomus.msdtyp.AccessMask.FILE_READ_DATA;
+import static com.hierynomus.msdtyp.AccessMask.FILE_READ_EA;
+import static com.hierynomus.msdtyp.AccessMask.GENERIC_EXECUTE;
+import static com.hierynomus.msdtyp.AccessMask.GENERIC_READ;
+import static com.hierynomus.msdtyp.AccessMask.READ_CONTROL;
+import static com.hierynomus.msdtyp.AccessMask.SYNCHRONIZE;
+import static com.hierynomus.msfscc.FileAttributes.FILE_ATTRIBUTE_NORMAL;
+import static com.hierynomus.mssmb2.SMB2CreateDisposition.FILE_OPEN;
+import static com.hierynomus.mssmb2.SMB2CreateOptions.FILE_DELETE_ON_CLOSE;
+import static com.hierynomus.mssmb2.SMB2CreateOptions.FILE_DIRECTORY_FILE;
+import static com.hierynomus.mssmb2.SMB2CreateOptions.FILE_NON_DIRECTORY_FILE;
+
 class DiskShareWrapper {
 
+    private static final Set<AccessMask> READ_ONLY_ACCESS = Collections.unmodifiableSet(EnumSet.of(
+            GENERIC_READ, GENERIC_EXECUTE, FILE_READ_DATA, FILE_LIST_DIRECTORY, FILE_READ_ATTRIBUTES, FILE_READ_EA,
+            FILE_EXECUTE, READ_CONTROL, SYNCHRONIZE
+    ));
+
     private final DiskShareManager diskShareManager;
+    private final SmbMetricsListener metrics;
+    private final int retries;
+    private final SmbBackoff retryBackoff;
 
     public DiskShareWrapper(DiskShareManager diskShareManager) {
+        this(diskShareManager, SmbMetricsListener.NONE);
+    }
+
+    public DiskShareWrapper(DiskShareManager diskShareManager, SmbMetricsListener metrics) {
+        this(diskShareManager, metrics, SmbFileSystemConfigBuilder.DEFAULT_IDEMPOTENT_RETRIES, new SmbBackoff(
+                SmbFileSystemConfigBuilder.DEFAULT_RECONNECT_BACKOFF,
+                SmbFileSystemConfigBuilder.DEFAULT_RECONNECT_MAX_BACKOFF
+        ));
+    }
+
+    /**
+     * @param retries number of times idempotent requests are repeated after the connection failed, waiting
+     *                {@code retryBackoff} in between.
+     */
+    DiskShareWrapper(DiskShareManager diskShareManager, SmbMetricsListener metrics, int retries, SmbBackoff retryBackoff) {
         this.diskShareManager = diskShareManager;
+        this.metrics = metrics;
+        this.retries = Math.max(0, retries);
+        this.retryBackoff = retryBackoff;
+    }
+
+    private <R> R applyWithDiskShare(SmbOperation operation, Function<DiskShare ,R> diskShareCallback) throws SmbProviderException {
+        // a reconnect and its backoff are not part of the request latency
+        final DiskShare diskShare = this.diskShareManager.getDiskShare();
+        final long start = System.nanoTime();
+        try {
+            R result = diskShareCallback.apply(diskShare);
+            operation.succeeded(metrics, start);
+            return result;
+        } catch (RuntimeException e) {
+            operation.failed(metrics, start, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Same as {@link #applyWithDiskShare(SmbOperation, Function)} for requests that can be repeated without changing
+     * their outcome: when the connection fails the request is sent again, over a new connection once the share manager
+     * has reconnected. Errors returned by the server and any other failure are final.
+     */
+    private <R> R retryWithDiskShare(SmbOperation operation, Function<DiskShare ,R> diskShareCallback) throws SmbProviderException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return applyWithDiskShare(operation, diskShareCallback);
+            } catch (SmbProviderException | RuntimeException e) {
+                if (attempt > retries || !isConnectionFailure(e) || !pause(attempt)) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private <A,R> R retryWithDiskShare(SmbOperation operation, BiFunction<DiskShare ,A ,R> diskShareCallback, A argument) throws SmbProviderException {
+        return retryWithDiskShare(operation, diskShare -> diskShareCallback.apply(diskShare, argument));
+    }
+
+    /**
+     * @return whether {@code failure} means the share could not be reached, as opposed to a failed request. The provider
+     * exceptions can only come from {@link DiskShareManager#getDiskShare()}.
+     */
+    private static boolean isConnectionFailure(Exception failure) {
+        if (failure instanceof SmbProviderException) {
+            return true;
+        }
+        if (!(failure instanceof SMBRuntimeException)) {
+            return false;
+        }
+        for (Throwable cause = failure.getCause(); Objects.nonNull(cause); cause = cause.getCause()) {
+            if (cause instanceof TransportException) {
+                return true;
+            }
+        }
+        return false;
     }
 
-    private <A,R> R applyWithDiskShare(BiFunction<DiskShare ,A ,R> diskShareCallback, A argument) throws SmbProviderException {
-        DiskShare diskShare = this.diskShareManager.getDiskShare();
-        return diskShareCallback.apply(diskShare, argument);
+    private boolean pause(int attempt) {
+        try {
+            Thread.sleep(retryBackoff.delayMillis(attempt));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
     }
 
-    private <R> R applyWithDiskShare(Function<DiskShare ,R> diskShareCallback) throws SmbProviderException {
-        DiskShare diskShare = this.diskShareManager.getDiskShare();
-        return diskShareCallback.apply(diskShare);
+    private static boolean isIdempotentOpen(Set<AccessMask> accessMask, SMB2CreateDisposition createDisposition, Set<SMB2CreateOptions> createOptions) {
+        return createDisposition == FILE_OPEN
+                && READ_ONLY_ACCESS.containsAll(accessMask)
+                && (createOptions == null || !createOptions.contains(FILE_DELETE_ON_CLOSE));
     }
 
-    private <A> void acceptWithDiskShare(BiConsumer<DiskShare, A> diskShareCallback, A argument) throws SmbProviderException {
-        DiskShare diskShare = this.diskShareManager.getDiskShare();
-        diskShareCallback.accept(diskShare, argument);
+    private <A> void acceptWithDiskShare(SmbOperation operation, BiConsumer<DiskShare, A> diskShareCallback, A argument) throws SmbProviderException {
+        acceptWithDiskShare(operation, diskShare -> diskShareCallback.accept(diskShare, argument));
     }
 
-    private void acceptWithDiskShare(Consumer<DiskShare> diskShareCallback) throws SmbProviderException {
-        DiskShare diskShare = this.diskShareManager.getDiskShare();
-        diskShareCallback.accept(diskShare);
+    private void acceptWithDiskShare(SmbOperation operation, Consumer<DiskShare> diskShareCallback) throws SmbProviderException {
+        applyWithDiskShare(operation, diskShare -> {
+            diskShareCallback.accept(diskShare);
+            return null;
+        });
+    }
+
+    SmbMetricsListener getMetrics() {
+        return metrics;
     }
 
     protected void mkdir(String path) throws SmbProviderException {
-        acceptWithDiskShare(DiskShare::mkdir, path);
+        acceptWithDiskShare(SmbOperation.MKDIR, DiskShare::mkdir, path);
     }
 
+    /**
+     * Same as {@link DiskShare#getFileInformation(String)} without waiting for the CLOSE response, so a lookup blocks
+     * for the CREATE and QUERY_INFO round trips only, or for the failed CREATE alone when {@code path} does not exist.
+     */
     protected FileAllInformation getFileInformation(String path) throws SmbProviderException {
-        return applyWithDiskShare(DiskShare::getFileInformation, path);
+        return retryWithDiskShare(SmbOperation.GET_FILE_INFORMATION, DiskShareWrapper::queryFileInformation, path);
+    }
+
+    private static FileAllInformation queryFileInformation(DiskShare diskShare, String path) {
+        DiskEntry entry = diskShare.open(path, EnumSet.of(FILE_READ_ATTRIBUTES), null, SMB2ShareAccess.ALL, FILE_OPEN, null);
+        try {
+            return entry.getFileInformation();
+        } finally {
+            entry.closeNoWait();
+        }
     }
 
     protected Directory openDirectory(String path,
@@ -61,14 +185,18 @@ class DiskShareWrapper {
                                       Set<SMB2ShareAccess> shareAccesses,
                                       SMB2CreateDisposition createDisposition,
                                       Set<SMB2CreateOptions> createOptions) throws SmbProviderException {
-        return applyWithDiskShare(share -> share.openDirectory(
+        Function<DiskShare, Directory> open = share -> share.openDirectory(
                 path,
                 accessMask,
                 attributes,
                 shareAccesses,
                 createDisposition,
                 createOptions
-        ));
+        );
+        if (isIdempotentOpen(accessMask, createDisposition, createOptions)) {
+            return retryWithDiskShare(SmbOperation.OPEN_DIRECTORY, open);
+        }
+        return applyWithDiskShare(SmbOperation.OPEN_DIRECTORY, open);
     }
 
     protected File openFile(String path,
@@ -77,33 +205,49 @@ class DiskShareWrapper {
                             Set<SMB2ShareAccess> shareAccesses,
                             SMB2CreateDisposition createDisposition,
                             Set<SMB2CreateOptions> createOptions) throws SmbProviderException {
-        return applyWithDiskShare(share -> share.openFile(
+        Function<DiskShare, File> open = share -> share.openFile(
                 path,
                 accessMask,
                 attributes,
                 shareAccesses,
                 createDisposition,
                 createOptions
-        ));
-    }
-
-    protected List<FileIdBothDirectoryInformation> list(String path) throws SmbProviderException {
-        return applyWithDiskShare(DiskShare::list, path);
+        );
+        if (isIdempotentOpen(accessMask, createDisposition, createOptions)) {
+            return retryWithDiskShare(SmbOperation.OPEN_FILE, open);
+        }
+        return applyWithDiskShare(SmbOperation.OPEN_FILE, open);
     }
 
+    /**
+     * Deletes a file by opening it with FILE_DELETE_ON_CLOSE, one round trip less than {@link DiskShare#rm(String)}
+     * which marks the open handle for deletion with a separate SET_INFO. Fails with STATUS_FILE_IS_A_DIRECTORY when
+     * {@code path} is a folder.
+     */
     protected void rm(String path) throws SmbProviderException {
-        acceptWithDiskShare(DiskShare::rm, path);
+        acceptWithDiskShare(SmbOperation.RM, (share, file) -> deleteOnClose(share, file, FILE_NON_DIRECTORY_FILE), path);
     }
 
-    protected void rmdir(String path, boolean recursive) throws SmbProviderException {
-        acceptWithDiskShare(share -> share.rmdir(path, recursive));
+    private static void deleteOnClose(DiskShare diskShare, String path, SMB2CreateOptions type) {
+        diskShare.open(
+                path,
+                EnumSet.of(DELETE),
+                EnumSet.of(FILE_ATTRIBUTE_NORMAL),
+                SMB2ShareAccess.ALL,
+                FILE_OPEN,
+                EnumSet.of(type, FILE_DELETE_ON_CLOSE)
+        ).close();
     }
 
-    protected boolean fileExists(String path) throws SmbProviderException {
-        return applyWithDiskShare(DiskShare::fileExists, path);
+    /**
+     * Deletes an empty folder the same way {@link #rm(String)} deletes a file. Fails with STATUS_DIRECTORY_NOT_EMPTY
+     * when {@code path} still has children.
+     */
+    protected void rmdir(String path) throws SmbProviderException {
+        acceptWithDiskShare(SmbOperation.RMDIR, (share, folder) -> deleteOnClose(share, folder, FILE_DIRECTORY_FILE), path);
     }
 
-    protected boolean folderExists(String path) throws SmbProviderException {
-        return applyWithDiskShare(DiskShare::folderExists, path);
+    void close() {
+        this.diskShareManager.close();
     }
 }
@@ -1,29 +1,39 @@
 package com.github.mikhasd.vfs2.provider.smb;
 
 import com.hierynomus.smbj.SMBClient;
-import com.hierynomus.smbj.SmbConfig;
 import com.hierynomus.smbj.auth.AuthenticationContext;
 import com.hierynomus.smbj.connection.Connection;
 import com.hierynomus.smbj.session.Session;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.Objects;
 
 public class SessionFactory {
 
-    private final static SmbConfig CONFIG = SmbConfig.builder()
-            .withDfsEnabled(true)
-            .withMultiProtocolNegotiate(true)
-            .build();
-
-    private final String hostname;
+    private final SmbSessionPool sessionPool;
+    private final SmbSessionPool.Key key;
     private final AuthenticationContext authenticationContext;
-    private final SMBClient smbClient;
+    private final int maxSessions;
+    private final Duration idleTimeout;
+    private final Duration keepAliveInterval;
 
-    public SessionFactory(String hostname, String domain, String username, String password) {
-        this.hostname = hostname;
+    SessionFactory(SmbSessionPool sessionPool,
+                   String hostname,
+                   int port,
+                   String domain,
+                   String username,
+                   String password,
+                   SmbTransportConfig transportConfig,
+                   int maxSessions,
+                   Duration idleTimeout,
+                   Duration keepAliveInterval) {
+        this.sessionPool = sessionPool;
+        this.key = new SmbSessionPool.Key(hostname, port, domain, username, password, transportConfig);
         this.authenticationContext = createAuthenticationContext(domain, username, password);
-        this.smbClient = new SMBClient(CONFIG);
+        this.maxSessions = Math.max(1, maxSessions);
+        this.idleTimeout = idleTimeout;
+        this.keepAliveInterval = keepAliveInterval;
     }
 
     private AuthenticationContext createAuthenticationContext(String domain, String username, String password) {
@@ -33,11 +43,43 @@ public class SessionFactory {
     }
 
     public Session create() throws SmbProviderException {
+        return create(0);
+    }
+
+    Session create(int stripe) throws SmbProviderException {
+        return this.sessionPool.acquire(this, stripe);
+    }
+
+    public void release(Session session) {
+        release(0, session);
+    }
+
+    void release(int stripe, Session session) {
+        this.sessionPool.release(this, stripe, session);
+    }
+
+    Session connect(SMBClient smbClient) throws SmbProviderException {
         try {
-            Connection connection = this.smbClient.connect(this.hostname);
+            Connection connection = smbClient.connect(this.key.getHostname(), this.key.getPort());
             return connection.authenticate(this.authenticationContext);
         } catch (IOException e) {
-            throw SmbProviderException.connectionError(hostname, e);
+            throw SmbProviderException.connectionError(this.key.toString(), e);
         }
     }
+
+    SmbSessionPool.Key getKey() {
+        return key;
+    }
+
+    int getMaxSessions() {
+        return maxSessions;
+    }
+
+    Duration getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    Duration getKeepAliveInterval() {
+        return keepAliveInterval;
+    }
 }
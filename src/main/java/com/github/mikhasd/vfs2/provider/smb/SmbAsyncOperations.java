@@ -0,0 +1,197 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import com.hierynomus.smbj.share.DiskEntry;
+import com.hierynomus.smbj.share.File;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.FileType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non blocking facade over the operations of a {@link SmbFileSystem}, obtained with
+ * {@link SmbFileSystem#getAsyncOperations()}.
+ * <p>
+ * Paths are relative to the root of the file system and separated by {@code /}. Every call returns immediately, the
+ * requests run on the shared I/O threads with at most the configured number in progress, further calls queue without
+ * blocking the caller. The operations share the file system caches and invalidate them like file objects do, file
+ * objects already resolved keep their own state until refreshed.
+ */
+public class SmbAsyncOperations {
+
+    private final SmbFileSystem fileSystem;
+    private final SmbTemplate smbTemplate;
+    private final int maxConcurrency;
+    private final Queue<Runnable> waiting = new ArrayDeque<>();
+    private int running;
+
+    SmbAsyncOperations(SmbFileSystem fileSystem, SmbTemplate smbTemplate, int maxConcurrency) {
+        this.fileSystem = fileSystem;
+        this.smbTemplate = smbTemplate;
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+    }
+
+    /**
+     * @return name, type, size and last modified time of {@code path}, empty when it does not exist.
+     */
+    public CompletableFuture<Optional<SmbDirectoryEntry>> stat(String path) {
+        final String smbPath = toSmbPath(path);
+        return submit(() -> {
+            SmbFileInfo info = fileSystem.getFileInfo(smbPath, smbTemplate::loadFileInfo);
+            String name = smbPath.substring(smbPath.lastIndexOf('\\') + 1);
+            return Optional.ofNullable(info).map(found -> new SmbDirectoryEntry(name, found));
+        });
+    }
+
+    /**
+     * @return the children of folder {@code path}, in listing order.
+     */
+    public CompletableFuture<List<SmbDirectoryEntry>> list(String path) {
+        final String smbPath = toSmbPath(path);
+        return submit(() -> {
+            Map<String, SmbFileInfo> children = fileSystem.getChildren(smbPath, smbTemplate::loadChildrenInfo);
+            List<SmbDirectoryEntry> entries = new ArrayList<>(children.size());
+            children.forEach((name, info) -> entries.add(new SmbDirectoryEntry(name, info)));
+            return entries;
+        });
+    }
+
+    /**
+     * @return the whole content of file {@code path}.
+     */
+    public CompletableFuture<byte[]> readAll(String path) {
+        final String smbPath = toSmbPath(path);
+        return submit(() -> {
+            SmbFileSystemConfigBuilder configBuilder = SmbFileSystemConfigBuilder.getInstance();
+            FileSystemOptions options = fileSystem.getFileSystemOptions();
+            SmbHandleCache.Lease lease = fileSystem.leaseFileForRead(smbPath, smbTemplate::openFileForSharedRead);
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            try (InputStream in = new SmbInputStream(lease.getFile(), lease, -1, configBuilder.getReadChunkSize(options), configBuilder.getReadAheadWindow(options), smbTemplate.getMetrics())) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) >= 0) {
+                    content.write(buffer, 0, read);
+                }
+            } finally {
+                lease.close();
+            }
+            return content.toByteArray();
+        });
+    }
+
+    /**
+     * Replaces the content of file {@code path} with {@code content}, creating the file when it does not exist.
+     */
+    public CompletableFuture<Void> writeAll(String path, byte[] content) {
+        final String smbPath = toSmbPath(path);
+        return submit(() -> {
+            SmbFileSystemConfigBuilder configBuilder = SmbFileSystemConfigBuilder.getInstance();
+            FileSystemOptions options = fileSystem.getFileSystemOptions();
+            fileSystem.invalidate(smbPath);
+            File file = smbTemplate.openFileForOverwrite(smbPath);
+            try (OutputStream out = new SmbOutputStream(file, false, configBuilder.getWriteChunkSize(options), configBuilder.getMaxWritesInFlight(options), smbTemplate.getMetrics())) {
+                out.write(content);
+            } finally {
+                fileSystem.invalidate(smbPath);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Deletes file or folder {@code path}, folders with everything below them. Completes with the report of the
+     * delete, failures of individual entries do not fail the returned future.
+     */
+    public CompletableFuture<SmbDeleteReport> delete(String path) {
+        final String smbPath = toSmbPath(path);
+        return submit(() -> {
+            int parallelism = SmbFileSystemConfigBuilder.getInstance().getDeleteParallelism(fileSystem.getFileSystemOptions());
+            return new SmbTreeDeleter(smbTemplate, fileSystem, parallelism).delete(smbPath);
+        });
+    }
+
+    /**
+     * Renames file or folder {@code path} to {@code newPath}, which must be on the same share.
+     */
+    public CompletableFuture<Void> rename(String path, String newPath) {
+        final String smbPath = toSmbPath(path);
+        final String newSmbPath = toSmbPath(newPath);
+        return submit(() -> {
+            SmbFileInfo info = fileSystem.getFileInfo(smbPath, smbTemplate::loadFileInfo);
+            if (Objects.isNull(info)) {
+                throw SmbProviderException.renameError(smbPath, newSmbPath, null);
+            }
+            fileSystem.invalidateTree(smbPath);
+            DiskEntry entry = info.getFileType() == FileType.FOLDER
+                    ? smbTemplate.openFolderForWrite(smbPath)
+                    : smbTemplate.openFileForWrite(smbPath);
+            try {
+                smbTemplate.rename(entry, newSmbPath);
+            } catch (RuntimeException e) {
+                throw SmbProviderException.renameError(smbPath, newSmbPath, e);
+            } finally {
+                entry.close();
+                fileSystem.invalidateTree(smbPath);
+                fileSystem.invalidateTree(newSmbPath);
+            }
+            return null;
+        });
+    }
+
+    private static String toSmbPath(String path) {
+        String smbPath = path.replace('/', '\\');
+        int start = 0;
+        while (start < smbPath.length() && smbPath.charAt(start) == '\\') {
+            start++;
+        }
+        int end = smbPath.length();
+        while (end > start && smbPath.charAt(end - 1) == '\\') {
+            end--;
+        }
+        return smbPath.substring(start, end);
+    }
+
+    private <T> CompletableFuture<T> submit(Callable<T> operation) {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        final Runnable task = () -> {
+            try {
+                result.complete(operation.call());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            } finally {
+                startNext();
+            }
+        };
+        synchronized (waiting) {
+            if (running >= maxConcurrency) {
+                waiting.add(task);
+                return result;
+            }
+            running++;
+        }
+        SmbExecutors.io().execute(task);
+        return result;
+    }
+
+    private void startNext() {
+        Runnable next;
+        synchronized (waiting) {
+            next = waiting.poll();
+            if (Objects.isNull(next)) {
+                running--;
+                return;
+            }
+        }
+        SmbExecutors.io().execute(next);
+    }
+}
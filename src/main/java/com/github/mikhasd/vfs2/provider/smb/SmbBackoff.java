@@ -0,0 +1,34 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff with jitter, used between reconnection attempts and between retries of idempotent requests.
+ * <p>
+ * The delay before attempt {@code n} is drawn between half and all of {@code initial * 2^(n-1)}, capped at
+ * {@code max}, so clients disconnected at the same moment do not come back at the same moment.
+ */
+final class SmbBackoff {
+
+    private final long initialMillis;
+    private final long maxMillis;
+
+    SmbBackoff(Duration initial, Duration max) {
+        this.initialMillis = Math.max(1L, initial.toMillis());
+        this.maxMillis = Math.max(this.initialMillis, max.toMillis());
+    }
+
+    /**
+     * @param attempt number of attempts that failed so far, at least one.
+     */
+    long delayMillis(int attempt) {
+        long ceiling = initialMillis;
+        for (int i = 1; i < attempt && ceiling < maxMillis; i++) {
+            ceiling <<= 1;
+        }
+        ceiling = Math.min(ceiling, maxMillis);
+        long floor = ceiling / 2;
+        return floor + ThreadLocalRandom.current().nextLong(ceiling - floor + 1);
+    }
+}
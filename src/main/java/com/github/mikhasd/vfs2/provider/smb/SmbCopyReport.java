@@ -0,0 +1,58 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import org.apache.commons.vfs2.FileName;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Outcome of a recursive copy into an SMB share.
+ */
+public class SmbCopyReport {
+
+    private final AtomicInteger foldersCreated = new AtomicInteger();
+    private final AtomicInteger filesCopied = new AtomicInteger();
+    private final AtomicLong bytesCopied = new AtomicLong();
+    private final Map<FileName, Exception> failures = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    void folderCreated() {
+        foldersCreated.incrementAndGet();
+    }
+
+    void fileCopied(long size) {
+        filesCopied.incrementAndGet();
+        bytesCopied.addAndGet(size);
+    }
+
+    void failed(FileName source, Exception cause) {
+        failures.put(source, cause);
+    }
+
+    public int getFoldersCreated() {
+        return foldersCreated.get();
+    }
+
+    public int getFilesCopied() {
+        return filesCopied.get();
+    }
+
+    public long getBytesCopied() {
+        return bytesCopied.get();
+    }
+
+    /**
+     * @return the source files that could not be copied and the reason, in the order they failed.
+     */
+    public Map<FileName, Exception> getFailures() {
+        synchronized (failures) {
+            return Collections.unmodifiableMap(new LinkedHashMap<>(failures));
+        }
+    }
+
+    public boolean hasFailures() {
+        return !failures.isEmpty();
+    }
+}
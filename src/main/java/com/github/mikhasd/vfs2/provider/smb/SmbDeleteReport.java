@@ -0,0 +1,50 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Outcome of a recursive delete on an SMB share.
+ */
+public class SmbDeleteReport {
+
+    private final AtomicInteger filesDeleted = new AtomicInteger();
+    private final AtomicInteger foldersDeleted = new AtomicInteger();
+    private final Map<String, Exception> failures = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    void fileDeleted() {
+        filesDeleted.incrementAndGet();
+    }
+
+    void folderDeleted() {
+        foldersDeleted.incrementAndGet();
+    }
+
+    void failed(String path, Exception cause) {
+        failures.put(path.replace('\\', '/'), cause);
+    }
+
+    public int getFilesDeleted() {
+        return filesDeleted.get();
+    }
+
+    public int getFoldersDeleted() {
+        return foldersDeleted.get();
+    }
+
+    /**
+     * @return the paths, relative to the file system root, that could not be listed or deleted and the reason, in the
+     * order they failed. Folders left in place only because something below them failed are not repeated here.
+     */
+    public Map<String, Exception> getFailures() {
+        synchronized (failures) {
+            return Collections.unmodifiableMap(new LinkedHashMap<>(failures));
+        }
+    }
+
+    public boolean hasFailures() {
+        return !failures.isEmpty();
+    }
+}
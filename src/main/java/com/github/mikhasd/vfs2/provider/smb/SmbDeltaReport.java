@@ -0,0 +1,47 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Outcome of {@link SmbFileObject#deltaUploadFrom(java.nio.file.Path)}.
+ */
+public class SmbDeltaReport {
+
+    private final AtomicInteger blocks = new AtomicInteger();
+    private final AtomicInteger blocksWritten = new AtomicInteger();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+
+    void blockCompared(long read) {
+        blocks.incrementAndGet();
+        bytesRead.addAndGet(read);
+    }
+
+    void blockWritten(long written) {
+        blocksWritten.incrementAndGet();
+        bytesWritten.addAndGet(written);
+    }
+
+    /**
+     * @return the number of blocks of the source.
+     */
+    public int getBlocks() {
+        return blocks.get();
+    }
+
+    /**
+     * @return the number of blocks that differed from the remote file and were written.
+     */
+    public int getBlocksWritten() {
+        return blocksWritten.get();
+    }
+
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+}
@@ -0,0 +1,99 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import com.hierynomus.smbj.share.File;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Brings a remote file in line with a local one by writing only the blocks that differ.
+ * <p>
+ * Source and remote file are split into blocks at the same offsets. Every block the remote file has is read, several
+ * concurrently, and compared with the mapped local block, blocks that differ or lie past the remote end are written
+ * at their offset. The remote file is truncated or extended to the size of the source last. SMB offers no server side
+ * checksums, so the comparison costs a read of the remote file, in exchange only changed bytes are written.
+ */
+class SmbDeltaUploader {
+
+    private final File file;
+    private final int blockSize;
+    private final int parallelism;
+    private final SmbMetricsListener metrics;
+
+    SmbDeltaUploader(File file, int blockSize, int parallelism, SmbMetricsListener metrics) {
+        this.file = file;
+        this.blockSize = Math.max(1, blockSize);
+        this.parallelism = Math.max(1, parallelism);
+        this.metrics = metrics;
+    }
+
+    SmbDeltaReport upload(FileChannel source) throws IOException, InterruptedException {
+        final SmbDeltaReport report = new SmbDeltaReport();
+        final long size = source.size();
+        final long remoteSize = file.getFileInformation().getStandardInformation().getEndOfFile();
+        final List<Long> offsets = new ArrayList<>();
+        for (long offset = 0; offset < size; offset += blockSize) {
+            offsets.add(offset);
+        }
+
+        Map<Long, Exception> failures = SmbExecutors.forEach(offsets, parallelism, offset -> {
+            int length = (int) Math.min(blockSize, size - offset);
+            ByteBuffer local = source.map(FileChannel.MapMode.READ_ONLY, offset, length);
+            int remoteLength = (int) Math.max(0, Math.min(length, remoteSize - offset));
+            byte[] remote = new byte[remoteLength];
+            readFully(remote, offset);
+            report.blockCompared(remoteLength);
+            if (remoteLength < length || !ByteBuffer.wrap(remote).equals(local)) {
+                write(local, offset);
+                report.blockWritten(length);
+            }
+        });
+        if (!failures.isEmpty()) {
+            Exception first = failures.values().iterator().next();
+            IOException failure = first instanceof IOException ? (IOException) first : new IOException(first);
+            failures.values().stream().filter(other -> other != first).forEach(failure::addSuppressed);
+            throw failure;
+        }
+        if (remoteSize != size) {
+            file.setLength(size);
+        }
+        return report;
+    }
+
+    private void readFully(byte[] buffer, long offset) throws IOException {
+        int total = 0;
+        while (total < buffer.length) {
+            final long start = System.nanoTime();
+            final int read;
+            try {
+                read = file.read(buffer, offset + total, total, buffer.length - total);
+            } catch (RuntimeException e) {
+                SmbOperation.READ.failed(metrics, start, e);
+                throw e;
+            }
+            SmbOperation.READ.succeeded(metrics, start);
+            if (read <= 0) {
+                throw new IOException("Unexpected end of file at offset " + (offset + total));
+            }
+            metrics.bytesRead(read);
+            total += read;
+        }
+    }
+
+    private void write(ByteBuffer block, long offset) {
+        final long start = System.nanoTime();
+        final int length = block.remaining();
+        try {
+            file.write(new SmbFileTransfer.MappedChunkProvider(block, offset));
+        } catch (RuntimeException e) {
+            SmbOperation.WRITE.failed(metrics, start, e);
+            throw e;
+        }
+        SmbOperation.WRITE.succeeded(metrics, start);
+        metrics.bytesWritten(length);
+    }
+}
@@ -0,0 +1,42 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import org.apache.commons.vfs2.FileType;
+
+/**
+ * Name and basic metadata of a folder child, as returned by the server in a directory listing.
+ */
+public final class SmbDirectoryEntry {
+
+    private final String name;
+    private final SmbFileInfo info;
+
+    SmbDirectoryEntry(String name, SmbFileInfo info) {
+        this.name = name;
+        this.info = info;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public FileType getType() {
+        return info.getFileType();
+    }
+
+    public long getSize() {
+        return info.getContentSize();
+    }
+
+    public long getLastModifiedTime() {
+        return info.getLastModifiedTime();
+    }
+
+    SmbFileInfo getInfo() {
+        return info;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
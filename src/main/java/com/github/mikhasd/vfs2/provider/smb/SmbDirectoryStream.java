@@ -0,0 +1,121 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import com.hierynomus.msfscc.fileinformation.FileIdBothDirectoryInformation;
+import com.hierynomus.smbj.share.Directory;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazily enumerates the children of a folder over an open directory handle.
+ * <p>
+ * Entries are produced as each QUERY_DIRECTORY response arrives, so memory use does not depend on the folder size and
+ * the first entries are available before the listing completes. Each response is reported to the metrics listener as
+ * a {@link SmbOperation#QUERY_DIRECTORY}. The stream can be iterated once and must be closed to release the handle.
+ */
+public class SmbDirectoryStream implements Iterable<SmbDirectoryEntry>, Closeable {
+
+    private final Directory directory;
+    private final SmbMetricsListener metrics;
+    private boolean iterated;
+    private boolean closed;
+
+    SmbDirectoryStream(Directory directory, SmbMetricsListener metrics) {
+        this.directory = directory;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Iterator<SmbDirectoryEntry> iterator() {
+        if (closed) {
+            throw new IllegalStateException("Directory stream closed");
+        }
+        if (iterated) {
+            throw new IllegalStateException("Directory stream can only be iterated once");
+        }
+        iterated = true;
+        // smbj requests the first page right away
+        final long start = System.nanoTime();
+        final Iterator<FileIdBothDirectoryInformation> infos;
+        try {
+            infos = directory.iterator();
+        } catch (RuntimeException e) {
+            SmbOperation.QUERY_DIRECTORY.failed(metrics, start, e);
+            throw e;
+        }
+        SmbOperation.QUERY_DIRECTORY.succeeded(metrics, start);
+        return new EntryIterator(infos);
+    }
+
+    /**
+     * @return the entries as a sequential stream, closing it closes this directory stream.
+     */
+    public Stream<SmbDirectoryEntry> stream() {
+        Spliterator<SmbDirectoryEntry> spliterator = Spliterators.spliteratorUnknownSize(iterator(), Spliterator.NONNULL | Spliterator.DISTINCT);
+        return StreamSupport.stream(spliterator, false).onClose(this::close);
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            directory.closeSilently();
+        }
+    }
+
+    private final class EntryIterator implements Iterator<SmbDirectoryEntry> {
+        private final Iterator<FileIdBothDirectoryInformation> infos;
+        private SmbDirectoryEntry next;
+
+        private EntryIterator(Iterator<FileIdBothDirectoryInformation> infos) {
+            this.infos = infos;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (Objects.isNull(next) && !closed && infos.hasNext()) {
+                FileIdBothDirectoryInformation info = nextInfo();
+                String name = info.getFileName();
+                if (!SmbTemplate.isSelfOrParent(name)) {
+                    next = new SmbDirectoryEntry(name, SmbFileInfo.from(info));
+                }
+            }
+            return Objects.nonNull(next);
+        }
+
+        /**
+         * smbj requests the next page while handing out the last entry of the current one, the entry with no next
+         * offset, so that call is the one timed.
+         */
+        private FileIdBothDirectoryInformation nextInfo() {
+            final long start = System.nanoTime();
+            final FileIdBothDirectoryInformation info;
+            try {
+                info = infos.next();
+            } catch (RuntimeException e) {
+                SmbOperation.QUERY_DIRECTORY.failed(metrics, start, e);
+                throw e;
+            }
+            if (info.getNextOffset() == 0) {
+                SmbOperation.QUERY_DIRECTORY.succeeded(metrics, start);
+            }
+            return info;
+        }
+
+        @Override
+        public SmbDirectoryEntry next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            SmbDirectoryEntry entry = next;
+            next = null;
+            return entry;
+        }
+    }
+}
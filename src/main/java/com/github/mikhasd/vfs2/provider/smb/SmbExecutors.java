@@ -0,0 +1,198 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared daemon threads used to keep several blocking smbj requests in flight at once.
+ */
+final class SmbExecutors {
+
+    static final int READ_AHEAD_THREADS = Math.max(16, 4 * Runtime.getRuntime().availableProcessors());
+
+    interface Task<T> {
+        void run(T item) throws Exception;
+    }
+
+    private SmbExecutors() {
+    }
+
+    /**
+     * Runs {@code task} for every item with at most {@code parallelism} items in progress at once, one of them on the
+     * calling thread. Every item is attempted even when others fail. When the calling thread is interrupted the items
+     * not started yet are dropped and the items in progress are waited for before the interruption is thrown.
+     *
+     * @return the failures by item, in the order they happened.
+     */
+    static <T> Map<T, Exception> forEach(Collection<T> items, int parallelism, Task<T> task) throws InterruptedException {
+        final Queue<T> queue = new ConcurrentLinkedQueue<>(items);
+        final Map<T, Exception> failures = Collections.synchronizedMap(new LinkedHashMap<>());
+        final Runnable worker = () -> {
+            T item;
+            while (!Thread.currentThread().isInterrupted() && (item = queue.poll()) != null) {
+                try {
+                    task.run(item);
+                } catch (Exception e) {
+                    failures.put(item, e);
+                }
+            }
+        };
+
+        final int workers = Math.max(1, Math.min(parallelism, items.size()));
+        final CountDownLatch helpersDone = new CountDownLatch(workers - 1);
+        final List<Helper> helpers = new ArrayList<>(workers - 1);
+        for (int i = 1; i < workers; i++) {
+            helpers.add(new Helper(worker, helpersDone));
+        }
+        worker.run();
+        try {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            for (Helper helper : helpers) {
+                helper.future.get();
+            }
+        } catch (InterruptedException e) {
+            queue.clear();
+            for (Helper helper : helpers) {
+                helper.cancel();
+            }
+            awaitUninterruptibly(helpersDone);
+            throw e;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        return failures;
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static ExecutorService io() {
+        return IoHolder.EXECUTOR;
+    }
+
+    /**
+     * Pool of at most {@link #READ_AHEAD_THREADS} daemon threads for the READ requests sent ahead of a reader. Every
+     * open stream keeps a window of them in flight, the bound keeps many concurrent streams from starting a thread per
+     * request. Requests beyond it wait in line.
+     */
+    static ExecutorService readAhead() {
+        return ReadAheadHolder.EXECUTOR;
+    }
+
+    /**
+     * Creates a fork/join pool of {@code parallelism} daemon threads for walking folder trees, to be shut down by its
+     * owner.
+     */
+    static ForkJoinPool newTraversalPool(int parallelism) {
+        return new ForkJoinPool(Math.max(1, parallelism), pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("smb-traversal-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    /**
+     * Single daemon thread for periodic housekeeping, such as closing idle file handles.
+     */
+    static ScheduledExecutorService scheduler() {
+        return SchedulerHolder.EXECUTOR;
+    }
+
+    static ThreadFactory daemonThreadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Worker of {@link #forEach} running on the shared pool, which counts down {@code done} once it ran or was kept from
+     * starting.
+     */
+    private static final class Helper {
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final CountDownLatch done;
+        private final Future<?> future;
+
+        private Helper(Runnable worker, CountDownLatch done) {
+            this.done = done;
+            this.future = io().submit(() -> {
+                if (claimed.compareAndSet(false, true)) {
+                    try {
+                        worker.run();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+        }
+
+        /**
+         * Keeps the helper from starting or interrupts it, so it stops once its current item is done.
+         */
+        private void cancel() {
+            if (claimed.compareAndSet(false, true)) {
+                future.cancel(false);
+                done.countDown();
+            } else {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private static final class IoHolder {
+        private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(daemonThreadFactory("smb-io"));
+    }
+
+    private static final class ReadAheadHolder {
+        private static final ExecutorService EXECUTOR;
+
+        static {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(READ_AHEAD_THREADS, READ_AHEAD_THREADS, 60L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), daemonThreadFactory("smb-read-ahead"));
+            executor.allowCoreThreadTimeOut(true);
+            EXECUTOR = executor;
+        }
+    }
+
+    private static final class SchedulerHolder {
+        private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("smb-scheduler"));
+    }
+}
@@ -0,0 +1,138 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Bounded cache keyed by SMB path, used per file system for file metadata and directory listings.
+ * <p>
+ * Entries expire after a fixed time to live and the least recently used entry is evicted once the cache is full.
+ * {@code null} values are cached as well, so repeated lookups of missing paths stay local. A value whose load overlapped
+ * an invalidation is returned but not cached, as it may predate the change that caused the invalidation.
+ */
+class SmbExpiringCache<V> {
+
+    interface Loader<V> {
+        V load(String path) throws SmbProviderException;
+    }
+
+    private final long timeToLiveMillis;
+    private final int maxEntries;
+    private final Map<String, Entry<V>> entries;
+    // bumped by every invalidation, guarded by entries
+    private long generation;
+
+    SmbExpiringCache(Duration timeToLive, int maxEntries) {
+        this.timeToLiveMillis = timeToLive.toMillis();
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<String, Entry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry<V>> eldest) {
+                return size() > SmbExpiringCache.this.maxEntries;
+            }
+        };
+    }
+
+    boolean isEnabled() {
+        return timeToLiveMillis > 0 && maxEntries > 0;
+    }
+
+    /**
+     * Returns the cached value for {@code path}, calling the loader when it is absent or expired.
+     */
+    V get(String path, Loader<V> loader) throws SmbProviderException {
+        Entry<V> entry = getEntry(path);
+        if (Objects.nonNull(entry)) {
+            return entry.value;
+        }
+        long loadStarted = generation();
+        V value = loader.load(path);
+        put(path, value, loadStarted);
+        return value;
+    }
+
+    private long generation() {
+        synchronized (entries) {
+            return generation;
+        }
+    }
+
+    /**
+     * Returns the cached value for {@code path} or {@code null} when it is absent or expired, without loading it.
+     */
+    V getIfPresent(String path) {
+        Entry<V> entry = getEntry(path);
+        return Objects.isNull(entry) ? null : entry.value;
+    }
+
+    private Entry<V> getEntry(String path) {
+        if (!isEnabled()) {
+            return null;
+        }
+        synchronized (entries) {
+            Entry<V> entry = entries.get(path);
+            if (Objects.isNull(entry)) {
+                return null;
+            }
+            if (entry.expiresAt <= System.currentTimeMillis()) {
+                entries.remove(path);
+                return null;
+            }
+            return entry;
+        }
+    }
+
+    private void put(String path, V value, long loadStarted) {
+        if (!isEnabled()) {
+            return;
+        }
+        synchronized (entries) {
+            if (generation == loadStarted) {
+                entries.put(path, new Entry<>(value, System.currentTimeMillis() + timeToLiveMillis));
+            }
+        }
+    }
+
+    void invalidate(String path) {
+        if (!isEnabled()) {
+            return;
+        }
+        synchronized (entries) {
+            generation++;
+            entries.remove(path);
+        }
+    }
+
+    /**
+     * Removes {@code path} and every cached descendant of it.
+     */
+    void invalidateTree(String path) {
+        if (!isEnabled()) {
+            return;
+        }
+        String prefix = path.isEmpty() ? "" : path + '\\';
+        synchronized (entries) {
+            generation++;
+            Iterator<String> iterator = entries.keySet().iterator();
+            while (iterator.hasNext()) {
+                String candidate = iterator.next();
+                if (candidate.equals(path) || candidate.startsWith(prefix)) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long expiresAt;
+
+        private Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
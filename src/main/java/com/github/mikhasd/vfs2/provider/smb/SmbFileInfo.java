@@ -0,0 +1,44 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import com.hierynomus.msfscc.FileAttributes;
+import com.hierynomus.msfscc.fileinformation.FileAllInformation;
+import com.hierynomus.msfscc.fileinformation.FileIdBothDirectoryInformation;
+import org.apache.commons.vfs2.FileType;
+
+final class SmbFileInfo {
+    private final long lastModifiedTime;
+    private final boolean directory;
+    private final long contentSize;
+
+    private SmbFileInfo(long lastModifiedTime, boolean directory, long contentSize) {
+        this.lastModifiedTime = lastModifiedTime;
+        this.directory = directory;
+        this.contentSize = contentSize;
+    }
+
+    long getContentSize() {
+        return contentSize;
+    }
+
+    long getLastModifiedTime() {
+        return lastModifiedTime;
+    }
+
+    FileType getFileType() {
+        return this.directory ? FileType.FOLDER : FileType.FILE;
+    }
+
+    static SmbFileInfo from(FileIdBothDirectoryInformation fdInfo) {
+        long lastModifiedTime = fdInfo.getLastWriteTime().toEpochMillis();
+        boolean directory = (FileAttributes.FILE_ATTRIBUTE_DIRECTORY.getValue() & fdInfo.getFileAttributes()) != 0;
+        long contentSize = fdInfo.getEndOfFile();
+        return new SmbFileInfo(lastModifiedTime, directory, contentSize);
+    }
+
+    static SmbFileInfo from(FileAllInformation allInfo) {
+        long lastModifiedTime = allInfo.getBasicInformation().getLastWriteTime().toEpochMillis();
+        boolean directory = allInfo.getStandardInformation().isDirectory();
+        long contentSize = allInfo.getStandardInformation().getEndOfFile();
+        return new SmbFileInfo(lastModifiedTime, directory, contentSize);
+    }
+}
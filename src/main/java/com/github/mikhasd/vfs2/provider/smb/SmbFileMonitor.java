@@ -0,0 +1,528 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import com.hierynomus.mserref.NtStatus;
+import com.hierynomus.msfscc.FileNotifyAction;
+import com.hierynomus.msfscc.directory.FileNotifyInformation;
+import com.hierynomus.mssmb2.SMB2CompletionFilter;
+import com.hierynomus.mssmb2.messages.SMB2ChangeNotifyResponse;
+import com.hierynomus.smbj.share.Directory;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.commons.vfs2.FileChangeEvent;
+import org.apache.commons.vfs2.FileListener;
+import org.apache.commons.vfs2.FileMonitor;
+import org.apache.commons.vfs2.FileName;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.NameScope;
+import org.apache.commons.vfs2.provider.UriParser;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import static org.apache.commons.vfs2.FileType.FOLDER;
+
+/**
+ * File monitor for SMB files driven by SMB2 CHANGE_NOTIFY instead of periodic listings.
+ * <p>
+ * Every watched folder, or the parent folder of watched files, keeps one directory handle with a CHANGE_NOTIFY request
+ * outstanding on the server, however many of its files are watched. Completed requests are translated into
+ * {@link FileListener} events for the watched files and re-armed on the same handle, so an idle folder costs no traffic
+ * at all. Folders whose server rejects notifications fall back to
+ * comparing listings every {@link #setDelay(long) delay}, the way {@link org.apache.commons.vfs2.impl.DefaultFileMonitor}
+ * does.
+ * <p>
+ * Files added are only queued, the monitor thread looks them up and arms their watch once started. Events are
+ * delivered on the monitor thread, in the order the server reported them.
+ */
+public class SmbFileMonitor implements FileMonitor, Runnable {
+
+    private static final Log LOG = LogFactory.getLog(SmbFileMonitor.class);
+    private static final long DEFAULT_DELAY_MILLIS = 1_000L;
+    private static final long NOTIFY_CHECK_INTERVAL_MILLIS = 50L;
+    private static final Set<SMB2CompletionFilter> COMPLETION_FILTER = EnumSet.of(
+            SMB2CompletionFilter.FILE_NOTIFY_CHANGE_FILE_NAME,
+            SMB2CompletionFilter.FILE_NOTIFY_CHANGE_DIR_NAME,
+            SMB2CompletionFilter.FILE_NOTIFY_CHANGE_SIZE,
+            SMB2CompletionFilter.FILE_NOTIFY_CHANGE_LAST_WRITE
+    );
+
+    private final FileListener listener;
+    private final Queue<Added> added = new ConcurrentLinkedQueue<>();
+    private final Map<FileName, Watch> watches = new ConcurrentHashMap<>();
+    private final Map<FileName, FileName> watchedFolders = new ConcurrentHashMap<>();
+    private Added registering;
+    private volatile boolean recursive;
+    private volatile long delayMillis = DEFAULT_DELAY_MILLIS;
+    private volatile boolean running;
+    private Thread monitorThread;
+
+    public SmbFileMonitor(FileListener listener) {
+        this.listener = listener;
+    }
+
+    public FileListener getFileListener() {
+        return listener;
+    }
+
+    public boolean isRecursive() {
+        return recursive;
+    }
+
+    /**
+     * Whether watched folders also report changes anywhere below them. Only applies to files added afterwards.
+     */
+    public void setRecursive(boolean recursive) {
+        this.recursive = recursive;
+    }
+
+    public long getDelay() {
+        return delayMillis;
+    }
+
+    /**
+     * Interval in milliseconds between listings of folders that could not be watched through notifications.
+     */
+    public void setDelay(long delayMillis) {
+        this.delayMillis = Math.max(NOTIFY_CHECK_INTERVAL_MILLIS, delayMillis);
+    }
+
+    @Override
+    public void addFile(FileObject file) {
+        added.add(new Added((SmbFileObject) file, recursive));
+    }
+
+    @Override
+    public void removeFile(FileObject file) {
+        FileName name = file.getName();
+        synchronized (added) {
+            added.removeIf(pending -> pending.file.getName().equals(name));
+            if (Objects.nonNull(registering) && registering.file.getName().equals(name)) {
+                registering.removed = true;
+            }
+            FileName folderName = watchedFolders.remove(name);
+            Watch watch = Objects.isNull(folderName) ? null : watches.get(folderName);
+            if (Objects.nonNull(watch) && watch.remove(name.equals(folderName) ? null : name.getBaseName())) {
+                watches.remove(folderName, watch);
+            }
+        }
+    }
+
+    public synchronized void start() {
+        if (Objects.isNull(monitorThread)) {
+            running = true;
+            monitorThread = SmbExecutors.daemonThreadFactory("smb-file-monitor").newThread(this);
+            monitorThread.start();
+        }
+    }
+
+    public synchronized void stop() {
+        running = false;
+        if (Objects.nonNull(monitorThread)) {
+            monitorThread.interrupt();
+            monitorThread = null;
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running && !Thread.currentThread().isInterrupted()) {
+                register();
+                long now = System.currentTimeMillis();
+                for (Watch watch : watches.values()) {
+                    watch.check(now);
+                }
+                Thread.sleep(NOTIFY_CHECK_INTERVAL_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (Watch watch : watches.values()) {
+                watch.suspend();
+            }
+        }
+    }
+
+    /**
+     * Adds the files queued by {@link #addFile(FileObject)} to the watch of their folder.
+     */
+    private void register() {
+        while (true) {
+            final Added next;
+            synchronized (added) {
+                next = added.poll();
+                registering = next;
+            }
+            if (Objects.isNull(next)) {
+                return;
+            }
+            FileName name = next.file.getName();
+            if (watchedFolders.containsKey(name)) {
+                continue;
+            }
+            SmbFileObject folder = next.file;
+            String baseName = null;
+            try {
+                if (!FOLDER.equals(next.file.getType())) {
+                    folder = (SmbFileObject) next.file.getParent();
+                    baseName = name.getBaseName();
+                }
+            } catch (FileSystemException e) {
+                LOG.warn("Cannot watch " + name + ": " + e.getLocalizedMessage());
+                continue;
+            }
+            final SmbFileObject watchedFolder = folder;
+            synchronized (added) {
+                // removed while its type was looked up
+                if (next.removed) {
+                    continue;
+                }
+                watchedFolders.put(name, watchedFolder.getName());
+                watches.computeIfAbsent(watchedFolder.getName(), folderName -> new Watch(watchedFolder))
+                        .add(baseName, next.recursive);
+            }
+        }
+    }
+
+    private void fire(FileNotifyAction action, FileObject file) {
+        try {
+            switch (action) {
+                case FILE_ACTION_ADDED:
+                case FILE_ACTION_RENAMED_NEW_NAME:
+                    listener.fileCreated(new FileChangeEvent(file));
+                    break;
+                case FILE_ACTION_REMOVED:
+                case FILE_ACTION_RENAMED_OLD_NAME:
+                case FILE_ACTION_REMOVED_BY_DELETE:
+                    listener.fileDeleted(new FileChangeEvent(file));
+                    break;
+                default:
+                    listener.fileChanged(new FileChangeEvent(file));
+            }
+        } catch (Exception e) {
+            // a failing listener must not stop the events of other files
+            LOG.error(e.getLocalizedMessage(), e);
+        }
+    }
+
+    private static final class Added {
+        private final SmbFileObject file;
+        private final boolean recursive;
+        private boolean removed;
+
+        private Added(SmbFileObject file, boolean recursive) {
+            this.file = file;
+            this.recursive = recursive;
+        }
+    }
+
+    /**
+     * Watch over one folder on behalf of the folder itself and of the watched files in it.
+     */
+    private final class Watch {
+        private final SmbFileObject folder;
+        private final Set<String> names = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        private boolean wholeFolder;
+        private boolean recursive;
+        private boolean armed;
+        private Directory handle;
+        private Future<SMB2ChangeNotifyResponse> pending;
+        private long pendingStart;
+        private boolean rejected;
+        private Map<String, SmbFileInfo> snapshot;
+        private long nextPoll;
+        private boolean closed;
+
+        private Watch(SmbFileObject folder) {
+            this.folder = folder;
+        }
+
+        /**
+         * Watches the file {@code name} of the folder, or the folder itself when {@code name} is null.
+         */
+        private synchronized void add(String name, boolean recursive) {
+            boolean polling = armed && Objects.isNull(pending) && Objects.nonNull(snapshot);
+            if (polling) {
+                // report the changes of the files already watched before the listing takes in the new one
+                poll();
+            }
+            if (Objects.nonNull(name)) {
+                names.add(name);
+            } else {
+                wholeFolder = true;
+                if (recursive && !this.recursive) {
+                    // the outstanding request does not cover the subfolders
+                    this.recursive = true;
+                    rescope();
+                }
+            }
+            if (polling && Objects.nonNull(snapshot)) {
+                snapshot = list();
+            }
+        }
+
+        /**
+         * Stops watching the file {@code name}, or the folder itself when {@code name} is null.
+         *
+         * @return true when nothing is left to watch and the watch was closed.
+         */
+        private synchronized boolean remove(String name) {
+            if (Objects.nonNull(name)) {
+                names.remove(name);
+            } else {
+                wholeFolder = false;
+                if (recursive) {
+                    recursive = false;
+                    rescope();
+                }
+            }
+            if (!wholeFolder && names.isEmpty()) {
+                close();
+                return true;
+            }
+            return false;
+        }
+
+        private void rescope() {
+            suspend();
+            snapshot = null;
+        }
+
+        private boolean isWatched(String relativePath) {
+            return wholeFolder || names.contains(relativePath);
+        }
+
+        private synchronized void arm() {
+            if (closed) {
+                return;
+            }
+            armed = true;
+            if (rejected) {
+                startPolling();
+                return;
+            }
+            try {
+                if (Objects.isNull(handle)) {
+                    handle = folder.getSmbTemplate().openFolderForRead(folder.getSmbPath());
+                }
+                pendingStart = System.nanoTime();
+                pending = handle.watchAsync(COMPLETION_FILTER, recursive);
+                snapshot = null;
+            } catch (Exception e) {
+                closeHandle();
+                startPolling();
+            }
+        }
+
+        private void startPolling() {
+            pending = null;
+            if (Objects.isNull(snapshot)) {
+                snapshot = list();
+            }
+            nextPoll = System.currentTimeMillis() + delayMillis;
+        }
+
+        private synchronized void check(long now) {
+            if (closed) {
+                return;
+            }
+            if (!armed) {
+                arm();
+            } else if (Objects.nonNull(pending)) {
+                if (pending.isDone()) {
+                    completed();
+                }
+            } else if (now >= nextPoll) {
+                poll();
+                if (!rejected) {
+                    arm();
+                } else {
+                    nextPoll = now + delayMillis;
+                }
+            }
+        }
+
+        private void completed() {
+            final SMB2ChangeNotifyResponse response;
+            try {
+                response = pending.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                SmbOperation.CHANGE_NOTIFY.failed(metrics(), pendingStart, e.getCause());
+                closeHandle();
+                startPolling();
+                return;
+            }
+            NtStatus status = NtStatus.valueOf(response.getHeader().getStatusCode());
+            if (NtStatus.STATUS_SUCCESS.equals(status) || NtStatus.STATUS_NOTIFY_ENUM_DIR.equals(status)) {
+                SmbOperation.CHANGE_NOTIFY.succeeded(metrics(), pendingStart);
+            } else {
+                SmbOperation.CHANGE_NOTIFY.failed(metrics(), pendingStart, status);
+            }
+            if (NtStatus.STATUS_NOTIFY_ENUM_DIR.equals(status)) {
+                // more changes than fit in one response, the server only tells that something changed
+                fileSystem().invalidateTree(folder.getSmbPath());
+                if (wholeFolder) {
+                    fire(FileNotifyAction.FILE_ACTION_MODIFIED, folder);
+                }
+                for (String name : names) {
+                    FileObject file = resolve(name);
+                    if (Objects.nonNull(file)) {
+                        fire(FileNotifyAction.FILE_ACTION_MODIFIED, file);
+                    }
+                }
+                arm();
+            } else if (NtStatus.STATUS_SUCCESS.equals(status)) {
+                for (FileNotifyInformation information : response.getFileNotifyInfoList()) {
+                    notified(information.getAction(), information.getFileName());
+                }
+                arm();
+            } else {
+                rejected = !NtStatus.STATUS_NOTIFY_CLEANUP.equals(status);
+                closeHandle();
+                startPolling();
+            }
+        }
+
+        private void notified(FileNotifyAction action, String relativePath) {
+            if (!isWatched(relativePath)) {
+                return;
+            }
+            String path = childPath(relativePath);
+            if (action == FileNotifyAction.FILE_ACTION_MODIFIED) {
+                fileSystem().invalidate(path);
+            } else {
+                fileSystem().invalidateTree(path);
+            }
+            FileObject file = resolve(relativePath);
+            if (Objects.nonNull(file)) {
+                fire(action, file);
+            }
+        }
+
+        private void poll() {
+            Map<String, SmbFileInfo> previous = snapshot;
+            Map<String, SmbFileInfo> current = list();
+            snapshot = current;
+            if (Objects.isNull(previous)) {
+                return;
+            }
+            for (Map.Entry<String, SmbFileInfo> entry : current.entrySet()) {
+                SmbFileInfo before = previous.get(entry.getKey());
+                if (Objects.isNull(before)) {
+                    notified(FileNotifyAction.FILE_ACTION_ADDED, entry.getKey());
+                } else if (before.getLastModifiedTime() != entry.getValue().getLastModifiedTime()
+                        || before.getContentSize() != entry.getValue().getContentSize()) {
+                    notified(FileNotifyAction.FILE_ACTION_MODIFIED, entry.getKey());
+                }
+            }
+            for (String relativePath : previous.keySet()) {
+                if (!current.containsKey(relativePath)) {
+                    notified(FileNotifyAction.FILE_ACTION_REMOVED, relativePath);
+                }
+            }
+        }
+
+        /**
+         * @return the watched entries by path relative to the folder, empty when the folder cannot be listed.
+         */
+        private Map<String, SmbFileInfo> list() {
+            Map<String, SmbFileInfo> entries = new HashMap<>();
+            Deque<String> folders = new ArrayDeque<>();
+            folders.add("");
+            while (!folders.isEmpty()) {
+                String relativeFolder = folders.poll();
+                final Map<String, SmbFileInfo> children;
+                try {
+                    children = folder.getSmbTemplate().loadChildrenInfo(childPath(relativeFolder));
+                } catch (Exception e) {
+                    continue;
+                }
+                for (Map.Entry<String, SmbFileInfo> child : children.entrySet()) {
+                    String relativePath = relativeFolder.isEmpty() ? child.getKey() : relativeFolder + '\\' + child.getKey();
+                    if (isWatched(relativePath)) {
+                        entries.put(relativePath, child.getValue());
+                    }
+                    if (recursive && FOLDER.equals(child.getValue().getFileType())) {
+                        folders.add(relativePath);
+                    }
+                }
+            }
+            return entries;
+        }
+
+        private String childPath(String relativePath) {
+            String folderPath = folder.getSmbPath();
+            if (relativePath.isEmpty()) {
+                return folderPath;
+            }
+            return folderPath.isEmpty() ? relativePath : folderPath + '\\' + relativePath;
+        }
+
+        private FileObject resolve(String relativePath) {
+            List<String> names = new ArrayList<>();
+            for (String segment : relativePath.split("\\\\")) {
+                names.add(UriParser.encode(segment));
+            }
+            try {
+                FileObject file = folder.resolveFile(String.join("/", names), NameScope.DESCENDENT);
+                file.refresh();
+                return file;
+            } catch (FileSystemException e) {
+                return null;
+            }
+        }
+
+        private SmbMetricsListener metrics() {
+            return folder.getSmbTemplate().getMetrics();
+        }
+
+        private SmbFileSystem fileSystem() {
+            return (SmbFileSystem) folder.getFileSystem();
+        }
+
+        private void closeHandle() {
+            pending = null;
+            if (Objects.nonNull(handle)) {
+                handle.closeSilently();
+                handle = null;
+            }
+        }
+
+        /**
+         * Stops watching for good, a removed watch may still be checked by the monitor thread once.
+         */
+        private synchronized void close() {
+            closed = true;
+            suspend();
+        }
+
+        /**
+         * Releases the handle while the monitor is stopped, the next check arms the watch again.
+         */
+        private synchronized void suspend() {
+            armed = false;
+            Future<SMB2ChangeNotifyResponse> outstanding = pending;
+            closeHandle();
+            if (Objects.nonNull(outstanding)) {
+                outstanding.cancel(true);
+            }
+        }
+    }
+}
@@ -1,16 +1,20 @@
 package com.github.mikhasd.vfs2.provider.smb;
 
+import com.hierynomus.smbj.SMBClient;
 import org.apache.commons.vfs2.FileName;
+import org.apache.commons.vfs2.FileSystemException;
 import org.apache.commons.vfs2.FileType;
 import org.apache.commons.vfs2.provider.GenericFileName;
+import org.apache.commons.vfs2.provider.UriParser;
 
 import java.util.Objects;
 
 public class SmbFileName extends GenericFileName {
 
-    static final int DEFAULT_PORT = 136;
+    static final int DEFAULT_PORT = SMBClient.DEFAULT_PORT;
     private final String domain;
     private final String share;
+    private volatile String smbPath;
 
     SmbFileName(String scheme, String hostName, int port, String userName, String password, String path, FileType type, String domain, String share) {
         super(scheme, hostName, port, DEFAULT_PORT, userName, password, path, type);
@@ -26,6 +30,29 @@ public class SmbFileName extends GenericFileName {
         return share;
     }
 
+    /**
+     * @return the decoded path relative to the share, separated by {@code \} as expected by smbj. Computed once per
+     * name.
+     */
+    String getSmbPath() {
+        String result = this.smbPath;
+        if (Objects.isNull(result)) {
+            result = toSmbPath(getPath());
+            this.smbPath = result;
+        }
+        return result;
+    }
+
+    static String toSmbPath(String path) {
+        String relativePath = path.startsWith("/") ? path.substring(1) : path;
+        relativePath = relativePath.replace('/', '\\');
+        try {
+            return UriParser.decode(relativePath);
+        } catch (FileSystemException e) {
+            return relativePath;
+        }
+    }
+
     @Override
     protected void appendRootUri(StringBuilder buffer, boolean addPassword) {
         super.appendRootUri(buffer, addPassword);
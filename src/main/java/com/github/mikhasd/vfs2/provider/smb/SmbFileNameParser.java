@@ -7,16 +7,57 @@ import org.apache.commons.vfs2.provider.GenericURLFileNameParser;
 import org.apache.commons.vfs2.provider.UriParser;
 import org.apache.commons.vfs2.provider.VfsComponentContext;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Objects;
 
+/**
+ * Parses {@code smb://[domain\][user[:password]@]host[:port]/share/path} URIs.
+ * <p>
+ * Parsed paths are kept in a bounded least recently used cache keyed by the share and path as they appear in the URI,
+ * so resolving the same path again costs a lookup. The cache holds neither credentials nor names, every call returns a
+ * name of its own. Names under the root of the base name, which is how the file system manager resolves relative names,
+ * skip parsing the authority, which is taken from the base.
+ */
 public class SmbFileNameParser extends GenericURLFileNameParser {
 
+    static final int DEFAULT_CACHE_SIZE = 10_000;
+
+    private final Map<String, ParsedPath> cache;
+
     public SmbFileNameParser() {
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param cacheSize maximum number of parsed names kept, zero disables the cache.
+     */
+    public SmbFileNameParser(int cacheSize) {
         super(SmbFileName.DEFAULT_PORT);
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<String, ParsedPath>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ParsedPath> eldest) {
+                return size() > cacheSize;
+            }
+        });
     }
 
     @Override
     public FileName parseUri(VfsComponentContext context, FileName base, String fileName) throws FileSystemException {
+        if (base instanceof SmbFileName) {
+            final SmbFileName root = (SmbFileName) base;
+            // the root URI ends with the share and the separator preceding the path
+            final String rootUri = base.getRootURI();
+            if (fileName.startsWith(rootUri)) {
+                final ParsedPath parsed = parsePath(fileName, fileName.substring(rootUri.length() - root.getShare().length() - 2));
+                return root.createName(parsed.path, parsed.type);
+            }
+        }
+        return parse(fileName);
+    }
+
+    private FileName parse(String fileName) throws FileSystemException {
         StringBuilder builder = new StringBuilder(128);
 
         final Authority auth = extractToPath(fileName, builder);
@@ -24,16 +65,7 @@ public class SmbFileNameParser extends GenericURLFileNameParser {
         final String domain = extractDomain(usernameAndDomain);
         final String username = Objects.isNull(domain) ? usernameAndDomain : usernameAndDomain.substring(domain.length() + 1);
 
-        UriParser.canonicalizePath(builder, 0, builder.length(), this);
-        UriParser.fixSeparators(builder);
-
-        final String share = UriParser.extractFirstElement(builder);
-        if(Objects.isNull(share) || share.trim().isEmpty()){
-            throw SmbProviderException.missingShareName(fileName);
-        }
-
-        final FileType fileType = UriParser.normalisePath(builder);
-        final String path = builder.toString();
+        final ParsedPath parsed = parsePath(fileName, builder.toString());
 
         return new SmbFileName(
                 auth.getScheme(),
@@ -41,13 +73,36 @@ public class SmbFileNameParser extends GenericURLFileNameParser {
                 auth.getPort(),
                 username,
                 auth.getPassword(),
-                path,
-                fileType,
+                parsed.path,
+                parsed.type,
                 domain,
-                share
+                parsed.share
         );
     }
 
+    /**
+     * @param rawPath the share and path of {@code fileName}, as they follow its authority.
+     */
+    private ParsedPath parsePath(String fileName, String rawPath) throws FileSystemException {
+        ParsedPath cached = cache.get(rawPath);
+        if (Objects.nonNull(cached)) {
+            return cached;
+        }
+        StringBuilder builder = new StringBuilder(rawPath);
+        UriParser.canonicalizePath(builder, 0, builder.length(), this);
+        UriParser.fixSeparators(builder);
+
+        final String share = UriParser.extractFirstElement(builder);
+        if(Objects.isNull(share) || share.trim().isEmpty()){
+            throw SmbProviderException.missingShareName(fileName);
+        }
+
+        final FileType fileType = UriParser.normalisePath(builder);
+        final ParsedPath parsed = new ParsedPath(share, builder.toString(), fileType);
+        cache.put(rawPath, parsed);
+        return parsed;
+    }
+
     @Override
     protected String extractUserInfo(StringBuilder name) {
         final int atSign = name.lastIndexOf("@");
@@ -67,4 +122,16 @@ public class SmbFileNameParser extends GenericURLFileNameParser {
             return username.substring(0, backslash);
         }
     }
+
+    private static final class ParsedPath {
+        private final String share;
+        private final String path;
+        private final FileType type;
+
+        private ParsedPath(String share, String path, FileType type) {
+            this.share = share;
+            this.path = path;
+            this.type = type;
+        }
+    }
 }
@@ -1,24 +1,24 @@
 package com.github.mikhasd.vfs2.provider.smb;
 
-import com.hierynomus.mserref.NtStatus;
-import com.hierynomus.msfscc.FileAttributes;
-import com.hierynomus.msfscc.fileinformation.FileAllInformation;
-import com.hierynomus.msfscc.fileinformation.FileIdBothDirectoryInformation;
-import com.hierynomus.mssmb2.SMBApiException;
 import com.hierynomus.smbj.share.DiskEntry;
 import com.hierynomus.smbj.share.File;
 import org.apache.commons.vfs2.*;
 import org.apache.commons.vfs2.provider.AbstractFileObject;
 import org.apache.commons.vfs2.provider.UriParser;
+import org.apache.commons.vfs2.provider.local.LocalFileSystem;
+import org.apache.commons.vfs2.util.RandomAccessMode;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
 
-import static com.hierynomus.mserref.NtStatus.STATUS_OBJECT_NAME_NOT_FOUND;
-import static com.hierynomus.mserref.NtStatus.STATUS_OBJECT_PATH_NOT_FOUND;
-import static org.apache.commons.vfs2.FileType.FOLDER;
 import static org.apache.commons.vfs2.FileType.IMAGINARY;
 
 public class SmbFileObject extends AbstractFileObject<SmbFileSystem> {
@@ -26,44 +26,39 @@ public class SmbFileObject extends AbstractFileObject<SmbFileSystem> {
     private final SmbTemplate smbTemplate;
     private final FileName rootName;
     private final String path;
-    private Info smbFileInfo;
+    private SmbFileInfo smbFileInfo;
 
     public SmbFileObject(SmbFileName fileName, SmbFileSystem fileSystem, SmbTemplate smbTemplate, FileName rootName) {
         super(fileName, fileSystem);
         this.smbTemplate = smbTemplate;
         this.rootName = rootName;
-        String relativePath = fileName.getURI().substring(rootName.getURI().length());
-        relativePath = relativePath.startsWith("/") ? relativePath.substring(1) : relativePath;
-        relativePath = relativePath.replace('/', '\\');
-        String path;
-        try {
-            path = UriParser.decode(relativePath);
-        } catch (FileSystemException e) {
-            path = relativePath;
+        if (FileName.ROOT_PATH.equals(rootName.getPath())) {
+            this.path = fileName.getSmbPath();
+        } else {
+            this.path = SmbFileName.toSmbPath(fileName.getURI().substring(rootName.getURI().length()));
         }
-        this.path = path;
     }
 
-    private Optional<Info> getFileInfo() throws SmbProviderException {
+    private Optional<SmbFileInfo> getFileInfo() throws SmbProviderException {
         if (Objects.isNull(this.smbFileInfo)) {
-            try {
-                FileAllInformation allInfo = smbTemplate.getFileInfo(this.path);
-                if (Objects.nonNull(allInfo)) {
-                    this.smbFileInfo = Info.from(allInfo);
-                }
-            } catch (SMBApiException saex) {
-                NtStatus status = saex.getStatus();
-                if (!STATUS_OBJECT_NAME_NOT_FOUND.equals(status) && !STATUS_OBJECT_PATH_NOT_FOUND.equals(status)) {
-                    throw SmbProviderException.fileInformationError(path, saex);
-                }
-            }
+            this.smbFileInfo = getAbstractFileSystem().getFileInfo(this.path, smbTemplate::loadFileInfo);
         }
-        return Optional.of(this.smbFileInfo);
+        return Optional.ofNullable(this.smbFileInfo);
+    }
+
+    private void invalidateFileInfo() {
+        this.smbFileInfo = null;
+        getAbstractFileSystem().invalidate(this.path);
+    }
+
+    private void invalidateFileInfoTree() {
+        this.smbFileInfo = null;
+        getAbstractFileSystem().invalidateTree(this.path);
     }
 
     @Override
     protected long doGetContentSize() throws Exception {
-        return getFileInfo().map(Info::getContentSize).orElse(0L);
+        return getFileInfo().map(SmbFileInfo::getContentSize).orElse(0L);
     }
 
     @Override
@@ -71,19 +66,55 @@ public class SmbFileObject extends AbstractFileObject<SmbFileSystem> {
         if (!getType().hasContent()) {
             throw new FileSystemException("vfs.provider/read-not-file.error", getName());
         }
-        File file = smbTemplate.openFileForRead(path);
-        return new SmbInputStream(file);
+        // known from the type check, spares skips a round trip
+        long size = getFileInfo().map(SmbFileInfo::getContentSize).orElse(-1L);
+        SmbHandleCache.Lease lease = getAbstractFileSystem().leaseFileForRead(path, smbTemplate::openFileForSharedRead);
+        SmbFileSystemConfigBuilder configBuilder = SmbFileSystemConfigBuilder.getInstance();
+        FileSystemOptions options = getFileSystem().getFileSystemOptions();
+        try {
+            return new SmbInputStream(lease.getFile(), lease, size, configBuilder.getReadChunkSize(options), configBuilder.getReadAheadWindow(options), smbTemplate.getMetrics());
+        } catch (RuntimeException e) {
+            lease.close();
+            throw e;
+        }
     }
 
     @Override
     protected OutputStream doGetOutputStream(final boolean append) throws Exception {
-        File file = smbTemplate.openFileForWrite(path);
-        return file.getOutputStream(append);
+        invalidateFileInfo();
+        File file = append ? smbTemplate.openFileForWrite(path) : smbTemplate.openFileForOverwrite(path);
+        SmbFileSystemConfigBuilder configBuilder = SmbFileSystemConfigBuilder.getInstance();
+        FileSystemOptions options = getFileSystem().getFileSystemOptions();
+        return new SmbOutputStream(file, append, configBuilder.getWriteChunkSize(options), configBuilder.getMaxWritesInFlight(options), smbTemplate.getMetrics());
+    }
+
+    @Override
+    protected RandomAccessContent doGetRandomAccessContent(final RandomAccessMode mode) throws Exception {
+        final File file;
+        final Runnable onClose;
+        if (mode.requestWrite()) {
+            invalidateFileInfo();
+            file = smbTemplate.openFileForReadWrite(path);
+            onClose = this::invalidateFileInfo;
+        } else {
+            file = smbTemplate.openFileForRead(path);
+            onClose = () -> { };
+        }
+        SmbFileSystemConfigBuilder configBuilder = SmbFileSystemConfigBuilder.getInstance();
+        FileSystemOptions options = getFileSystem().getFileSystemOptions();
+        return new SmbRandomAccessContent(
+                file,
+                mode,
+                configBuilder.getRandomAccessBlockSize(options),
+                configBuilder.getRandomAccessBlockCount(options),
+                smbTemplate.getMetrics(),
+                onClose
+        );
     }
 
     @Override
     protected FileType doGetType() throws Exception {
-        return getFileInfo().map(Info::getFileType).orElse(IMAGINARY);
+        return getFileInfo().map(SmbFileInfo::getFileType).orElse(IMAGINARY);
     }
 
     @Override
@@ -93,7 +124,7 @@ public class SmbFileObject extends AbstractFileObject<SmbFileSystem> {
 
     @Override
     public boolean exists() throws FileSystemException {
-        return smbTemplate.exists(path);
+        return getFileInfo().isPresent();
     }
 
     @Override
@@ -115,100 +146,388 @@ public class SmbFileObject extends AbstractFileObject<SmbFileSystem> {
 
     @Override
     protected void doCreateFolder() throws Exception {
+        invalidateFileInfo();
         smbTemplate.createFolder(path);
     }
 
     @Override
     protected void doRename(FileObject newFile) throws Exception {
+        final boolean folder = isFolder();
+        invalidateFileInfoTree();
         final DiskEntry entry;
-        if (isFolder()) {
+        if (folder) {
             entry = smbTemplate.openFolderForWrite(path);
         } else {
             entry = smbTemplate.openFileForWrite(path);
         }
+        SmbFileObject fo = (SmbFileObject) newFile;
         try {
-            SmbFileObject fo = (SmbFileObject) newFile;
-            entry.rename(fo.path);
+            smbTemplate.rename(entry, fo.path);
         } finally {
             entry.close();
+            invalidateFileInfoTree();
+            fo.invalidateFileInfoTree();
         }
     }
 
     @Override
     protected void doDelete() throws Exception {
-        smbTemplate.delete(path);
+        invalidateFileInfoTree();
+        try {
+            smbTemplate.delete(path);
+        } finally {
+            invalidateFileInfoTree();
+        }
+    }
+
+    @Override
+    public int deleteAll() throws FileSystemException {
+        SmbDeleteReport report = deleteTree();
+        if (report.hasFailures()) {
+            throw SmbProviderException.deleteFailures(this, report);
+        }
+        return report.getFilesDeleted() + report.getFoldersDeleted();
+    }
+
+    /**
+     * Deletes this file, or this folder with everything below it, without resolving a file object per entry. Unlike
+     * {@link #deleteAll()} individual failures do not raise an exception, they are collected in the returned report.
+     */
+    public SmbDeleteReport deleteTree() throws FileSystemException {
+        int parallelism = SmbFileSystemConfigBuilder.getInstance().getDeleteParallelism(getFileSystem().getFileSystemOptions());
+        SmbDeleteReport report = new SmbTreeDeleter(smbTemplate, getAbstractFileSystem(), parallelism).delete(path);
+        invalidateFileInfoTree();
+        synchronized (getFileSystem()) {
+            try {
+                if (report.hasFailures()) {
+                    refresh();
+                } else {
+                    handleDelete();
+                }
+            } catch (Exception e) {
+                throw new FileSystemException("vfs.provider/delete.error", e, getName());
+            }
+        }
+        return report;
+    }
+
+    @Override
+    protected void endOutput() throws Exception {
+        invalidateFileInfo();
+        super.endOutput();
     }
 
     @Override
     public void copyFrom(FileObject file, FileSelector selector) throws FileSystemException {
-        if (!file.exists()) {
-            throw SmbProviderException.missingSourceFile(file);
+        SmbCopyReport report = copyTree(file, selector);
+        if (report.hasFailures()) {
+            throw SmbProviderException.copyFailures(file, this, report);
         }
+    }
 
-        final List<FileObject> files = new ArrayList<>();
-        file.findFiles(selector, false, files);
+    /**
+     * Copies the files selected from {@code file} into this folder, creating folders first and then copying files
+     * concurrently. Unlike {@link #copyFrom(FileObject, FileSelector)} individual failures do not raise an exception,
+     * they are collected in the returned report together with the number of copied files and bytes.
+     */
+    public SmbCopyReport copyTree(FileObject file, FileSelector selector) throws FileSystemException {
+        int parallelism = SmbFileSystemConfigBuilder.getInstance().getCopyParallelism(getFileSystem().getFileSystemOptions());
+        return new SmbTreeCopier(this, parallelism).copy(file, selector);
+    }
 
-        for (FileObject srcFile : files) {
-            final String relativePath = file.getName().getRelativeName(srcFile.getName());
-            final FileObject destinationFile = resolveFile(relativePath, NameScope.DESCENDENT_OR_SELF);
+    @Override
+    public void findFiles(FileSelector selector, boolean depthwise, List<FileObject> selected) throws FileSystemException {
+        int parallelism = SmbFileSystemConfigBuilder.getInstance().getTraversalParallelism(getFileSystem().getFileSystemOptions());
+        if (parallelism <= 1) {
+            super.findFiles(selector, depthwise, selected);
+            return;
+        }
+        try {
+            if (exists()) {
+                selected.addAll(new SmbTreeWalker(selector, depthwise, getAbstractFileSystem().getTraversalPool()).walk(this));
+            }
+        } catch (Exception e) {
+            throw new FileSystemException("vfs.provider/find-files.error", getName(), e);
+        }
+    }
 
-            FileType srcFileType = srcFile.getType();
-            if (destinationFile.exists() && !destinationFile.getType().equals(srcFileType)) {
-                destinationFile.deleteAll();
+    /**
+     * @return the number of bytes copied, so callers need no size query afterwards.
+     */
+    long copyContentFrom(FileObject source) throws IOException {
+        if (source instanceof SmbFileObject) {
+            SmbRemoteCopy copy = remoteCopyFrom((SmbFileObject) source);
+            try {
+                return copy.get();
+            } catch (InterruptedException e) {
+                copy.cancel(true);
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while copying " + source.getName());
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+            } finally {
+                invalidateFileInfo();
+            }
+        } else if (source.getFileSystem() instanceof LocalFileSystem) {
+            return uploadFrom(source.getPath());
+        } else {
+            try (FileContent content = source.getContent()) {
+                return content.write(this);
             }
+        }
+    }
+
+    /**
+     * Starts replacing the content of this file, created when missing, with the content of {@code source}, which may be
+     * on another share. Files of the same server are copied by the server, see {@link SmbRemoteCopy}, in ranges of
+     * {@link SmbFileSystemConfigBuilder#setRemoteCopyRangeSize} copied concurrently.
+     *
+     * @return the copy in progress, which reports how many bytes it copied and can be cancelled.
+     */
+    public SmbRemoteCopy remoteCopyFrom(SmbFileObject source) {
+        SmbFileSystemConfigBuilder configBuilder = SmbFileSystemConfigBuilder.getInstance();
+        FileSystemOptions options = getFileSystem().getFileSystemOptions();
+        invalidateFileInfo();
+        SmbRemoteCopy copy = new SmbRemoteCopy(
+                source.smbTemplate,
+                source.path,
+                smbTemplate,
+                path,
+                configBuilder.getRemoteCopyRangeSize(options),
+                configBuilder.getRemoteCopyParallelism(options)
+        );
+        copy.whenDone(this::invalidateFileInfo);
+        return copy.start();
+    }
 
+    /**
+     * Replaces the content of this file with the content of local file {@code source}, memory mapping it instead of
+     * copying it through streams.
+     *
+     * @return the number of bytes written.
+     */
+    public long uploadFrom(Path source) throws FileSystemException {
+        final FileChannel channel;
+        try {
+            channel = FileChannel.open(source, StandardOpenOption.READ);
+        } catch (IOException e) {
+            throw new FileSystemException("vfs.provider/copy-file.error", e, source, getName());
+        }
+        try {
+            return uploadFrom(channel);
+        } finally {
+            closeQuietly(channel);
+        }
+    }
+
+    /**
+     * Same as {@link #uploadFrom(Path)} for an open channel, which is read from its start to its end whatever its
+     * position and left open.
+     */
+    public long uploadFrom(FileChannel source) throws FileSystemException {
+        SmbFileSystemConfigBuilder configBuilder = SmbFileSystemConfigBuilder.getInstance();
+        FileSystemOptions options = getFileSystem().getFileSystemOptions();
+        invalidateFileInfo();
+        File file = smbTemplate.openFileForOverwrite(path);
+        try {
+            return new SmbFileTransfer(file, configBuilder.getWriteChunkSize(options), configBuilder.getReadChunkSize(options), configBuilder.getMaxWritesInFlight(options), smbTemplate.getMetrics())
+                    .upload(source);
+        } catch (IOException e) {
+            throw new FileSystemException("vfs.provider/write.error", e, getName());
+        } finally {
+            file.close();
+            invalidateFileInfo();
+        }
+    }
+
+    /**
+     * Updates this file to the content of local file {@code source} by writing only the blocks that differ, see
+     * {@link SmbFileSystemConfigBuilder#setDeltaBlockSize}. The file is created when missing. Every block of the file is
+     * read for the comparison, so this pays off when writing is what is scarce, for instance large files that change
+     * in a few places. When the update fails midway the file holds a mix of both versions until it is run again.
+     */
+    public SmbDeltaReport deltaUploadFrom(Path source) throws FileSystemException {
+        final FileChannel channel;
+        try {
+            channel = FileChannel.open(source, StandardOpenOption.READ);
+        } catch (IOException e) {
+            throw new FileSystemException("vfs.provider/copy-file.error", e, source, getName());
+        }
+        SmbFileSystemConfigBuilder configBuilder = SmbFileSystemConfigBuilder.getInstance();
+        FileSystemOptions options = getFileSystem().getFileSystemOptions();
+        invalidateFileInfo();
+        try {
+            File file = smbTemplate.openFileForReadWrite(path);
             try {
-                if (srcFileType.hasContent()) {
-                    if (srcFile.getFileSystem().equals(destinationFile.getFileSystem())) {
-                        performServerSideCopy(srcFile, destinationFile);
-                    } else {
-                        FileUtil.copyContent(srcFile, destinationFile);
-                    }
-                } else if (srcFileType.hasChildren()) {
-                    destinationFile.createFolder();
-                }
-            } catch (final IOException ioex) {
-                throw new FileSystemException("vfs.provider/copy-file.error", ioex, srcFile, destinationFile);
+                return new SmbDeltaUploader(file, configBuilder.getDeltaBlockSize(options), configBuilder.getDeltaParallelism(options), smbTemplate.getMetrics())
+                        .upload(channel);
+            } finally {
+                file.close();
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FileSystemException("vfs.provider/write.error", e, getName());
+        } catch (IOException | RuntimeException e) {
+            throw new FileSystemException("vfs.provider/write.error", e, getName());
+        } finally {
+            closeQuietly(channel);
+            invalidateFileInfo();
+        }
+    }
+
+    /**
+     * Replaces the content of local file {@code target}, created when missing, with the content of this file, memory
+     * mapping it instead of copying it through streams.
+     *
+     * @return the number of bytes read.
+     */
+    public long downloadTo(Path target) throws FileSystemException {
+        final FileChannel channel;
+        try {
+            channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new FileSystemException("vfs.provider/copy-file.error", e, getName(), target);
+        }
+        try {
+            return downloadTo(channel);
+        } finally {
+            closeQuietly(channel);
         }
     }
 
-    private void performServerSideCopy(FileObject source, FileObject destination) throws SmbProviderException {
-        SmbFileObject src = (SmbFileObject) source;
-        SmbFileObject dest = (SmbFileObject) destination;
-        smbTemplate.serverSideCopy(src.path, dest.path);
+    /**
+     * Same as {@link #downloadTo(Path)} for an open channel, which must be readable and writable and is left open.
+     */
+    public long downloadTo(FileChannel target) throws FileSystemException {
+        if (!getType().hasContent()) {
+            throw new FileSystemException("vfs.provider/read-not-file.error", getName());
+        }
+        SmbFileSystemConfigBuilder configBuilder = SmbFileSystemConfigBuilder.getInstance();
+        FileSystemOptions options = getFileSystem().getFileSystemOptions();
+        File file = smbTemplate.openFileForRead(path);
+        try {
+            return new SmbFileTransfer(file, configBuilder.getWriteChunkSize(options), configBuilder.getReadChunkSize(options), configBuilder.getReadAheadWindow(options), smbTemplate.getMetrics())
+                    .download(target);
+        } catch (IOException e) {
+            throw new FileSystemException("vfs.provider/read.error", e, getName());
+        } finally {
+            file.closeSilently();
+        }
+    }
+
+    /**
+     * Downloads this file into local file {@code target} as ranges read concurrently on several handles, see
+     * {@link SmbFileSystemConfigBuilder#setDownloadParallelism}. When a previous call with the same target failed or
+     * was interrupted, only the ranges it did not complete are read again, as long as this file did not change in
+     * between. The size of the result is verified against the size of this file once every range is in place.
+     *
+     * @return the number of bytes of the file.
+     */
+    public long downloadRanges(Path target) throws FileSystemException {
+        invalidateFileInfo();
+        SmbFileInfo info = getFileInfo()
+                .filter(found -> found.getFileType().hasContent())
+                .orElseThrow(() -> new FileSystemException("vfs.provider/read-not-file.error", getName()));
+        SmbFileSystemConfigBuilder configBuilder = SmbFileSystemConfigBuilder.getInstance();
+        FileSystemOptions options = getFileSystem().getFileSystemOptions();
+        SmbRangeDownloader downloader = new SmbRangeDownloader(
+                smbTemplate,
+                path,
+                configBuilder.getDownloadRangeSize(options),
+                configBuilder.getReadChunkSize(options),
+                configBuilder.getDownloadParallelism(options)
+        );
+        try {
+            Map<Long, Exception> failures = downloader.download(target, info.getContentSize(), info.getLastModifiedTime());
+            if (!failures.isEmpty()) {
+                throw SmbProviderException.downloadFailures(getName(), target, failures);
+            }
+            invalidateFileInfo();
+            long expected = doGetContentSize();
+            long actual = Files.size(target);
+            if (expected != actual) {
+                throw SmbProviderException.downloadSizeMismatch(getName(), target, expected, actual);
+            }
+            SmbRangeDownloader.complete(target);
+            return actual;
+        } catch (FileSystemException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FileSystemException("vfs.provider/copy-file.error", e, getName(), target);
+        } catch (Exception e) {
+            throw new FileSystemException("vfs.provider/copy-file.error", e, getName(), target);
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // the transfer itself has completed or already failed
+        }
     }
 
     @Override
     protected long doGetLastModifiedTime() throws Exception {
-        return getFileInfo().map(Info::getLastModifiedTime).orElse(0L);
+        return getFileInfo().map(SmbFileInfo::getLastModifiedTime).orElse(0L);
     }
 
     @Override
     protected FileObject[] doListChildrenResolved() throws Exception {
-        if (!FOLDER.equals(getType())) {
+        return resolveChildren();
+    }
 
-        }
+    /**
+     * Lists and resolves the children of this folder without holding the file system lock taken by
+     * {@link #getChildren()}, so several folders can be listed concurrently.
+     */
+    SmbFileObject[] resolveChildren() throws FileSystemException {
         FileSystemManager fileSystemManager = getFileSystem().getFileSystemManager();
-        Collection<FileIdBothDirectoryInformation> childrenInfo = smbTemplate.getChildrenInfo(path);
-        List<FileObject> children = new ArrayList<>(childrenInfo.size());
-        for (FileIdBothDirectoryInformation info : childrenInfo) {
-            String name = UriParser.encode(info.getFileName());
+        Map<String, SmbFileInfo> childrenInfo = getChildrenInfo();
+        SmbFileObject[] children = new SmbFileObject[childrenInfo.size()];
+        int i = 0;
+        for (Map.Entry<String, SmbFileInfo> info : childrenInfo.entrySet()) {
+            String name = UriParser.encode(info.getKey());
             SmbFileObject fileObject = (SmbFileObject) fileSystemManager.resolveFile(this, name);
-            fileObject.initInfo(info);
-            children.add(fileObject);
+            fileObject.initInfo(info.getValue());
+            children[i++] = fileObject;
         }
+        return children;
+    }
 
-        FileObject[] childrenResolved = new FileObject[children.size()];
-        for (int i = 0; i < children.size(); i++) {
-            childrenResolved[i] = children.get(i);
-        }
+    String getSmbPath() {
+        return path;
+    }
+
+    Map<String, SmbFileInfo> getChildrenInfo() throws SmbProviderException {
+        return getAbstractFileSystem().getChildren(path, smbTemplate::loadChildrenInfo);
+    }
+
+    /**
+     * Opens a lazy enumeration of this folder's children. Unlike {@link #getChildren()} entries are produced page by
+     * page as the server returns them, so huge folders can be processed in constant memory.
+     */
+    public SmbDirectoryStream openDirectoryStream() throws FileSystemException {
+        return smbTemplate.openDirectoryStream(path);
+    }
+
+    /**
+     * Resolves the child named by {@code entry}, reusing the entry's metadata instead of querying the server.
+     */
+    public SmbFileObject resolveEntry(SmbDirectoryEntry entry) throws FileSystemException {
+        SmbFileObject child = (SmbFileObject) resolveFile(UriParser.encode(entry.getName()), NameScope.CHILD);
+        child.initInfo(entry.getInfo());
+        return child;
+    }
 
-        return childrenResolved;
+    private void initInfo(SmbFileInfo info) {
+        this.smbFileInfo = info;
     }
 
-    private void initInfo(FileIdBothDirectoryInformation info) {
-        this.smbFileInfo = Info.from(info);
+    SmbTemplate getSmbTemplate() {
+        return smbTemplate;
     }
 
     @Override
@@ -221,42 +540,4 @@ public class SmbFileObject extends AbstractFileObject<SmbFileSystem> {
     protected void doDetach() {
         this.smbFileInfo = null;
     }
-
-    private static class Info {
-        private final long lastModifiedTime;
-        private final boolean directory;
-        private final long contentSize;
-
-        private Info(long lastModifiedTime, boolean directory, long contentSize) {
-            this.lastModifiedTime = lastModifiedTime;
-            this.directory = directory;
-            this.contentSize = contentSize;
-        }
-
-        private long getContentSize() {
-            return contentSize;
-        }
-
-        public long getLastModifiedTime() {
-            return lastModifiedTime;
-        }
-
-        private FileType getFileType() {
-            return this.directory ? FileType.FOLDER : FileType.FILE;
-        }
-
-        static Info from(FileIdBothDirectoryInformation fdInfo) {
-            long lastModifiedTime = fdInfo.getLastWriteTime().toEpochMillis();
-            boolean directory = (FileAttributes.FILE_ATTRIBUTE_DIRECTORY.getValue() * fdInfo.getFileAttributes()) != 0;
-            long contentSize = fdInfo.getEndOfFile();
-            return new Info(lastModifiedTime, directory, contentSize);
-        }
-
-        static Info from(FileAllInformation allInfo) {
-            long lastModifiedTime = allInfo.getBasicInformation().getLastWriteTime().toEpochMillis();
-            boolean directory = allInfo.getStandardInformation().isDirectory();
-            long contentSize = allInfo.getStandardInformation().getEndOfFile();
-            return new Info(lastModifiedTime, directory, contentSize);
-        }
-    }
 }
@@ -23,7 +23,10 @@ public class SmbFileProvider extends AbstractOriginatingFileProvider {
             GET_LAST_MODIFIED,
             URI,
             WRITE_CONTENT,
-            APPEND_CONTENT
+            APPEND_CONTENT,
+            RANDOM_ACCESS_READ,
+            RANDOM_ACCESS_WRITE,
+            RANDOM_ACCESS_SET_LENGTH
     );
 
     static final Type[] AUTHENTICATION_DATA_TYPES = {
@@ -32,6 +35,8 @@ public class SmbFileProvider extends AbstractOriginatingFileProvider {
             DOMAIN
     };
 
+    private final SmbSessionPool sessionPool = new SmbSessionPool();
+
     public SmbFileProvider() {
         this.setFileNameParser(new SmbFileNameParser());
     }
@@ -47,6 +52,7 @@ public class SmbFileProvider extends AbstractOriginatingFileProvider {
     private DiskShareWrapper createDiskShareConnection(SmbFileName smbRootName, FileSystemOptions fileSystemOptions) {
 
         final String hostname = smbRootName.getHostName();
+        final int port = smbRootName.getPort();
         final String share = smbRootName.getShare();
 
         final String username;
@@ -67,9 +73,32 @@ public class SmbFileProvider extends AbstractOriginatingFileProvider {
         }
 
 
-        final SessionFactory sessionFactory = new SessionFactory(hostname, domain, username, password);
-        final DiskShareManager diskShareManager = new DiskShareManager(sessionFactory, share);
-        return new DiskShareWrapper(diskShareManager);
+        final SmbFileSystemConfigBuilder configBuilder = SmbFileSystemConfigBuilder.getInstance();
+        final SessionFactory sessionFactory = new SessionFactory(
+                sessionPool,
+                hostname,
+                port,
+                domain,
+                username,
+                password,
+                configBuilder.getTransportConfig(fileSystemOptions),
+                configBuilder.getMaxSessionsPerHost(fileSystemOptions),
+                configBuilder.getSessionIdleTimeout(fileSystemOptions),
+                configBuilder.getKeepAliveInterval(fileSystemOptions)
+        );
+        final DiskShareManager diskShareManager = new DiskShareManager(
+                sessionFactory,
+                share,
+                configBuilder.getConnectionsPerShare(fileSystemOptions),
+                configBuilder.getMetricsListener(fileSystemOptions),
+                configBuilder.getReconnectBackoffPolicy(fileSystemOptions)
+        );
+        return new DiskShareWrapper(
+                diskShareManager,
+                configBuilder.getMetricsListener(fileSystemOptions),
+                configBuilder.getIdempotentRetries(fileSystemOptions),
+                configBuilder.getReconnectBackoffPolicy(fileSystemOptions)
+        );
     }
 
     private Optional<UserAuthenticationData> getAuthenticationData(FileSystemOptions fileSystemOptions) {
@@ -77,8 +106,19 @@ public class SmbFileProvider extends AbstractOriginatingFileProvider {
         return Optional.ofNullable(userAuthenticationData);
     }
 
+    @Override
+    public FileSystemConfigBuilder getConfigBuilder() {
+        return SmbFileSystemConfigBuilder.getInstance();
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        sessionPool.close();
+    }
+
     @Override
     public Collection<Capability> getCapabilities() {
-        return null;
+        return CAPABILITIES;
     }
 }
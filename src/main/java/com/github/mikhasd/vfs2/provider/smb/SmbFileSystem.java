@@ -5,13 +5,118 @@ import org.apache.commons.vfs2.provider.AbstractFileName;
 import org.apache.commons.vfs2.provider.AbstractFileSystem;
 
 import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
 
 public class SmbFileSystem extends AbstractFileSystem {
     private final SmbTemplate smbTemplate;
+    private final SmbExpiringCache<SmbFileInfo> metadataCache;
+    private final SmbExpiringCache<Map<String, SmbFileInfo>> listingCache;
+    private final SmbHandleCache handleCache;
+    private final SmbAsyncOperations asyncOperations;
+    private ForkJoinPool traversalPool;
 
     public SmbFileSystem(FileName rootName, FileSystemOptions fileSystemOptions, SmbTemplate smbTemplate) {
         super(rootName, null, fileSystemOptions);
         this.smbTemplate = smbTemplate;
+        SmbFileSystemConfigBuilder configBuilder = SmbFileSystemConfigBuilder.getInstance();
+        this.metadataCache = new SmbExpiringCache<>(
+                configBuilder.getMetadataCacheTimeToLive(fileSystemOptions),
+                configBuilder.getMetadataCacheMaxEntries(fileSystemOptions)
+        );
+        this.listingCache = new SmbExpiringCache<>(
+                configBuilder.getListingCacheTimeToLive(fileSystemOptions),
+                configBuilder.getListingCacheMaxEntries(fileSystemOptions)
+        );
+        this.handleCache = new SmbHandleCache(
+                configBuilder.getHandleCacheIdleTimeout(fileSystemOptions),
+                configBuilder.getHandleCacheMaxEntries(fileSystemOptions)
+        );
+        this.asyncOperations = new SmbAsyncOperations(this, smbTemplate, configBuilder.getAsyncMaxConcurrency(fileSystemOptions));
+    }
+
+    /**
+     * @return non blocking variants of the common operations on this file system.
+     */
+    public SmbAsyncOperations getAsyncOperations() {
+        return asyncOperations;
+    }
+
+    /**
+     * Returns the information of {@code path} from the metadata cache, from a cached listing of its parent folder or,
+     * when neither knows it, from the loader.
+     */
+    SmbFileInfo getFileInfo(String path, SmbExpiringCache.Loader<SmbFileInfo> loader) throws SmbProviderException {
+        return metadataCache.get(path, key -> {
+            SmbFileInfo listed = findInListing(key);
+            return Objects.nonNull(listed) ? listed : loader.load(key);
+        });
+    }
+
+    private SmbFileInfo findInListing(String path) {
+        if (path.isEmpty()) {
+            return null;
+        }
+        Map<String, SmbFileInfo> siblings = listingCache.getIfPresent(parentOf(path));
+        if (Objects.isNull(siblings)) {
+            return null;
+        }
+        return siblings.get(path.substring(path.lastIndexOf('\\') + 1));
+    }
+
+    /**
+     * Returns the children of folder {@code path} by name, in listing order.
+     */
+    Map<String, SmbFileInfo> getChildren(String path, SmbExpiringCache.Loader<Map<String, SmbFileInfo>> loader) throws SmbProviderException {
+        return listingCache.get(path, loader);
+    }
+
+    /**
+     * Leases a read only handle of {@code path} from the handle cache, opened by {@code opener} when none is cached.
+     */
+    SmbHandleCache.Lease leaseFileForRead(String path, SmbHandleCache.Opener opener) throws SmbProviderException {
+        return handleCache.acquire(path, opener);
+    }
+
+    /**
+     * Drops cached information of {@code path}, its cached handle and the cached listing of its parent folder.
+     */
+    void invalidate(String path) {
+        handleCache.invalidate(path);
+        metadataCache.invalidate(path);
+        if (!path.isEmpty()) {
+            listingCache.invalidate(parentOf(path));
+        }
+    }
+
+    /**
+     * Same as {@link #invalidate(String)}, also dropping everything cached below {@code path}.
+     */
+    void invalidateTree(String path) {
+        handleCache.invalidateTree(path);
+        metadataCache.invalidateTree(path);
+        listingCache.invalidateTree(path);
+        if (!path.isEmpty()) {
+            listingCache.invalidate(parentOf(path));
+        }
+    }
+
+    /**
+     * Returns the pool walking the folder trees of this file system, with {@link
+     * SmbFileSystemConfigBuilder#setTraversalParallelism} threads. It is created on first use and shut down with the
+     * file system.
+     */
+    synchronized ForkJoinPool getTraversalPool() {
+        if (Objects.isNull(traversalPool)) {
+            traversalPool = SmbExecutors.newTraversalPool(SmbFileSystemConfigBuilder.getInstance().getTraversalParallelism(getFileSystemOptions()));
+        }
+        return traversalPool;
+    }
+
+    private static String parentOf(String path) {
+        int separator = path.lastIndexOf('\\');
+        return separator < 0 ? "" : path.substring(0, separator);
     }
 
     @Override
@@ -25,4 +130,16 @@ public class SmbFileSystem extends AbstractFileSystem {
         caps.addAll(SmbFileProvider.CAPABILITIES);
     }
 
+    @Override
+    protected void doCloseCommunicationLink() {
+        synchronized (this) {
+            if (Objects.nonNull(traversalPool)) {
+                traversalPool.shutdown();
+                traversalPool = null;
+            }
+        }
+        handleCache.close();
+        smbTemplate.close();
+    }
+
 }
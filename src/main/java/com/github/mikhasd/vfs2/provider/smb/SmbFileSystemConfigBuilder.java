@@ -0,0 +1,571 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import org.apache.commons.vfs2.FileSystem;
+import org.apache.commons.vfs2.FileSystemConfigBuilder;
+import org.apache.commons.vfs2.FileSystemOptions;
+
+import java.time.Duration;
+import java.util.Objects;
+
+public class SmbFileSystemConfigBuilder extends FileSystemConfigBuilder {
+
+    private static final SmbFileSystemConfigBuilder INSTANCE = new SmbFileSystemConfigBuilder();
+
+    private static final String MAX_SESSIONS_PER_HOST = "maxSessionsPerHost";
+    private static final String SESSION_IDLE_TIMEOUT = "sessionIdleTimeout";
+    private static final String KEEP_ALIVE_INTERVAL = "keepAliveInterval";
+    private static final String CONNECTIONS_PER_SHARE = "connectionsPerShare";
+    private static final String METADATA_CACHE_TIME_TO_LIVE = "metadataCacheTimeToLive";
+    private static final String METADATA_CACHE_MAX_ENTRIES = "metadataCacheMaxEntries";
+    private static final String LISTING_CACHE_TIME_TO_LIVE = "listingCacheTimeToLive";
+    private static final String LISTING_CACHE_MAX_ENTRIES = "listingCacheMaxEntries";
+    private static final String READ_CHUNK_SIZE = "readChunkSize";
+    private static final String READ_AHEAD_WINDOW = "readAheadWindow";
+    private static final String WRITE_CHUNK_SIZE = "writeChunkSize";
+    private static final String MAX_WRITES_IN_FLIGHT = "maxWritesInFlight";
+    private static final String RANDOM_ACCESS_BLOCK_SIZE = "randomAccessBlockSize";
+    private static final String RANDOM_ACCESS_BLOCK_COUNT = "randomAccessBlockCount";
+    private static final String COPY_PARALLELISM = "copyParallelism";
+    private static final String TRAVERSAL_PARALLELISM = "traversalParallelism";
+    private static final String DELETE_PARALLELISM = "deleteParallelism";
+    private static final String METRICS_LISTENER = "metricsListener";
+    private static final String HANDLE_CACHE_MAX_ENTRIES = "handleCacheMaxEntries";
+    private static final String HANDLE_CACHE_IDLE_TIMEOUT = "handleCacheIdleTimeout";
+    private static final String MAX_READ_SIZE = "maxReadSize";
+    private static final String MAX_WRITE_SIZE = "maxWriteSize";
+    private static final String MAX_TRANSACT_SIZE = "maxTransactSize";
+    private static final String REQUEST_TIMEOUT = "requestTimeout";
+    private static final String SOCKET_TIMEOUT = "socketTimeout";
+    private static final String CONNECT_TIMEOUT = "connectTimeout";
+    private static final String SOCKET_RECEIVE_BUFFER_SIZE = "socketReceiveBufferSize";
+    private static final String SOCKET_SEND_BUFFER_SIZE = "socketSendBufferSize";
+    private static final String SIGNING_REQUIRED = "signingRequired";
+    private static final String ENCRYPT_DATA = "encryptData";
+    private static final String ASYNC_MAX_CONCURRENCY = "asyncMaxConcurrency";
+    private static final String DOWNLOAD_RANGE_SIZE = "downloadRangeSize";
+    private static final String DOWNLOAD_PARALLELISM = "downloadParallelism";
+    private static final String RECONNECT_BACKOFF = "reconnectBackoff";
+    private static final String RECONNECT_MAX_BACKOFF = "reconnectMaxBackoff";
+    private static final String IDEMPOTENT_RETRIES = "idempotentRetries";
+    private static final String DELTA_BLOCK_SIZE = "deltaBlockSize";
+    private static final String DELTA_PARALLELISM = "deltaParallelism";
+    private static final String REMOTE_COPY_RANGE_SIZE = "remoteCopyRangeSize";
+    private static final String REMOTE_COPY_PARALLELISM = "remoteCopyParallelism";
+
+    static final int DEFAULT_MAX_SESSIONS_PER_HOST = 1;
+    static final Duration DEFAULT_SESSION_IDLE_TIMEOUT = Duration.ofMinutes(1);
+    static final Duration DEFAULT_KEEP_ALIVE_INTERVAL = Duration.ofSeconds(30);
+    static final int DEFAULT_CONNECTIONS_PER_SHARE = 1;
+    static final Duration DEFAULT_METADATA_CACHE_TIME_TO_LIVE = Duration.ZERO;
+    static final int DEFAULT_METADATA_CACHE_MAX_ENTRIES = 10_000;
+    static final Duration DEFAULT_LISTING_CACHE_TIME_TO_LIVE = Duration.ZERO;
+    static final int DEFAULT_LISTING_CACHE_MAX_ENTRIES = 100;
+    static final int DEFAULT_COPY_PARALLELISM = 4;
+    static final int DEFAULT_TRAVERSAL_PARALLELISM = 1;
+    static final int DEFAULT_DELETE_PARALLELISM = 4;
+    static final int DEFAULT_HANDLE_CACHE_MAX_ENTRIES = 0;
+    static final Duration DEFAULT_HANDLE_CACHE_IDLE_TIMEOUT = Duration.ofSeconds(30);
+    static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(5);
+    static final int DEFAULT_ASYNC_MAX_CONCURRENCY = 16;
+    static final int DEFAULT_DOWNLOAD_RANGE_SIZE = 64 * 1024 * 1024;
+    static final int DEFAULT_DOWNLOAD_PARALLELISM = 4;
+    static final Duration DEFAULT_RECONNECT_BACKOFF = Duration.ofMillis(100);
+    static final Duration DEFAULT_RECONNECT_MAX_BACKOFF = Duration.ofSeconds(30);
+    static final int DEFAULT_IDEMPOTENT_RETRIES = 2;
+    static final int DEFAULT_DELTA_BLOCK_SIZE = 1024 * 1024;
+    static final int DEFAULT_DELTA_PARALLELISM = 4;
+    static final int DEFAULT_REMOTE_COPY_RANGE_SIZE = 16 * 1024 * 1024;
+    static final int DEFAULT_REMOTE_COPY_PARALLELISM = 4;
+
+    protected SmbFileSystemConfigBuilder() {
+        super("smb.");
+    }
+
+    public static SmbFileSystemConfigBuilder getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    protected Class<? extends FileSystem> getConfigClass() {
+        return SmbFileSystem.class;
+    }
+
+    /**
+     * Maximum number of authenticated sessions kept open towards the same host, port, domain and user.
+     * Additional sessions are only created when every pooled session is already leased.
+     */
+    public void setMaxSessionsPerHost(FileSystemOptions options, int maxSessions) {
+        setParam(options, MAX_SESSIONS_PER_HOST, maxSessions);
+    }
+
+    public int getMaxSessionsPerHost(FileSystemOptions options) {
+        return getInteger(options, MAX_SESSIONS_PER_HOST, DEFAULT_MAX_SESSIONS_PER_HOST);
+    }
+
+    /**
+     * How long a pooled session may stay unused before it is logged off and its connection released.
+     */
+    public void setSessionIdleTimeout(FileSystemOptions options, Duration idleTimeout) {
+        setParam(options, SESSION_IDLE_TIMEOUT, idleTimeout);
+    }
+
+    public Duration getSessionIdleTimeout(FileSystemOptions options) {
+        return getDuration(options, SESSION_IDLE_TIMEOUT, DEFAULT_SESSION_IDLE_TIMEOUT);
+    }
+
+    /**
+     * Interval between SMB2 ECHO requests sent on pooled connections. {@link Duration#ZERO} disables keepalive.
+     */
+    public void setKeepAliveInterval(FileSystemOptions options, Duration keepAliveInterval) {
+        setParam(options, KEEP_ALIVE_INTERVAL, keepAliveInterval);
+    }
+
+    public Duration getKeepAliveInterval(FileSystemOptions options) {
+        return getDuration(options, KEEP_ALIVE_INTERVAL, DEFAULT_KEEP_ALIVE_INTERVAL);
+    }
+
+    /**
+     * Number of connected disk shares, each over its own session and TCP connection, that operations on a file system
+     * are distributed across. Values above one let throughput scale with the number of concurrent callers.
+     */
+    public void setConnectionsPerShare(FileSystemOptions options, int connections) {
+        setParam(options, CONNECTIONS_PER_SHARE, connections);
+    }
+
+    public int getConnectionsPerShare(FileSystemOptions options) {
+        return getInteger(options, CONNECTIONS_PER_SHARE, DEFAULT_CONNECTIONS_PER_SHARE);
+    }
+
+    /**
+     * How long type, size, last modified time and existence of a path are served from memory before the server is
+     * queried again. Changes made through this provider invalidate the affected entries immediately, changes made by
+     * other clients become visible once the entry expires. {@link Duration#ZERO} disables the cache.
+     */
+    public void setMetadataCacheTimeToLive(FileSystemOptions options, Duration timeToLive) {
+        setParam(options, METADATA_CACHE_TIME_TO_LIVE, timeToLive);
+    }
+
+    public Duration getMetadataCacheTimeToLive(FileSystemOptions options) {
+        return getDuration(options, METADATA_CACHE_TIME_TO_LIVE, DEFAULT_METADATA_CACHE_TIME_TO_LIVE);
+    }
+
+    /**
+     * Maximum number of paths kept in the metadata cache, the least recently used entry is evicted first.
+     */
+    public void setMetadataCacheMaxEntries(FileSystemOptions options, int maxEntries) {
+        setParam(options, METADATA_CACHE_MAX_ENTRIES, maxEntries);
+    }
+
+    public int getMetadataCacheMaxEntries(FileSystemOptions options) {
+        return getInteger(options, METADATA_CACHE_MAX_ENTRIES, DEFAULT_METADATA_CACHE_MAX_ENTRIES);
+    }
+
+    /**
+     * How long the children of a folder are served from memory before it is listed again. The cached entries also
+     * answer type, size and last modified time of those children. {@link Duration#ZERO} disables the cache.
+     */
+    public void setListingCacheTimeToLive(FileSystemOptions options, Duration timeToLive) {
+        setParam(options, LISTING_CACHE_TIME_TO_LIVE, timeToLive);
+    }
+
+    public Duration getListingCacheTimeToLive(FileSystemOptions options) {
+        return getDuration(options, LISTING_CACHE_TIME_TO_LIVE, DEFAULT_LISTING_CACHE_TIME_TO_LIVE);
+    }
+
+    /**
+     * Maximum number of folder listings kept in memory, the least recently used listing is evicted first.
+     */
+    public void setListingCacheMaxEntries(FileSystemOptions options, int maxEntries) {
+        setParam(options, LISTING_CACHE_MAX_ENTRIES, maxEntries);
+    }
+
+    public int getListingCacheMaxEntries(FileSystemOptions options) {
+        return getInteger(options, LISTING_CACHE_MAX_ENTRIES, DEFAULT_LISTING_CACHE_MAX_ENTRIES);
+    }
+
+    /**
+     * Size in bytes of each READ request issued by input streams, capped at the maximum read size negotiated with the
+     * server.
+     */
+    public void setReadChunkSize(FileSystemOptions options, int chunkSize) {
+        setParam(options, READ_CHUNK_SIZE, chunkSize);
+    }
+
+    public int getReadChunkSize(FileSystemOptions options) {
+        return getInteger(options, READ_CHUNK_SIZE, SmbInputStream.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Number of READ requests an input stream keeps in flight ahead of the caller, each holding one chunk sized buffer.
+     * A window of one reads strictly one chunk at a time.
+     */
+    public void setReadAheadWindow(FileSystemOptions options, int window) {
+        setParam(options, READ_AHEAD_WINDOW, window);
+    }
+
+    public int getReadAheadWindow(FileSystemOptions options) {
+        return getInteger(options, READ_AHEAD_WINDOW, SmbInputStream.DEFAULT_WINDOW);
+    }
+
+    /**
+     * Size in bytes of each WRITE request issued by output streams, capped at the maximum write size negotiated with
+     * the server.
+     */
+    public void setWriteChunkSize(FileSystemOptions options, int chunkSize) {
+        setParam(options, WRITE_CHUNK_SIZE, chunkSize);
+    }
+
+    public int getWriteChunkSize(FileSystemOptions options) {
+        return getInteger(options, WRITE_CHUNK_SIZE, SmbOutputStream.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Number of WRITE requests an output stream keeps outstanding before the caller blocks, each holding one chunk
+     * sized buffer.
+     */
+    public void setMaxWritesInFlight(FileSystemOptions options, int maxInFlight) {
+        setParam(options, MAX_WRITES_IN_FLIGHT, maxInFlight);
+    }
+
+    public int getMaxWritesInFlight(FileSystemOptions options) {
+        return getInteger(options, MAX_WRITES_IN_FLIGHT, SmbOutputStream.DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    /**
+     * Size in bytes of the blocks cached by random access content.
+     */
+    public void setRandomAccessBlockSize(FileSystemOptions options, int blockSize) {
+        setParam(options, RANDOM_ACCESS_BLOCK_SIZE, blockSize);
+    }
+
+    public int getRandomAccessBlockSize(FileSystemOptions options) {
+        return getInteger(options, RANDOM_ACCESS_BLOCK_SIZE, SmbRandomAccessContent.DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Number of blocks each random access content keeps cached, the least recently used block is evicted first.
+     */
+    public void setRandomAccessBlockCount(FileSystemOptions options, int blockCount) {
+        setParam(options, RANDOM_ACCESS_BLOCK_COUNT, blockCount);
+    }
+
+    public int getRandomAccessBlockCount(FileSystemOptions options) {
+        return getInteger(options, RANDOM_ACCESS_BLOCK_COUNT, SmbRandomAccessContent.DEFAULT_BLOCK_COUNT);
+    }
+
+    /**
+     * Number of files {@link SmbFileObject#copyFrom} copies concurrently.
+     */
+    public void setCopyParallelism(FileSystemOptions options, int parallelism) {
+        setParam(options, COPY_PARALLELISM, parallelism);
+    }
+
+    public int getCopyParallelism(FileSystemOptions options) {
+        return getInteger(options, COPY_PARALLELISM, DEFAULT_COPY_PARALLELISM);
+    }
+
+    /**
+     * Number of folders {@link SmbFileObject#findFiles(org.apache.commons.vfs2.FileSelector, boolean, java.util.List)}
+     * lists concurrently. Values above one require thread safe selectors, one keeps the sequential traversal.
+     */
+    public void setTraversalParallelism(FileSystemOptions options, int parallelism) {
+        setParam(options, TRAVERSAL_PARALLELISM, parallelism);
+    }
+
+    public int getTraversalParallelism(FileSystemOptions options) {
+        return getInteger(options, TRAVERSAL_PARALLELISM, DEFAULT_TRAVERSAL_PARALLELISM);
+    }
+
+    /**
+     * Maximum number of read only handles kept open for input streams, so files read over and over skip the CREATE
+     * and CLOSE of every stream. Handles keep serving the opened file until they expire, a file replaced by another
+     * client is only seen once its handle is closed. Zero disables the cache.
+     */
+    public void setHandleCacheMaxEntries(FileSystemOptions options, int maxEntries) {
+        setParam(options, HANDLE_CACHE_MAX_ENTRIES, maxEntries);
+    }
+
+    public int getHandleCacheMaxEntries(FileSystemOptions options) {
+        return getInteger(options, HANDLE_CACHE_MAX_ENTRIES, DEFAULT_HANDLE_CACHE_MAX_ENTRIES);
+    }
+
+    /**
+     * How long a cached handle nobody reads from stays open before it is closed.
+     */
+    public void setHandleCacheIdleTimeout(FileSystemOptions options, Duration idleTimeout) {
+        setParam(options, HANDLE_CACHE_IDLE_TIMEOUT, idleTimeout);
+    }
+
+    public Duration getHandleCacheIdleTimeout(FileSystemOptions options) {
+        return getDuration(options, HANDLE_CACHE_IDLE_TIMEOUT, DEFAULT_HANDLE_CACHE_IDLE_TIMEOUT);
+    }
+
+    /**
+     * Largest READ the client negotiates, the server may still grant less. Input streams and random access content only
+     * benefit from sizes above their chunk and block sizes.
+     */
+    public void setMaxReadSize(FileSystemOptions options, int maxReadSize) {
+        setParam(options, MAX_READ_SIZE, maxReadSize);
+    }
+
+    public int getMaxReadSize(FileSystemOptions options) {
+        return getInteger(options, MAX_READ_SIZE, SmbTransportConfig.DEFAULTS.getReadBufferSize());
+    }
+
+    /**
+     * Largest WRITE the client negotiates, the server may still grant less.
+     */
+    public void setMaxWriteSize(FileSystemOptions options, int maxWriteSize) {
+        setParam(options, MAX_WRITE_SIZE, maxWriteSize);
+    }
+
+    public int getMaxWriteSize(FileSystemOptions options) {
+        return getInteger(options, MAX_WRITE_SIZE, SmbTransportConfig.DEFAULTS.getWriteBufferSize());
+    }
+
+    /**
+     * Largest IOCTL and QUERY_DIRECTORY response the client negotiates, the server may still grant less.
+     */
+    public void setMaxTransactSize(FileSystemOptions options, int maxTransactSize) {
+        setParam(options, MAX_TRANSACT_SIZE, maxTransactSize);
+    }
+
+    public int getMaxTransactSize(FileSystemOptions options) {
+        return getInteger(options, MAX_TRANSACT_SIZE, SmbTransportConfig.DEFAULTS.getTransactBufferSize());
+    }
+
+    /**
+     * How long a READ, WRITE or IOCTL may wait for its response before failing.
+     */
+    public void setRequestTimeout(FileSystemOptions options, Duration timeout) {
+        setParam(options, REQUEST_TIMEOUT, timeout);
+    }
+
+    public Duration getRequestTimeout(FileSystemOptions options) {
+        return getDuration(options, REQUEST_TIMEOUT, Duration.ofMillis(SmbTransportConfig.DEFAULTS.getReadTimeout()));
+    }
+
+    /**
+     * How long a blocking socket read may wait for data, {@link Duration#ZERO} waits forever.
+     */
+    public void setSocketTimeout(FileSystemOptions options, Duration timeout) {
+        setParam(options, SOCKET_TIMEOUT, timeout);
+    }
+
+    public Duration getSocketTimeout(FileSystemOptions options) {
+        return getDuration(options, SOCKET_TIMEOUT, Duration.ofMillis(SmbTransportConfig.DEFAULTS.getSoTimeout()));
+    }
+
+    /**
+     * How long establishing the TCP connection may take.
+     */
+    public void setConnectTimeout(FileSystemOptions options, Duration timeout) {
+        setParam(options, CONNECT_TIMEOUT, timeout);
+    }
+
+    public Duration getConnectTimeout(FileSystemOptions options) {
+        return getDuration(options, CONNECT_TIMEOUT, DEFAULT_CONNECT_TIMEOUT);
+    }
+
+    /**
+     * Kernel receive buffer of each connection in bytes, large transfers over high latency links need at least the
+     * bandwidth delay product. Zero keeps the operating system default.
+     */
+    public void setSocketReceiveBufferSize(FileSystemOptions options, int bufferSize) {
+        setParam(options, SOCKET_RECEIVE_BUFFER_SIZE, bufferSize);
+    }
+
+    public int getSocketReceiveBufferSize(FileSystemOptions options) {
+        return getInteger(options, SOCKET_RECEIVE_BUFFER_SIZE, 0);
+    }
+
+    /**
+     * Kernel send buffer of each connection in bytes. Zero keeps the operating system default.
+     */
+    public void setSocketSendBufferSize(FileSystemOptions options, int bufferSize) {
+        setParam(options, SOCKET_SEND_BUFFER_SIZE, bufferSize);
+    }
+
+    public int getSocketSendBufferSize(FileSystemOptions options) {
+        return getInteger(options, SOCKET_SEND_BUFFER_SIZE, 0);
+    }
+
+    /**
+     * Whether every message must be signed, even when the server does not require it.
+     */
+    public void setSigningRequired(FileSystemOptions options, boolean signingRequired) {
+        setParam(options, SIGNING_REQUIRED, signingRequired);
+    }
+
+    public boolean isSigningRequired(FileSystemOptions options) {
+        return getBoolean(options, SIGNING_REQUIRED, SmbTransportConfig.DEFAULTS.isSigningRequired());
+    }
+
+    /**
+     * Whether traffic is encrypted when the negotiated dialect supports it, even when the share does not require it.
+     */
+    public void setEncryptData(FileSystemOptions options, boolean encryptData) {
+        setParam(options, ENCRYPT_DATA, encryptData);
+    }
+
+    public boolean isEncryptData(FileSystemOptions options) {
+        return getBoolean(options, ENCRYPT_DATA, SmbTransportConfig.DEFAULTS.isEncryptData());
+    }
+
+    /**
+     * Number of requests {@link SmbAsyncOperations} keeps in progress at once, each occupying one I/O thread while it
+     * runs. Further requests wait in a queue.
+     */
+    public void setAsyncMaxConcurrency(FileSystemOptions options, int maxConcurrency) {
+        setParam(options, ASYNC_MAX_CONCURRENCY, maxConcurrency);
+    }
+
+    public int getAsyncMaxConcurrency(FileSystemOptions options) {
+        return getInteger(options, ASYNC_MAX_CONCURRENCY, DEFAULT_ASYNC_MAX_CONCURRENCY);
+    }
+
+    SmbTransportConfig getTransportConfig(FileSystemOptions options) {
+        return new SmbTransportConfig(
+                getMaxReadSize(options),
+                getMaxWriteSize(options),
+                getMaxTransactSize(options),
+                getRequestTimeout(options),
+                getSocketTimeout(options),
+                getConnectTimeout(options),
+                getSocketReceiveBufferSize(options),
+                getSocketSendBufferSize(options),
+                isSigningRequired(options),
+                isEncryptData(options)
+        );
+    }
+
+    /**
+     * Number of files or folders {@link SmbFileObject#deleteAll()} lists or deletes concurrently.
+     */
+    public void setDeleteParallelism(FileSystemOptions options, int parallelism) {
+        setParam(options, DELETE_PARALLELISM, parallelism);
+    }
+
+    public int getDeleteParallelism(FileSystemOptions options) {
+        return getInteger(options, DELETE_PARALLELISM, DEFAULT_DELETE_PARALLELISM);
+    }
+
+    /**
+     * Size in bytes of the ranges {@link SmbFileObject#downloadRanges(java.nio.file.Path)} splits a file into. A range
+     * is the unit of work of one handle and the unit a resumed download restarts from.
+     */
+    public void setDownloadRangeSize(FileSystemOptions options, int rangeSize) {
+        setParam(options, DOWNLOAD_RANGE_SIZE, rangeSize);
+    }
+
+    public int getDownloadRangeSize(FileSystemOptions options) {
+        return getInteger(options, DOWNLOAD_RANGE_SIZE, DEFAULT_DOWNLOAD_RANGE_SIZE);
+    }
+
+    /**
+     * Number of ranges {@link SmbFileObject#downloadRanges(java.nio.file.Path)} reads concurrently, each on its own
+     * handle. Handles are spread over the connections configured with {@link #setConnectionsPerShare}.
+     */
+    public void setDownloadParallelism(FileSystemOptions options, int parallelism) {
+        setParam(options, DOWNLOAD_PARALLELISM, parallelism);
+    }
+
+    public int getDownloadParallelism(FileSystemOptions options) {
+        return getInteger(options, DOWNLOAD_PARALLELISM, DEFAULT_DOWNLOAD_PARALLELISM);
+    }
+
+    /**
+     * Delay after a first failed attempt to connect a share before the next attempt, doubled after every further
+     * failure up to {@link #setReconnectMaxBackoff}, with jitter. In between, callers fail with the error of the last
+     * attempt instead of connecting again. Retries of idempotent requests wait the same way.
+     */
+    public void setReconnectBackoff(FileSystemOptions options, Duration backoff) {
+        setParam(options, RECONNECT_BACKOFF, backoff);
+    }
+
+    public Duration getReconnectBackoff(FileSystemOptions options) {
+        return getDuration(options, RECONNECT_BACKOFF, DEFAULT_RECONNECT_BACKOFF);
+    }
+
+    public void setReconnectMaxBackoff(FileSystemOptions options, Duration maxBackoff) {
+        setParam(options, RECONNECT_MAX_BACKOFF, maxBackoff);
+    }
+
+    public Duration getReconnectMaxBackoff(FileSystemOptions options) {
+        return getDuration(options, RECONNECT_MAX_BACKOFF, DEFAULT_RECONNECT_MAX_BACKOFF);
+    }
+
+    /**
+     * Number of times requests that can safely be repeated, metadata lookups, listings and opens for reading, are
+     * retried when the connection fails. Errors returned by the server are not retried, zero disables retries.
+     */
+    public void setIdempotentRetries(FileSystemOptions options, int retries) {
+        setParam(options, IDEMPOTENT_RETRIES, retries);
+    }
+
+    public int getIdempotentRetries(FileSystemOptions options) {
+        return getInteger(options, IDEMPOTENT_RETRIES, DEFAULT_IDEMPOTENT_RETRIES);
+    }
+
+    /**
+     * Size in bytes of the blocks {@link SmbFileObject#deltaUploadFrom(java.nio.file.Path)} compares and rewrites.
+     * Smaller blocks write fewer unchanged bytes around each change at the cost of more requests.
+     */
+    public void setDeltaBlockSize(FileSystemOptions options, int blockSize) {
+        setParam(options, DELTA_BLOCK_SIZE, blockSize);
+    }
+
+    public int getDeltaBlockSize(FileSystemOptions options) {
+        return getInteger(options, DELTA_BLOCK_SIZE, DEFAULT_DELTA_BLOCK_SIZE);
+    }
+
+    /**
+     * Number of blocks {@link SmbFileObject#deltaUploadFrom(java.nio.file.Path)} reads and compares concurrently.
+     */
+    public void setDeltaParallelism(FileSystemOptions options, int parallelism) {
+        setParam(options, DELTA_PARALLELISM, parallelism);
+    }
+
+    public int getDeltaParallelism(FileSystemOptions options) {
+        return getInteger(options, DELTA_PARALLELISM, DEFAULT_DELTA_PARALLELISM);
+    }
+
+    /**
+     * Size of the ranges {@link SmbFileObject#remoteCopyFrom(SmbFileObject)} copies concurrently, each with as many
+     * SRV_COPYCHUNK requests of up to 16 MiB as it needs. A cancelled copy stops at the end of a request.
+     */
+    public void setRemoteCopyRangeSize(FileSystemOptions options, int rangeSize) {
+        setParam(options, REMOTE_COPY_RANGE_SIZE, rangeSize);
+    }
+
+    public int getRemoteCopyRangeSize(FileSystemOptions options) {
+        return getInteger(options, REMOTE_COPY_RANGE_SIZE, DEFAULT_REMOTE_COPY_RANGE_SIZE);
+    }
+
+    /**
+     * Number of ranges {@link SmbFileObject#remoteCopyFrom(SmbFileObject)} copies concurrently.
+     */
+    public void setRemoteCopyParallelism(FileSystemOptions options, int parallelism) {
+        setParam(options, REMOTE_COPY_PARALLELISM, parallelism);
+    }
+
+    public int getRemoteCopyParallelism(FileSystemOptions options) {
+        return getInteger(options, REMOTE_COPY_PARALLELISM, DEFAULT_REMOTE_COPY_PARALLELISM);
+    }
+
+    SmbBackoff getReconnectBackoffPolicy(FileSystemOptions options) {
+        return new SmbBackoff(getReconnectBackoff(options), getReconnectMaxBackoff(options));
+    }
+
+    /**
+     * Listener notified of every request sent by the file system, see {@link SmbMetrics} for a ready to use one.
+     */
+    public void setMetricsListener(FileSystemOptions options, SmbMetricsListener listener) {
+        setParam(options, METRICS_LISTENER, listener);
+    }
+
+    public SmbMetricsListener getMetricsListener(FileSystemOptions options) {
+        SmbMetricsListener listener = getParam(options, METRICS_LISTENER);
+        return Objects.isNull(listener) ? SmbMetricsListener.NONE : listener;
+    }
+}
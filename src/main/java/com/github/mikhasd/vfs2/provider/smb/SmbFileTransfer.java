@@ -0,0 +1,232 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import com.hierynomus.msfscc.fileinformation.FileAllInformation;
+import com.hierynomus.smbj.io.ByteChunkProvider;
+import com.hierynomus.smbj.share.File;
+import com.hierynomus.smbj.share.TreeConnect;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Copies between a local {@link FileChannel} and an SMB file without going through streams.
+ * <p>
+ * The local side is memory mapped one chunk at a time. Uploads hand the mapping to smbj as the payload of each WRITE,
+ * downloads copy each READ into the mapping through a recycled buffer, so the content skips the stream buffers and the
+ * local read and write calls. Up to {@code maxInFlight} requests are outstanding.
+ */
+class SmbFileTransfer {
+
+    private final File file;
+    private final int maxInFlight;
+    private final SmbMetricsListener metrics;
+    private final int writeChunkSize;
+    private final int readChunkSize;
+
+    SmbFileTransfer(File file, int writeChunkSize, int readChunkSize, int maxInFlight, SmbMetricsListener metrics) {
+        this.file = file;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.metrics = metrics;
+        TreeConnect treeConnect = file.getDiskShare().getTreeConnect();
+        int maxWriteSize = Math.min(treeConnect.getConfig().getWriteBufferSize(), treeConnect.getNegotiatedProtocol().getMaxWriteSize());
+        this.writeChunkSize = Math.max(1, Math.min(writeChunkSize, maxWriteSize));
+        this.readChunkSize = Math.max(1, Math.min(readChunkSize, treeConnect.getNegotiatedProtocol().getMaxReadSize()));
+    }
+
+    /**
+     * Writes the whole content of {@code source} to the file, starting at offset 0.
+     *
+     * @return the number of bytes written.
+     */
+    long upload(FileChannel source) throws IOException {
+        final long size = source.size();
+        final Deque<Pending> inFlight = new ArrayDeque<>();
+        try {
+            for (long offset = 0; offset < size; offset += writeChunkSize) {
+                if (inFlight.size() >= maxInFlight) {
+                    await(inFlight.poll(), SmbOperation.WRITE);
+                }
+                int length = (int) Math.min(writeChunkSize, size - offset);
+                ByteBuffer chunk = source.map(FileChannel.MapMode.READ_ONLY, offset, length);
+                final long start = System.nanoTime();
+                try {
+                    inFlight.add(new Pending(null, offset, length, start, file.writeAsync(new MappedChunkProvider(chunk, offset))));
+                } catch (RuntimeException e) {
+                    SmbOperation.WRITE.failed(metrics, start, e);
+                    throw new IOException(e);
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                await(inFlight.poll(), SmbOperation.WRITE);
+            }
+        } finally {
+            abandon(inFlight);
+        }
+        return size;
+    }
+
+    /**
+     * Replaces the content of {@code target} with the content of the file. Only the allocated ranges of a sparse file are
+     * read, the rest of {@code target} is never written and stays a hole where the local file system supports them.
+     *
+     * @return the number of bytes read.
+     */
+    long download(FileChannel target) throws IOException {
+        final FileAllInformation info = file.getFileInformation();
+        final long size = info.getStandardInformation().getEndOfFile();
+        final List<SmbSparseFiles.Range> ranges;
+        if (SmbSparseFiles.isSparse(info.getBasicInformation().getFileAttributes())) {
+            ranges = SmbSparseFiles.allocatedRanges(file, size, metrics);
+            target.truncate(0);
+        } else {
+            ranges = Collections.singletonList(new SmbSparseFiles.Range(0, size));
+        }
+        final Deque<Pending> inFlight = new ArrayDeque<>();
+        final Deque<byte[]> freeBuffers = new ArrayDeque<>();
+        long read = 0;
+        try {
+            for (SmbSparseFiles.Range range : ranges) {
+                for (long offset = range.offset; offset < range.end(); offset += readChunkSize) {
+                    if (inFlight.size() >= maxInFlight) {
+                        freeBuffers.add(await(inFlight.poll(), SmbOperation.READ));
+                    }
+                    int length = (int) Math.min(readChunkSize, range.end() - offset);
+                    ByteBuffer chunk = target.map(FileChannel.MapMode.READ_WRITE, offset, length);
+                    byte[] buffer = freeBuffers.isEmpty() ? new byte[readChunkSize] : freeBuffers.poll();
+                    final long chunkOffset = offset;
+                    Future<Integer> future = SmbExecutors.readAhead().submit(() -> readFully(buffer, chunk, chunkOffset));
+                    inFlight.add(new Pending(buffer, offset, length, System.nanoTime(), future));
+                    read += length;
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                await(inFlight.poll(), SmbOperation.READ);
+            }
+        } finally {
+            abandon(inFlight);
+        }
+        if (target.size() < size) {
+            // the file ends with a hole, only its last byte is written to give the target its size
+            target.write(ByteBuffer.allocate(1), size - 1);
+        }
+        target.truncate(size);
+        return read;
+    }
+
+    private int readFully(byte[] buffer, ByteBuffer chunk, long offset) throws IOException {
+        int length = chunk.remaining();
+        int total = 0;
+        while (total < length) {
+            int read = file.read(buffer, offset + total, total, length - total);
+            if (read <= 0) {
+                throw new IOException("Unexpected end of file at offset " + (offset + total));
+            }
+            total += read;
+        }
+        chunk.put(buffer, 0, length);
+        return total;
+    }
+
+    /**
+     * @return the buffer of the completed request, free for the next one.
+     */
+    private byte[] await(Pending pending, SmbOperation operation) throws IOException {
+        try {
+            int count = pending.future.get();
+            if (count != pending.length) {
+                IOException e = new IOException("Short " + operation + " at offset " + pending.offset + ", " + count + " of " + pending.length + " bytes transferred");
+                operation.failed(metrics, pending.start, e);
+                throw e;
+            }
+            operation.succeeded(metrics, pending.start);
+            if (operation == SmbOperation.WRITE) {
+                metrics.bytesWritten(pending.length);
+            } else {
+                metrics.bytesRead(pending.length);
+            }
+            return pending.buffer;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for SMB " + operation);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            operation.failed(metrics, pending.start, cause);
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+    }
+
+    /**
+     * Waits for the requests still in flight even when interrupted, the caller closes the handle and the mapping right
+     * after. The interrupt is restored once they are done.
+     */
+    private static void abandon(Deque<Pending> inFlight) {
+        boolean interrupted = false;
+        while (!inFlight.isEmpty()) {
+            try {
+                inFlight.peek().future.get();
+                inFlight.poll();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            } catch (ExecutionException ignored) {
+                // a failure has already been reported, the remaining requests are abandoned
+                inFlight.poll();
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Payload of one WRITE, read by smbj straight from the mapped region when the request is encoded.
+     */
+    static final class MappedChunkProvider extends ByteChunkProvider {
+        private final ByteBuffer chunk;
+
+        MappedChunkProvider(ByteBuffer chunk, long fileOffset) {
+            this.chunk = chunk;
+            this.offset = fileOffset;
+        }
+
+        @Override
+        public boolean isAvailable() {
+            return chunk.hasRemaining();
+        }
+
+        @Override
+        protected int getChunk(byte[] buffer) {
+            int length = Math.min(buffer.length, chunk.remaining());
+            chunk.get(buffer, 0, length);
+            return length;
+        }
+
+        @Override
+        public int bytesLeft() {
+            return chunk.remaining();
+        }
+    }
+
+    private static final class Pending {
+        private final byte[] buffer;
+        private final long offset;
+        private final int length;
+        private final long start;
+        private final Future<Integer> future;
+
+        private Pending(byte[] buffer, long offset, int length, long start, Future<Integer> future) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.length = length;
+            this.start = start;
+            this.future = future;
+        }
+    }
+}
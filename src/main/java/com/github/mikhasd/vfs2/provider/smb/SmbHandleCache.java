@@ -0,0 +1,240 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import com.hierynomus.smbj.share.File;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Read only file handles kept open per SMB path, used per file system so repeated reads of the same files skip the
+ * CREATE and CLOSE round trips.
+ * <p>
+ * Concurrent readers of a path share one handle through offset based reads. Handles are reference counted and closed
+ * once nobody has read from them for the idle timeout, when the cache is full and another path needs a handle, or when
+ * the path is changed through this provider.
+ */
+class SmbHandleCache implements Closeable {
+
+    interface Opener {
+        File open(String path) throws SmbProviderException;
+    }
+
+    private static final long MIN_SWEEP_INTERVAL_MILLIS = 1_000L;
+
+    private final long idleTimeoutMillis;
+    private final int maxEntries;
+    private final Map<String, Handle> handles = new LinkedHashMap<>(16, 0.75f, true);
+    private ScheduledFuture<?> sweeper;
+
+    SmbHandleCache(Duration idleTimeout, int maxEntries) {
+        this.idleTimeoutMillis = idleTimeout.toMillis();
+        this.maxEntries = maxEntries;
+    }
+
+    boolean isEnabled() {
+        return idleTimeoutMillis > 0 && maxEntries > 0;
+    }
+
+    /**
+     * Leases the cached handle of {@code path}, opening one with the opener when none is cached. Closing the lease
+     * hands the handle back, it is only closed once every lease is released and the handle left the cache.
+     */
+    Lease acquire(String path, Opener opener) throws SmbProviderException {
+        if (isEnabled()) {
+            Handle cached = leaseCached(path);
+            if (Objects.nonNull(cached)) {
+                return new Lease(cached);
+            }
+        }
+        Handle handle = new Handle(path, opener.open(path));
+        if (isEnabled()) {
+            cache(handle);
+        }
+        return new Lease(handle);
+    }
+
+    private Handle leaseCached(String path) {
+        Handle stale = null;
+        synchronized (handles) {
+            Handle handle = handles.get(path);
+            if (Objects.isNull(handle)) {
+                return null;
+            }
+            if (handle.isConnected()) {
+                handle.leases++;
+                return handle;
+            }
+            handles.remove(path);
+            handle.cached = false;
+            if (handle.leases == 0) {
+                stale = handle;
+            }
+        }
+        if (Objects.nonNull(stale)) {
+            stale.close();
+        }
+        return null;
+    }
+
+    private void cache(Handle handle) {
+        Handle evicted = null;
+        synchronized (handles) {
+            if (handles.containsKey(handle.path)) {
+                // another reader cached its handle first, this one is closed with its only lease
+                return;
+            }
+            if (handles.size() >= maxEntries) {
+                evicted = removeLeastRecentlyUsedIdle();
+                if (Objects.isNull(evicted)) {
+                    return;
+                }
+            }
+            handle.cached = true;
+            handles.put(handle.path, handle);
+            startSweeper();
+        }
+        if (Objects.nonNull(evicted)) {
+            evicted.close();
+        }
+    }
+
+    private Handle removeLeastRecentlyUsedIdle() {
+        Iterator<Handle> iterator = handles.values().iterator();
+        while (iterator.hasNext()) {
+            Handle candidate = iterator.next();
+            if (candidate.leases == 0) {
+                iterator.remove();
+                candidate.cached = false;
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private void startSweeper() {
+        if (Objects.isNull(sweeper)) {
+            long interval = Math.max(MIN_SWEEP_INTERVAL_MILLIS, idleTimeoutMillis / 2);
+            sweeper = SmbExecutors.scheduler().scheduleWithFixedDelay(this::closeIdle, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void release(Handle handle) {
+        synchronized (handles) {
+            handle.leases--;
+            handle.lastReleased = System.currentTimeMillis();
+            if (handle.leases > 0 || handle.cached) {
+                return;
+            }
+        }
+        handle.close();
+    }
+
+    private void closeIdle() {
+        long now = System.currentTimeMillis();
+        drop(handle -> handle.leases == 0 && now - handle.lastReleased >= idleTimeoutMillis);
+    }
+
+    /**
+     * Closes the handle cached for {@code path}, or once its last reader is done when it is still being read from.
+     * Must be called before changing the file so the idle handle does not get in the way of the change.
+     */
+    void invalidate(String path) {
+        drop(handle -> handle.path.equals(path));
+    }
+
+    /**
+     * Same as {@link #invalidate(String)} for {@code path} and every path below it.
+     */
+    void invalidateTree(String path) {
+        String prefix = path.isEmpty() ? "" : path + '\\';
+        drop(handle -> handle.path.equals(path) || handle.path.startsWith(prefix));
+    }
+
+    private void drop(Predicate<Handle> filter) {
+        if (!isEnabled()) {
+            return;
+        }
+        List<Handle> idle = new ArrayList<>();
+        synchronized (handles) {
+            Iterator<Handle> iterator = handles.values().iterator();
+            while (iterator.hasNext()) {
+                Handle candidate = iterator.next();
+                if (filter.test(candidate)) {
+                    iterator.remove();
+                    candidate.cached = false;
+                    if (candidate.leases == 0) {
+                        idle.add(candidate);
+                    }
+                }
+            }
+        }
+        for (Handle handle : idle) {
+            handle.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (handles) {
+            if (Objects.nonNull(sweeper)) {
+                sweeper.cancel(false);
+                sweeper = null;
+            }
+        }
+        drop(handle -> true);
+    }
+
+    private static final class Handle {
+        private final String path;
+        private final File file;
+        private int leases = 1;
+        private long lastReleased;
+        private boolean cached;
+
+        private Handle(String path, File file) {
+            this.path = path;
+            this.file = file;
+        }
+
+        private boolean isConnected() {
+            return file.getDiskShare().isConnected();
+        }
+
+        private void close() {
+            file.closeSilently();
+        }
+    }
+
+    /**
+     * Shared use of a cached handle by a single reader.
+     */
+    final class Lease implements Closeable {
+        private final Handle handle;
+        private boolean released;
+
+        private Lease(Handle handle) {
+            this.handle = handle;
+        }
+
+        File getFile() {
+            return handle.file;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                release(handle);
+            }
+        }
+    }
+}
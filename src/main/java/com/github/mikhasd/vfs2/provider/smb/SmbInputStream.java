@@ -2,36 +2,293 @@ package com.github.mikhasd.vfs2.provider.smb;
 
 import com.hierynomus.smbj.share.File;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Sequential input stream that keeps a window of READ requests in flight.
+ * <p>
+ * The file is read in fixed size chunks into a ring of reusable buffers. Every chunk is requested ahead of time from
+ * the bounded read-ahead pool shared by every stream and handed out in order, so the link stays busy while the caller
+ * consumes earlier chunks.
+ */
 public class SmbInputStream extends InputStream {
+
+    static final int DEFAULT_CHUNK_SIZE = 256 * 1024;
+    static final int DEFAULT_WINDOW = 4;
+
     private final File file;
-    private final InputStream inputStream;
+    private final Closeable handle;
+    private final SmbMetricsListener metrics;
+    private final ExecutorService executor;
+    private final int chunkSize;
+    private final Chunk[] ring;
+    // -1 until needed by a skip when it was not known at open
+    private long size;
+    private long nextRequestOffset;
+    private boolean endOfFileRequested;
+    private int head;
+    private Chunk current;
+    private int currentPosition;
+    private boolean closed;
 
     public SmbInputStream(File file) {
+        this(file, DEFAULT_CHUNK_SIZE, DEFAULT_WINDOW);
+    }
+
+    public SmbInputStream(File file, int chunkSize, int window) {
+        this(file, chunkSize, window, SmbMetricsListener.NONE);
+    }
+
+    SmbInputStream(File file, int chunkSize, int window, SmbMetricsListener metrics) {
+        this(file, file, -1, chunkSize, window, metrics);
+    }
+
+    /**
+     * @param handle closed instead of {@code file} when the stream is closed, so a shared handle can be handed back.
+     * @param size   the size of the file when it is known at open, -1 to query it if a skip needs it.
+     */
+    SmbInputStream(File file, Closeable handle, long size, int chunkSize, int window, SmbMetricsListener metrics) {
+        this(file, handle, size, chunkSize, window, metrics, SmbExecutors.readAhead());
+    }
+
+    SmbInputStream(File file, Closeable handle, long size, int chunkSize, int window, SmbMetricsListener metrics, ExecutorService executor) {
         this.file = file;
-        this.inputStream = file.getInputStream();
+        this.handle = handle;
+        this.size = size;
+        this.metrics = metrics;
+        this.executor = executor;
+        this.chunkSize = Math.max(1, Math.min(chunkSize, maxReadSize(file)));
+        this.ring = new Chunk[Math.max(1, window)];
+        for (int i = 0; i < ring.length; i++) {
+            ring[i] = new Chunk(this.chunkSize);
+        }
+        requestAll();
+    }
+
+    private static int maxReadSize(File file) {
+        return file.getDiskShare().getTreeConnect().getNegotiatedProtocol().getMaxReadSize();
+    }
+
+    private void requestAll() {
+        for (int i = 0; i < ring.length; i++) {
+            request(ring[(head + i) % ring.length]);
+        }
+    }
+
+    private void request(Chunk chunk) {
+        chunk.length = 0;
+        if (endOfFileRequested) {
+            chunk.pending = null;
+            return;
+        }
+        final long offset = nextRequestOffset;
+        chunk.offset = offset;
+        nextRequestOffset += chunkSize;
+        // claimed by the read once it starts, or by discardPending to keep it from starting
+        final AtomicBoolean claimed = new AtomicBoolean();
+        chunk.claimed = claimed;
+        chunk.pending = executor.submit(() -> claimed.compareAndSet(false, true) ? readFully(chunk.buffer, offset) : 0);
+    }
+
+    private int readFully(byte[] buffer, long offset) {
+        int total = 0;
+        while (total < buffer.length) {
+            final long start = System.nanoTime();
+            final int read;
+            try {
+                read = file.read(buffer, offset + total, total, buffer.length - total);
+            } catch (RuntimeException e) {
+                SmbOperation.READ.failed(metrics, start, e);
+                throw e;
+            }
+            SmbOperation.READ.succeeded(metrics, start);
+            if (read <= 0) {
+                break;
+            }
+            metrics.bytesRead(read);
+            total += read;
+        }
+        return total;
+    }
+
+    private boolean fillCurrent() throws IOException {
+        if (Objects.nonNull(current)) {
+            return true;
+        }
+        Chunk chunk = ring[head];
+        if (Objects.isNull(chunk.pending)) {
+            return false;
+        }
+        chunk.length = await(chunk.pending);
+        chunk.pending = null;
+        if (chunk.length < chunkSize) {
+            endOfFileRequested = true;
+        }
+        if (chunk.length == 0) {
+            return false;
+        }
+        current = chunk;
+        currentPosition = 0;
+        return true;
+    }
+
+    private void advance() {
+        Chunk consumed = current;
+        current = null;
+        head = (head + 1) % ring.length;
+        request(consumed);
+    }
+
+    private static int await(Future<Integer> pending) throws IOException {
+        try {
+            return pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for SMB read");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
     }
 
     @Override
     public int read() throws IOException {
-        return inputStream.read();
+        ensureOpen();
+        if (!fillCurrent()) {
+            return -1;
+        }
+        int value = current.buffer[currentPosition++] & 0xFF;
+        if (currentPosition == current.length) {
+            advance();
+        }
+        return value;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        Objects.requireNonNull(b);
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (!fillCurrent()) {
+            return -1;
+        }
+        int count = Math.min(len, current.length - currentPosition);
+        System.arraycopy(current.buffer, currentPosition, b, off, count);
+        currentPosition += count;
+        if (currentPosition == current.length) {
+            advance();
+        }
+        return count;
     }
 
     @Override
-    public int read(byte[] b) throws IOException {
-        return inputStream.read(b);
+    public long skip(long n) throws IOException {
+        ensureOpen();
+        if (n <= 0) {
+            return 0;
+        }
+        if (!fillCurrent()) {
+            return 0;
+        }
+        if (n < current.length - currentPosition) {
+            currentPosition += (int) n;
+            return n;
+        }
+        long position = current.offset + currentPosition;
+        long target = position + n;
+        if (size < 0) {
+            size = file.getFileInformation().getStandardInformation().getEndOfFile();
+        }
+        target = Math.min(target, Math.max(size, position));
+        discardPending();
+        current = null;
+        head = 0;
+        nextRequestOffset = target;
+        endOfFileRequested = false;
+        requestAll();
+        return target - position;
     }
 
     @Override
-    public int read(byte[] b, int off, int len) throws IOException {
-        return inputStream.read(b, off, len);
+    public int available() throws IOException {
+        ensureOpen();
+        return Objects.isNull(current) ? 0 : current.length - currentPosition;
+    }
+
+    /**
+     * Abandons the requested chunks. Reads that have not started are kept from starting, the others are waited for as
+     * they still write into the buffers and use the handle.
+     */
+    private void discardPending() {
+        boolean interrupted = false;
+        for (Chunk chunk : ring) {
+            Future<Integer> pending = chunk.pending;
+            chunk.pending = null;
+            if (Objects.isNull(pending)) {
+                continue;
+            }
+            if (chunk.claimed.compareAndSet(false, true)) {
+                pending.cancel(false);
+                continue;
+            }
+            while (true) {
+                try {
+                    pending.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException ignored) {
+                    // the result is discarded, failures of abandoned reads are irrelevant
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     @Override
     public void close() throws IOException {
-        inputStream.close();
-        file.close();
+        if (closed) {
+            return;
+        }
+        closed = true;
+        discardPending();
+        handle.close();
+    }
+
+    private static final class Chunk {
+        private final byte[] buffer;
+        private long offset;
+        private int length;
+        private Future<Integer> pending;
+        private AtomicBoolean claimed;
+
+        private Chunk(int size) {
+            this.buffer = new byte[size];
+        }
     }
 }
@@ -0,0 +1,209 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import com.hierynomus.mserref.NtStatus;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * In-memory {@link SmbMetricsListener} keeping counts, failures and a latency histogram per operation.
+ * <p>
+ * Latencies are counted in power of two buckets of microseconds, so percentiles are upper bounds accurate to a factor
+ * of two. One instance can be shared by several file systems to aggregate them.
+ */
+public class SmbMetrics implements SmbMetricsListener, SmbMetricsMXBean {
+
+    private static final int BUCKETS = 40;
+    private static final String UNKNOWN_STATUS = "CLIENT_ERROR";
+
+    private final Map<SmbOperation, OperationStats> operations = new EnumMap<>(SmbOperation.class);
+    private final Map<String, LongAdder> failuresByStatus = new ConcurrentHashMap<>();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder reconnects = new LongAdder();
+
+    public SmbMetrics() {
+        for (SmbOperation operation : SmbOperation.values()) {
+            operations.put(operation, new OperationStats());
+        }
+    }
+
+    @Override
+    public void operationSucceeded(SmbOperation operation, long durationNanos) {
+        operations.get(operation).record(durationNanos, false);
+    }
+
+    @Override
+    public void operationFailed(SmbOperation operation, long durationNanos, NtStatus status) {
+        operations.get(operation).record(durationNanos, true);
+        String key = Objects.isNull(status) ? UNKNOWN_STATUS : status.name();
+        failuresByStatus.computeIfAbsent(key, k -> new LongAdder()).increment();
+    }
+
+    @Override
+    public void bytesRead(long bytes) {
+        bytesRead.add(bytes);
+    }
+
+    @Override
+    public void bytesWritten(long bytes) {
+        bytesWritten.add(bytes);
+    }
+
+    @Override
+    public void reconnected(String hostname, String shareName) {
+        reconnects.increment();
+    }
+
+    public long getCount(SmbOperation operation) {
+        return operations.get(operation).count.sum();
+    }
+
+    public long getFailureCount(SmbOperation operation) {
+        return operations.get(operation).failures.sum();
+    }
+
+    public Duration getTotalTime(SmbOperation operation) {
+        return Duration.ofNanos(operations.get(operation).totalNanos.sum());
+    }
+
+    /**
+     * @param percentile between 0 and 1.
+     * @return the upper bound of the histogram bucket holding the given percentile, {@link Duration#ZERO} when the
+     * operation was never recorded.
+     */
+    public Duration getLatencyPercentile(SmbOperation operation, double percentile) {
+        return operations.get(operation).percentile(percentile);
+    }
+
+    /**
+     * @return counts of operations that took less than {@code 2^i} microseconds and at least half of that, at index
+     * {@code i}.
+     */
+    public long[] getLatencyHistogram(SmbOperation operation) {
+        AtomicLongArray histogram = operations.get(operation).histogram;
+        long[] copy = new long[histogram.length()];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = histogram.get(i);
+        }
+        return copy;
+    }
+
+    @Override
+    public Map<String, Long> getOperationCounts() {
+        return byOperation(stats -> stats.count.sum());
+    }
+
+    @Override
+    public Map<String, Long> getOperationFailures() {
+        return byOperation(stats -> stats.failures.sum());
+    }
+
+    @Override
+    public Map<String, Double> getMeanLatencyMillis() {
+        return byOperationAsDouble(OperationStats::meanMillis);
+    }
+
+    @Override
+    public Map<String, Double> getP99LatencyMillis() {
+        return byOperationAsDouble(stats -> stats.percentile(0.99).toNanos() / 1_000_000d);
+    }
+
+    @Override
+    public Map<String, Long> getFailuresByStatus() {
+        Map<String, Long> failures = new LinkedHashMap<>();
+        failuresByStatus.forEach((status, count) -> failures.put(status, count.sum()));
+        return failures;
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public long getReconnects() {
+        return reconnects.sum();
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server under
+     * {@code com.github.mikhasd.vfs2.provider.smb:type=SmbMetrics,name=<name>}.
+     *
+     * @return the name to unregister the bean with.
+     */
+    public ObjectName registerMBean(String name) throws JMException {
+        ObjectName objectName = new ObjectName(getClass().getPackage().getName() + ":type=SmbMetrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return objectName;
+    }
+
+    private Map<String, Long> byOperation(ToLongFunction<OperationStats> value) {
+        Map<String, Long> values = new LinkedHashMap<>();
+        operations.forEach((operation, stats) -> values.put(operation.name(), value.applyAsLong(stats)));
+        return values;
+    }
+
+    private Map<String, Double> byOperationAsDouble(ToDoubleFunction<OperationStats> value) {
+        Map<String, Double> values = new LinkedHashMap<>();
+        operations.forEach((operation, stats) -> values.put(operation.name(), value.applyAsDouble(stats)));
+        return values;
+    }
+
+    private static final class OperationStats {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+        private void record(long durationNanos, boolean failed) {
+            count.increment();
+            if (failed) {
+                failures.increment();
+            }
+            totalNanos.add(durationNanos);
+            long micros = Math.max(0, durationNanos / 1_000);
+            histogram.incrementAndGet(Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros)));
+        }
+
+        private double meanMillis() {
+            long total = count.sum();
+            return total == 0 ? 0d : totalNanos.sum() / 1_000_000d / total;
+        }
+
+        private Duration percentile(double percentile) {
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                total += histogram.get(i);
+            }
+            if (total == 0) {
+                return Duration.ZERO;
+            }
+            long threshold = (long) Math.ceil(total * Math.min(1d, Math.max(0d, percentile)));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += histogram.get(i);
+                if (seen >= threshold) {
+                    return Duration.ofNanos((1L << i) * 1_000);
+                }
+            }
+            return Duration.ofNanos((1L << (BUCKETS - 1)) * 1_000);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import com.hierynomus.mserref.NtStatus;
+
+/**
+ * Receives the outcome of every request the provider sends to the server.
+ * <p>
+ * Listeners are registered per file system with {@link SmbFileSystemConfigBuilder#setMetricsListener} and are called
+ * synchronously from the threads doing the I/O, so implementations must be thread safe and cheap. {@link SmbMetrics}
+ * records counts, latency histograms and transferred bytes and can be exposed over JMX.
+ */
+public interface SmbMetricsListener {
+
+    SmbMetricsListener NONE = new SmbMetricsListener() {
+    };
+
+    default void operationSucceeded(SmbOperation operation, long durationNanos) {
+    }
+
+    /**
+     * @param status the status returned by the server, {@code null} when the operation failed on the client side or
+     *               the connection was lost.
+     */
+    default void operationFailed(SmbOperation operation, long durationNanos, NtStatus status) {
+    }
+
+    default void bytesRead(long bytes) {
+    }
+
+    default void bytesWritten(long bytes) {
+    }
+
+    /**
+     * Called when a share whose connection was lost has been connected again.
+     */
+    default void reconnected(String hostname, String shareName) {
+    }
+}
@@ -0,0 +1,25 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link SmbMetrics}, maps are keyed by {@link SmbOperation} or NT status name.
+ */
+public interface SmbMetricsMXBean {
+
+    Map<String, Long> getOperationCounts();
+
+    Map<String, Long> getOperationFailures();
+
+    Map<String, Double> getMeanLatencyMillis();
+
+    Map<String, Double> getP99LatencyMillis();
+
+    Map<String, Long> getFailuresByStatus();
+
+    long getBytesRead();
+
+    long getBytesWritten();
+
+    long getReconnects();
+}
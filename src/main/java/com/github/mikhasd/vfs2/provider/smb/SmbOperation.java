@@ -0,0 +1,46 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import com.hierynomus.mserref.NtStatus;
+import com.hierynomus.mssmb2.SMBApiException;
+
+/**
+ * Operations reported to a {@link SmbMetricsListener}, with the SMB2 commands each one sends.
+ */
+public enum SmbOperation {
+    /** CREATE of a file handle. */
+    OPEN_FILE,
+    /** CREATE of a directory handle. */
+    OPEN_DIRECTORY,
+    /** CREATE, QUERY_INFO and CLOSE. */
+    GET_FILE_INFORMATION,
+    /** CREATE and CLOSE of a new directory. */
+    MKDIR,
+    /** CREATE with delete on close and CLOSE. */
+    RM,
+    /** CREATE with delete on close and CLOSE of an empty folder. */
+    RMDIR,
+    /** A single READ. */
+    READ,
+    /** A single WRITE. */
+    WRITE,
+    /** A single QUERY_DIRECTORY, one page of a folder listing. */
+    QUERY_DIRECTORY,
+    /** SET_INFO giving an open file or folder its new name. */
+    RENAME,
+    /** A single IOCTL, such as a server-side copy or a sparse file control. */
+    IOCTL,
+    /** CHANGE_NOTIFY, from the request until the server reports a change. */
+    CHANGE_NOTIFY;
+
+    void succeeded(SmbMetricsListener metrics, long startNanos) {
+        metrics.operationSucceeded(this, System.nanoTime() - startNanos);
+    }
+
+    void failed(SmbMetricsListener metrics, long startNanos, Throwable cause) {
+        failed(metrics, startNanos, cause instanceof SMBApiException ? ((SMBApiException) cause).getStatus() : null);
+    }
+
+    void failed(SmbMetricsListener metrics, long startNanos, NtStatus status) {
+        metrics.operationFailed(this, System.nanoTime() - startNanos, status);
+    }
+}
@@ -0,0 +1,229 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import com.hierynomus.smbj.share.File;
+import com.hierynomus.smbj.share.TreeConnect;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Write-behind output stream that keeps several WRITE requests outstanding.
+ * <p>
+ * Caller writes are gathered into chunks of at most the negotiated write size, every full chunk is sent with an
+ * asynchronous WRITE and the caller only blocks once all in-flight buffers are taken. Writes complete in order and the
+ * first failure is reported by the next {@link #write}, {@link #flush} or {@link #close} call, every later call
+ * reports that same failure.
+ */
+public class SmbOutputStream extends OutputStream {
+
+    static final int DEFAULT_CHUNK_SIZE = 256 * 1024;
+    static final int DEFAULT_MAX_IN_FLIGHT = 4;
+
+    private final File file;
+    private final SmbMetricsListener metrics;
+    private final int maxInFlight;
+    private final Deque<PendingWrite> inFlight = new ArrayDeque<>();
+    private final Deque<byte[]> freeBuffers = new ArrayDeque<>();
+    private byte[] buffer;
+    private int position;
+    private long offset;
+    private IOException failure;
+    private boolean closed;
+
+    public SmbOutputStream(File file, boolean append) {
+        this(file, append, DEFAULT_CHUNK_SIZE, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    public SmbOutputStream(File file, boolean append, int chunkSize, int maxInFlight) {
+        this(file, append, chunkSize, maxInFlight, SmbMetricsListener.NONE);
+    }
+
+    SmbOutputStream(File file, boolean append, int chunkSize, int maxInFlight, SmbMetricsListener metrics) {
+        this.file = file;
+        this.metrics = metrics;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.buffer = new byte[Math.max(1, Math.min(chunkSize, maxWriteSize(file)))];
+        this.offset = append ? file.getFileInformation().getStandardInformation().getEndOfFile() : 0L;
+    }
+
+    private static int maxWriteSize(File file) {
+        TreeConnect treeConnect = file.getDiskShare().getTreeConnect();
+        return Math.min(treeConnect.getConfig().getWriteBufferSize(), treeConnect.getNegotiatedProtocol().getMaxWriteSize());
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        buffer[position++] = (byte) b;
+        if (position == buffer.length) {
+            sendBuffer();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        Objects.requireNonNull(b);
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        while (len > 0) {
+            int count = Math.min(len, buffer.length - position);
+            System.arraycopy(b, off, buffer, position, count);
+            position += count;
+            off += count;
+            len -= count;
+            if (position == buffer.length) {
+                sendBuffer();
+            }
+        }
+    }
+
+    private void sendBuffer() throws IOException {
+        if (position == 0) {
+            return;
+        }
+        while (inFlight.size() >= maxInFlight) {
+            completeOldest();
+        }
+        throwIfFailed();
+        final long start = System.nanoTime();
+        try {
+            Future<Integer> future = file.writeAsync(buffer, offset, 0, position);
+            inFlight.add(new PendingWrite(buffer, offset, position, start, future));
+        } catch (RuntimeException e) {
+            SmbOperation.WRITE.failed(metrics, start, e);
+            failure = new IOException(e);
+            throw failure;
+        }
+        offset += position;
+        position = 0;
+        buffer = freeBuffers.isEmpty() ? new byte[buffer.length] : freeBuffers.poll();
+    }
+
+    private void completeOldest() throws IOException {
+        PendingWrite pending = inFlight.poll();
+        try {
+            int written = pending.future.get();
+            if (written == pending.length) {
+                SmbOperation.WRITE.succeeded(metrics, pending.start);
+                metrics.bytesWritten(pending.length);
+            } else {
+                IOException e = new IOException("Short write at offset " + pending.offset + ", " + written + " of " + pending.length + " bytes written");
+                SmbOperation.WRITE.failed(metrics, pending.start, e);
+                recordFailure(e);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // still in flight, its buffer is not free and close waits for it
+            inFlight.addFirst(pending);
+            recordFailure(new InterruptedIOException("Interrupted while waiting for SMB write"));
+            throw failure;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            SmbOperation.WRITE.failed(metrics, pending.start, cause);
+            recordFailure(cause instanceof IOException ? (IOException) cause : new IOException(cause));
+        }
+        freeBuffers.add(pending.buffer);
+        throwIfFailed();
+    }
+
+    private void recordFailure(IOException e) {
+        if (Objects.isNull(failure)) {
+            failure = e;
+        }
+    }
+
+    private void throwIfFailed() throws IOException {
+        if (Objects.nonNull(failure)) {
+            throw failure;
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        throwIfFailed();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        sendBuffer();
+        while (!inFlight.isEmpty()) {
+            completeOldest();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        IOException error = null;
+        try {
+            flush();
+        } catch (IOException e) {
+            error = e;
+        }
+        closed = true;
+        awaitAbandoned();
+        try {
+            file.close();
+        } catch (RuntimeException e) {
+            if (Objects.isNull(error)) {
+                error = new IOException(e);
+            } else {
+                error.addSuppressed(e);
+            }
+        }
+        if (Objects.nonNull(error)) {
+            throw error;
+        }
+    }
+
+    /**
+     * Waits for the writes still in flight even when interrupted, the handle must not be closed under them. The interrupt
+     * is restored once they are done.
+     */
+    private void awaitAbandoned() {
+        boolean interrupted = false;
+        while (!inFlight.isEmpty()) {
+            try {
+                inFlight.peek().future.get();
+                inFlight.poll();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            } catch (ExecutionException ignored) {
+                // a failure has already been reported, the remaining writes are abandoned
+                inFlight.poll();
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class PendingWrite {
+        private final byte[] buffer;
+        private final long offset;
+        private final int length;
+        private final long start;
+        private final Future<Integer> future;
+
+        private PendingWrite(byte[] buffer, long offset, int length, long start, Future<Integer> future) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.length = length;
+            this.start = start;
+            this.future = future;
+        }
+    }
+}
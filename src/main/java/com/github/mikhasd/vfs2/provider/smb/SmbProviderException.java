@@ -2,24 +2,35 @@ package com.github.mikhasd.vfs2.provider.smb;
 
 
 import com.hierynomus.mssmb2.SMBApiException;
+import org.apache.commons.vfs2.FileName;
 import org.apache.commons.vfs2.FileObject;
 import org.apache.commons.vfs2.FileSystemException;
 
-import java.io.IOException;
+import java.util.Map;
 
 public class SmbProviderException extends FileSystemException {
 
     private static final String CONNECTION_ERROR = "vfs.provider.smb/connection.error";
+    private static final String CONNECTION_INTERRUPTED = "vfs.provider.smb/connection-interrupted.error";
     private static final String MISSING_SHARE_NAME = "vfs.provider.smb/missing-share-name.error";
     private static final String REMOTE_COPY_ERROR = "vfs.provider.smb/remote-copy.error";
     private static final String DELETE_ERROR = "vfs.provider.smb/delete.error";
     private static final String FILE_INFORMATION_ERROR = "vfs.provider.smb/file-information.error";
     private static final String MISSING_SOURCE_FILE = "vfs.provider.smb/missing-source-file.error";
+    private static final String COPY_FAILURES = "vfs.provider.smb/copy-failures.error";
+    private static final String RENAME_ERROR = "vfs.provider.smb/rename.error";
+    private static final String DELETE_FAILURES = "vfs.provider.smb/delete-failures.error";
+    private static final String DOWNLOAD_FAILURES = "vfs.provider.smb/download-failures.error";
+    private static final String DOWNLOAD_SIZE_MISMATCH = "vfs.provider.smb/download-size-mismatch.error";
 
-    static SmbProviderException connectionError(String hostname, IOException cause){
+    static SmbProviderException connectionError(String hostname, Throwable cause){
         return new SmbProviderException(CONNECTION_ERROR, hostname, cause);
     }
 
+    static SmbProviderException connectionInterrupted(String hostname, InterruptedException cause) {
+        return new SmbProviderException(CONNECTION_INTERRUPTED, hostname, cause);
+    }
+
     public SmbProviderException(String code) {
         super(code);
     }
@@ -64,7 +75,38 @@ public class SmbProviderException extends FileSystemException {
         return new SmbProviderException(FILE_INFORMATION_ERROR, cause, path);
     }
 
+    static SmbProviderException deleteFailures(Object target, SmbDeleteReport report) {
+        Map<String, Exception> failures = report.getFailures();
+        Throwable firstCause = failures.values().iterator().next();
+        SmbProviderException exception = new SmbProviderException(DELETE_FAILURES, firstCause, target, failures.size());
+        failures.values().stream().skip(1).forEach(exception::addSuppressed);
+        return exception;
+    }
+
+    static SmbProviderException downloadFailures(Object source, Object target, Map<Long, Exception> failures) {
+        Throwable firstCause = failures.values().iterator().next();
+        SmbProviderException exception = new SmbProviderException(DOWNLOAD_FAILURES, firstCause, source, target, failures.size());
+        failures.values().stream().skip(1).forEach(exception::addSuppressed);
+        return exception;
+    }
+
+    static SmbProviderException downloadSizeMismatch(Object source, Object target, long expected, long actual) {
+        return new SmbProviderException(DOWNLOAD_SIZE_MISMATCH, source, target, expected, actual);
+    }
+
+    static SmbProviderException renameError(String source, String destination, Throwable cause) {
+        return new SmbProviderException(RENAME_ERROR, cause, source, destination);
+    }
+
     static FileSystemException missingSourceFile(FileObject file) {
         return new SmbProviderException(MISSING_SOURCE_FILE, file);
     }
+
+    static FileSystemException copyFailures(FileObject source, FileObject destination, SmbCopyReport report) {
+        Map<FileName, Exception> failures = report.getFailures();
+        Throwable firstCause = failures.values().iterator().next();
+        SmbProviderException exception = new SmbProviderException(COPY_FAILURES, firstCause, source, destination, failures.size());
+        failures.values().stream().skip(1).forEach(exception::addSuppressed);
+        return exception;
+    }
 }
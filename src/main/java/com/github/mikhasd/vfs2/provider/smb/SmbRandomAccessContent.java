@@ -0,0 +1,424 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import com.hierynomus.smbj.share.File;
+import org.apache.commons.vfs2.provider.AbstractRandomAccessContent;
+import org.apache.commons.vfs2.util.RandomAccessMode;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Random access content backed by offset based READ and WRITE requests on a single open handle.
+ * <p>
+ * Small reads go through a per handle LRU cache of fixed size blocks, so repeated seeks into index or footer regions
+ * only cost one READ per block. Reads spanning a whole block bypass the cache, writes go straight to the server and
+ * drop the overlapping cached blocks.
+ */
+public class SmbRandomAccessContent extends AbstractRandomAccessContent {
+
+    static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+    static final int DEFAULT_BLOCK_COUNT = 16;
+
+    private final File file;
+    private final SmbMetricsListener metrics;
+    private final RandomAccessMode mode;
+    private final int blockSize;
+    private final int maxReadSize;
+    private final Map<Long, Block> blocks;
+    private final Runnable onClose;
+    private final DataInputStream dataInput;
+    private final DataOutputStream dataOutput;
+    private long filePointer;
+    private long length;
+    private boolean closed;
+
+    public SmbRandomAccessContent(File file, RandomAccessMode mode) {
+        this(file, mode, DEFAULT_BLOCK_SIZE, DEFAULT_BLOCK_COUNT, SmbMetricsListener.NONE, () -> { });
+    }
+
+    SmbRandomAccessContent(File file, RandomAccessMode mode, int blockSize, int blockCount, SmbMetricsListener metrics, Runnable onClose) {
+        super(mode);
+        this.file = file;
+        this.metrics = metrics;
+        this.mode = mode;
+        this.maxReadSize = file.getDiskShare().getTreeConnect().getNegotiatedProtocol().getMaxReadSize();
+        this.blockSize = Math.max(1, Math.min(blockSize, maxReadSize));
+        final int maxBlocks = Math.max(0, blockCount);
+        this.blocks = new LinkedHashMap<Long, Block>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Block> eldest) {
+                return size() > maxBlocks;
+            }
+        };
+        this.onClose = onClose;
+        this.length = file.getFileInformation().getStandardInformation().getEndOfFile();
+        this.dataInput = new DataInputStream(new ContentInputStream());
+        this.dataOutput = new DataOutputStream(new ContentOutputStream());
+    }
+
+    private int read(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        if (len == 0) {
+            return 0;
+        }
+        if (filePointer >= length) {
+            return -1;
+        }
+        int count = (int) Math.min(len, length - filePointer);
+        int read;
+        if (filePointer % blockSize == 0 && count >= blockSize) {
+            read = readFully(b, filePointer, off, Math.min(count - count % blockSize, maxReadSize));
+        } else {
+            Block block = getBlock(filePointer / blockSize);
+            int blockOffset = (int) (filePointer % blockSize);
+            read = Math.min(count, block.length - blockOffset);
+            if (read > 0) {
+                System.arraycopy(block.data, blockOffset, b, off, read);
+            }
+        }
+        if (read <= 0) {
+            return -1;
+        }
+        filePointer += read;
+        return read;
+    }
+
+    private Block getBlock(long index) throws IOException {
+        Block block = blocks.get(index);
+        if (Objects.isNull(block)) {
+            byte[] data = new byte[blockSize];
+            int read = readFully(data, index * blockSize, 0, blockSize);
+            block = new Block(data, read);
+            blocks.put(index, block);
+        }
+        return block;
+    }
+
+    private int readFully(byte[] buffer, long offset, int bufferOffset, int len) throws IOException {
+        int total = 0;
+        try {
+            while (total < len) {
+                final long start = System.nanoTime();
+                final int read;
+                try {
+                    read = file.read(buffer, offset + total, bufferOffset + total, len - total);
+                } catch (RuntimeException e) {
+                    SmbOperation.READ.failed(metrics, start, e);
+                    throw e;
+                }
+                SmbOperation.READ.succeeded(metrics, start);
+                if (read <= 0) {
+                    break;
+                }
+                metrics.bytesRead(read);
+                total += read;
+            }
+        } catch (RuntimeException e) {
+            throw new IOException(e);
+        }
+        return total;
+    }
+
+    private void writeContent(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        if (!mode.requestWrite()) {
+            throw new IOException("Random access content was opened read only");
+        }
+        try {
+            int written = 0;
+            while (written < len) {
+                final long start = System.nanoTime();
+                final int count;
+                try {
+                    count = file.write(b, filePointer + written, off + written, len - written);
+                } catch (RuntimeException e) {
+                    SmbOperation.WRITE.failed(metrics, start, e);
+                    throw e;
+                }
+                if (count <= 0) {
+                    IOException e = new IOException("No bytes written at offset " + (filePointer + written));
+                    SmbOperation.WRITE.failed(metrics, start, e);
+                    throw e;
+                }
+                SmbOperation.WRITE.succeeded(metrics, start);
+                metrics.bytesWritten(count);
+                written += count;
+            }
+        } catch (RuntimeException e) {
+            throw new IOException(e);
+        }
+        // a write past the end also changes the gap before it, which reads as zeros from now on
+        invalidateBlocks(Math.min(length, filePointer), filePointer + len);
+        filePointer += len;
+        length = Math.max(length, filePointer);
+    }
+
+    private void invalidateBlocks(long from, long to) {
+        long first = from / blockSize;
+        long last = (to - 1) / blockSize;
+        Iterator<Long> iterator = blocks.keySet().iterator();
+        while (iterator.hasNext()) {
+            long index = iterator.next();
+            if (index >= first && index <= last) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Random access content closed");
+        }
+    }
+
+    @Override
+    public long getFilePointer() throws IOException {
+        return filePointer;
+    }
+
+    @Override
+    public void seek(long pos) throws IOException {
+        if (pos < 0) {
+            throw new IOException("Negative seek offset");
+        }
+        filePointer = pos;
+    }
+
+    @Override
+    public long length() throws IOException {
+        return length;
+    }
+
+    @Override
+    public void setLength(long newLength) throws IOException {
+        ensureOpen();
+        try {
+            file.setLength(newLength);
+        } catch (RuntimeException e) {
+            throw new IOException(e);
+        }
+        invalidateBlocks(Math.min(length, newLength), Math.max(length, newLength) + 1);
+        length = newLength;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return dataInput;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        blocks.clear();
+        try {
+            file.close();
+        } finally {
+            onClose.run();
+        }
+    }
+
+    @Override
+    public void write(byte[] b) throws IOException {
+        writeContent(b, 0, b.length);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        writeContent(b, off, len);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        dataOutput.write(b);
+    }
+
+    @Override
+    public void writeBoolean(boolean v) throws IOException {
+        dataOutput.writeBoolean(v);
+    }
+
+    @Override
+    public void writeByte(int v) throws IOException {
+        dataOutput.writeByte(v);
+    }
+
+    @Override
+    public void writeBytes(String s) throws IOException {
+        dataOutput.writeBytes(s);
+    }
+
+    @Override
+    public void writeChar(int v) throws IOException {
+        dataOutput.writeChar(v);
+    }
+
+    @Override
+    public void writeChars(String s) throws IOException {
+        dataOutput.writeChars(s);
+    }
+
+    @Override
+    public void writeDouble(double v) throws IOException {
+        dataOutput.writeDouble(v);
+    }
+
+    @Override
+    public void writeFloat(float v) throws IOException {
+        dataOutput.writeFloat(v);
+    }
+
+    @Override
+    public void writeInt(int v) throws IOException {
+        dataOutput.writeInt(v);
+    }
+
+    @Override
+    public void writeLong(long v) throws IOException {
+        dataOutput.writeLong(v);
+    }
+
+    @Override
+    public void writeShort(int v) throws IOException {
+        dataOutput.writeShort(v);
+    }
+
+    @Override
+    public void writeUTF(String str) throws IOException {
+        dataOutput.writeUTF(str);
+    }
+
+    @Override
+    public void readFully(byte[] b) throws IOException {
+        dataInput.readFully(b);
+    }
+
+    @Override
+    public void readFully(byte[] b, int off, int len) throws IOException {
+        dataInput.readFully(b, off, len);
+    }
+
+    @Override
+    public int skipBytes(int n) throws IOException {
+        long skipped = Math.max(0, Math.min(n, length - filePointer));
+        filePointer += skipped;
+        return (int) skipped;
+    }
+
+    @Override
+    public boolean readBoolean() throws IOException {
+        return dataInput.readBoolean();
+    }
+
+    @Override
+    public byte readByte() throws IOException {
+        return dataInput.readByte();
+    }
+
+    @Override
+    public int readUnsignedByte() throws IOException {
+        return dataInput.readUnsignedByte();
+    }
+
+    @Override
+    public short readShort() throws IOException {
+        return dataInput.readShort();
+    }
+
+    @Override
+    public int readUnsignedShort() throws IOException {
+        return dataInput.readUnsignedShort();
+    }
+
+    @Override
+    public char readChar() throws IOException {
+        return dataInput.readChar();
+    }
+
+    @Override
+    public int readInt() throws IOException {
+        return dataInput.readInt();
+    }
+
+    @Override
+    public long readLong() throws IOException {
+        return dataInput.readLong();
+    }
+
+    @Override
+    public float readFloat() throws IOException {
+        return dataInput.readFloat();
+    }
+
+    @Override
+    public double readDouble() throws IOException {
+        return dataInput.readDouble();
+    }
+
+    @Override
+    public String readUTF() throws IOException {
+        return dataInput.readUTF();
+    }
+
+    private static final class Block {
+        private final byte[] data;
+        private final int length;
+
+        private Block(byte[] data, int length) {
+            this.data = data;
+            this.length = length;
+        }
+    }
+
+    private class ContentInputStream extends InputStream {
+        private final byte[] single = new byte[1];
+
+        @Override
+        public int read() throws IOException {
+            return SmbRandomAccessContent.this.read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return SmbRandomAccessContent.this.read(b, off, len);
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = Math.max(0, Math.min(n, length - filePointer));
+            filePointer += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(Integer.MAX_VALUE, Math.max(0, length - filePointer));
+        }
+
+        @Override
+        public void close() throws IOException {
+            SmbRandomAccessContent.this.close();
+        }
+    }
+
+    private class ContentOutputStream extends OutputStream {
+        @Override
+        public void write(int b) throws IOException {
+            writeContent(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            writeContent(b, off, len);
+        }
+    }
+}
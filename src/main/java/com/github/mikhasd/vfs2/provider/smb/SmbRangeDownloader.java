@@ -0,0 +1,172 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import com.hierynomus.smbj.share.File;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Downloads a file into a local path as fixed size ranges read concurrently, each on its own handle.
+ * <p>
+ * Every range is written at its offset through a memory mapping, forced to disk and recorded in a journal next to the
+ * target, {@code <target>.smbranges}. A download that failed or was interrupted resumes with the ranges missing from
+ * the journal, provided the remote file still has the size and last modified time the journal was started with.
+ */
+class SmbRangeDownloader {
+
+    static final String JOURNAL_SUFFIX = ".smbranges";
+    private static final int JOURNAL_HEADER_SIZE = Long.BYTES + Long.BYTES + Integer.BYTES;
+
+    private final SmbTemplate smbTemplate;
+    private final String path;
+    private final int rangeSize;
+    private final int chunkSize;
+    private final int parallelism;
+    private final SmbMetricsListener metrics;
+
+    SmbRangeDownloader(SmbTemplate smbTemplate, String path, int rangeSize, int chunkSize, int parallelism) {
+        this.smbTemplate = smbTemplate;
+        this.path = path;
+        this.rangeSize = Math.max(1, rangeSize);
+        this.chunkSize = Math.max(1, chunkSize);
+        this.parallelism = Math.max(1, parallelism);
+        this.metrics = smbTemplate.getMetrics();
+    }
+
+    static Path journalOf(Path target) {
+        return target.resolveSibling(target.getFileName() + JOURNAL_SUFFIX);
+    }
+
+    /**
+     * Downloads the ranges of a file of {@code size} bytes last modified at {@code lastModified} that the journal does
+     * not list yet. The journal is left in place, {@link #complete(Path)} removes it once the result is verified.
+     *
+     * @return the failures by range offset, empty when {@code target} holds the whole file.
+     */
+    Map<Long, Exception> download(Path target, long size, long lastModified) throws IOException, InterruptedException {
+        final Path journalPath = journalOf(target);
+        final Set<Long> completed = readJournal(journalPath, size, lastModified);
+        if (!Files.isRegularFile(target)) {
+            completed.clear();
+        }
+        final List<Long> pending = new ArrayList<>();
+        for (long offset = 0; offset < size; offset += rangeSize) {
+            if (!completed.contains(offset)) {
+                pending.add(offset);
+            }
+        }
+
+        try (FileChannel out = FileChannel.open(target, CREATE, READ, WRITE);
+             FileChannel journal = startJournal(journalPath, size, lastModified)) {
+            for (Long offset : completed) {
+                record(journal, offset);
+            }
+            Map<Long, Exception> failures = SmbExecutors.forEach(pending, parallelism, offset -> {
+                downloadRange(out, offset, (int) Math.min(rangeSize, size - offset));
+                record(journal, offset);
+            });
+            if (failures.isEmpty()) {
+                out.truncate(size);
+            }
+            return failures;
+        }
+    }
+
+    static void complete(Path target) throws IOException {
+        Files.deleteIfExists(journalOf(target));
+    }
+
+    private void downloadRange(FileChannel target, long offset, int length) throws IOException {
+        File file = smbTemplate.openFileForSharedRead(path);
+        try {
+            int maxReadSize = file.getDiskShare().getTreeConnect().getNegotiatedProtocol().getMaxReadSize();
+            byte[] buffer = new byte[Math.min(length, Math.min(chunkSize, maxReadSize))];
+            MappedByteBuffer region = target.map(FileChannel.MapMode.READ_WRITE, offset, length);
+            long position = offset;
+            while (region.hasRemaining()) {
+                int count = read(file, buffer, position, Math.min(buffer.length, region.remaining()));
+                region.put(buffer, 0, count);
+                position += count;
+            }
+            region.force();
+        } finally {
+            file.closeSilently();
+        }
+    }
+
+    private int read(File file, byte[] buffer, long position, int length) throws IOException {
+        final long start = System.nanoTime();
+        final int read;
+        try {
+            read = file.read(buffer, position, 0, length);
+        } catch (RuntimeException e) {
+            SmbOperation.READ.failed(metrics, start, e);
+            throw e;
+        }
+        SmbOperation.READ.succeeded(metrics, start);
+        if (read <= 0) {
+            throw new IOException("Unexpected end of file at offset " + position);
+        }
+        metrics.bytesRead(read);
+        return read;
+    }
+
+    private static void record(FileChannel journal, long offset) throws IOException {
+        ByteBuffer entry = ByteBuffer.allocate(Long.BYTES).putLong(0, offset);
+        synchronized (journal) {
+            while (entry.hasRemaining()) {
+                journal.write(entry);
+            }
+        }
+    }
+
+    /**
+     * Rewrites the journal from scratch, dropping a partial entry left by an interrupted download.
+     */
+    private FileChannel startJournal(Path journalPath, long size, long lastModified) throws IOException {
+        FileChannel journal = FileChannel.open(journalPath, CREATE, WRITE, TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(JOURNAL_HEADER_SIZE).putLong(size).putLong(lastModified).putInt(rangeSize);
+        header.flip();
+        while (header.hasRemaining()) {
+            journal.write(header);
+        }
+        return journal;
+    }
+
+    /**
+     * @return the offsets of the ranges already downloaded, empty when there is no journal for this version of the
+     * file and range size.
+     */
+    private Set<Long> readJournal(Path journalPath, long size, long lastModified) throws IOException {
+        final Set<Long> completed = new HashSet<>();
+        if (!Files.isRegularFile(journalPath)) {
+            return completed;
+        }
+        ByteBuffer content = ByteBuffer.wrap(Files.readAllBytes(journalPath));
+        if (content.remaining() < JOURNAL_HEADER_SIZE
+                || content.getLong() != size
+                || content.getLong() != lastModified
+                || content.getInt() != rangeSize) {
+            return completed;
+        }
+        // a trailing partial entry was being written when the previous download stopped, its range is read again
+        while (content.remaining() >= Long.BYTES) {
+            completed.add(content.getLong());
+        }
+        return completed;
+    }
+}
@@ -0,0 +1,260 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import com.hierynomus.msfscc.fileinformation.FileAllInformation;
+import com.hierynomus.mssmb2.SMBApiException;
+import com.hierynomus.smbj.share.File;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copy of an SMB file into another one running in the background, started with
+ * {@link SmbFileObject#remoteCopyFrom(SmbFileObject)}. The value of the future is the number of bytes copied.
+ * <p>
+ * The content is split into ranges copied concurrently, each with SRV_COPYCHUNK requests so it never leaves the server.
+ * This works between different shares of a server. Between servers, or when the server refuses the copy, the ranges are
+ * read and written through this JVM instead. Only the allocated ranges of a sparse file are copied.
+ * <p>
+ * Cancelling stops the copy once the requests in progress complete and leaves the destination incomplete.
+ */
+public class SmbRemoteCopy implements Future<Long> {
+
+    static final int FSCTL_SRV_REQUEST_RESUME_KEY = 0x00140078;
+    static final int FSCTL_SRV_COPYCHUNK_WRITE = 0x001480F2;
+    private static final int RESUME_KEY_SIZE = 24;
+    // the key, the length of the context that follows and room for a context some servers add
+    private static final int RESUME_KEY_RESPONSE_SIZE = 64;
+    private static final int CHUNK_ENCODED_SIZE = Long.BYTES + Long.BYTES + Integer.BYTES + Integer.BYTES;
+    private static final int RESPONSE_SIZE = 3 * Integer.BYTES;
+    // within the limits every server must accept, larger requests may be refused with the server limits in response
+    private static final int MAX_CHUNK_SIZE = 1024 * 1024;
+    private static final int MAX_CHUNKS_PER_REQUEST = 16;
+
+    private final SmbTemplate sourceTemplate;
+    private final String sourcePath;
+    private final SmbTemplate destinationTemplate;
+    private final String destinationPath;
+    private final int rangeSize;
+    private final int parallelism;
+    private final CompletableFuture<Long> result = new CompletableFuture<>();
+    private final AtomicLong bytesCopied = new AtomicLong();
+    private volatile long size = -1;
+    private volatile boolean serverSide;
+    private volatile boolean cancelled;
+
+    SmbRemoteCopy(SmbTemplate sourceTemplate, String sourcePath, SmbTemplate destinationTemplate, String destinationPath, int rangeSize, int parallelism) {
+        this.sourceTemplate = sourceTemplate;
+        this.sourcePath = sourcePath;
+        this.destinationTemplate = destinationTemplate;
+        this.destinationPath = destinationPath;
+        this.rangeSize = Math.max(1, rangeSize);
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    SmbRemoteCopy start() {
+        SmbExecutors.io().execute(() -> {
+            try {
+                result.complete(copy());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return this;
+    }
+
+    void whenDone(Runnable action) {
+        result.whenComplete((copied, failure) -> action.run());
+    }
+
+    /**
+     * @return the number of bytes copied so far.
+     */
+    public long getBytesCopied() {
+        return bytesCopied.get();
+    }
+
+    /**
+     * @return the number of bytes to copy, -1 until the source is opened. Holes of a sparse source are not copied and
+     * do not count.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return whether the content is copied by the server rather than read and written through this JVM.
+     */
+    public boolean isServerSide() {
+        return serverSide;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        cancelled = true;
+        return result.cancel(mayInterruptIfRunning);
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return result.isCancelled();
+    }
+
+    @Override
+    public boolean isDone() {
+        return result.isDone();
+    }
+
+    @Override
+    public Long get() throws InterruptedException, ExecutionException {
+        return result.get();
+    }
+
+    @Override
+    public Long get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        return result.get(timeout, unit);
+    }
+
+    private long copy() throws Exception {
+        try (File source = sourceTemplate.openSourceFileForCopy(sourcePath);
+             File destination = destinationTemplate.openDestFileForCopy(destinationPath)) {
+            FileAllInformation info = source.getFileInformation();
+            long length = info.getStandardInformation().getEndOfFile();
+            List<SmbSparseFiles.Range> allocated;
+            if (SmbSparseFiles.isSparse(info.getBasicInformation().getFileAttributes())) {
+                allocated = SmbSparseFiles.allocatedRanges(source, length, sourceTemplate.getMetrics());
+                SmbSparseFiles.prepareCopy(destination, length, allocated, destinationTemplate.getMetrics());
+            } else {
+                allocated = Collections.singletonList(new SmbSparseFiles.Range(0, length));
+                destination.setLength(length);
+            }
+            size = allocated.stream().mapToLong(range -> range.length).sum();
+
+            Deque<SmbSparseFiles.Range> ranges = split(allocated);
+            RangeCopier copier = serverSideCopier(source, destination, ranges);
+            if (Objects.isNull(copier)) {
+                copier = streamingCopier(source, destination);
+            }
+            final RangeCopier rangeCopier = copier;
+            Map<SmbSparseFiles.Range, Exception> failures = SmbExecutors.forEach(ranges, parallelism, range -> rangeCopier.copy(range.offset, range.end()));
+            if (cancelled) {
+                throw new CancellationException();
+            }
+            if (!failures.isEmpty()) {
+                throw failures.values().iterator().next();
+            }
+            return bytesCopied.get();
+        } catch (CancellationException e) {
+            throw e;
+        } catch (Exception e) {
+            throw SmbProviderException.remoteCopy(sourcePath, destinationPath, e);
+        }
+    }
+
+    private Deque<SmbSparseFiles.Range> split(List<SmbSparseFiles.Range> allocated) {
+        Deque<SmbSparseFiles.Range> ranges = new ArrayDeque<>();
+        for (SmbSparseFiles.Range range : allocated) {
+            for (long offset = range.offset; offset < range.end(); offset += rangeSize) {
+                ranges.add(new SmbSparseFiles.Range(offset, Math.min(rangeSize, range.end() - offset)));
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * Copies the first range with SRV_COPYCHUNK to find out whether the server copies between the two files.
+     *
+     * @return the copier of the remaining ranges, {@code null} when the content must go through this JVM.
+     */
+    private RangeCopier serverSideCopier(File source, File destination, Deque<SmbSparseFiles.Range> ranges) throws IOException {
+        String sourceHost = source.getDiskShare().getSmbPath().getHostname();
+        if (!sourceHost.equalsIgnoreCase(destination.getDiskShare().getSmbPath().getHostname())) {
+            return null;
+        }
+        final byte[] resumeKey;
+        try {
+            byte[] response = SmbSparseFiles.ioctl(source, FSCTL_SRV_REQUEST_RESUME_KEY, new byte[0], RESUME_KEY_RESPONSE_SIZE, sourceTemplate.getMetrics());
+            resumeKey = Arrays.copyOf(response, RESUME_KEY_SIZE);
+        } catch (SMBApiException e) {
+            return null;
+        }
+        RangeCopier copier = (from, to) -> copyChunks(resumeKey, destination, from, to);
+        SmbSparseFiles.Range first = ranges.poll();
+        if (Objects.nonNull(first)) {
+            try {
+                copier.copy(first.offset, first.end());
+            } catch (SMBApiException e) {
+                // what was copied is written again
+                bytesCopied.set(0);
+                ranges.addFirst(first);
+                return null;
+            }
+        }
+        serverSide = true;
+        return copier;
+    }
+
+    private void copyChunks(byte[] resumeKey, File destination, long from, long to) throws IOException {
+        long position = from;
+        while (position < to && !cancelled) {
+            int chunks = (int) Math.min(MAX_CHUNKS_PER_REQUEST, (to - position + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE);
+            ByteBuffer request = ByteBuffer.allocate(RESUME_KEY_SIZE + Integer.BYTES + Integer.BYTES + chunks * CHUNK_ENCODED_SIZE)
+                    .order(ByteOrder.LITTLE_ENDIAN)
+                    .put(resumeKey)
+                    .putInt(chunks)
+                    .putInt(0);
+            for (long offset = position; request.hasRemaining(); ) {
+                int length = (int) Math.min(MAX_CHUNK_SIZE, to - offset);
+                request.putLong(offset).putLong(offset).putInt(length).putInt(0);
+                offset += length;
+            }
+            byte[] response = SmbSparseFiles.ioctl(destination, FSCTL_SRV_COPYCHUNK_WRITE, request.array(), RESPONSE_SIZE, destinationTemplate.getMetrics());
+            long written = ByteBuffer.wrap(response).order(ByteOrder.LITTLE_ENDIAN).getInt(2 * Integer.BYTES) & 0xFFFFFFFFL;
+            if (written <= 0) {
+                throw new IOException("Server copied nothing at offset " + position);
+            }
+            bytesCopied.addAndGet(written);
+            position += written;
+        }
+    }
+
+    private RangeCopier streamingCopier(File source, File destination) {
+        final int maxReadSize = source.getDiskShare().getTreeConnect().getNegotiatedProtocol().getMaxReadSize();
+        final int maxWriteSize = destination.getDiskShare().getTreeConnect().getNegotiatedProtocol().getMaxWriteSize();
+        final SmbMetricsListener sourceMetrics = sourceTemplate.getMetrics();
+        final SmbMetricsListener destinationMetrics = destinationTemplate.getMetrics();
+        return (from, to) -> {
+            byte[] buffer = new byte[(int) Math.min(to - from, Math.min(maxReadSize, maxWriteSize))];
+            long position = from;
+            while (position < to && !cancelled) {
+                int read = source.read(buffer, position, 0, (int) Math.min(buffer.length, to - position));
+                if (read <= 0) {
+                    throw new IOException("Unexpected end of file at offset " + position);
+                }
+                sourceMetrics.bytesRead(read);
+                destination.write(buffer, position, 0, read);
+                destinationMetrics.bytesWritten(read);
+                bytesCopied.addAndGet(read);
+                position += read;
+            }
+        };
+    }
+
+    private interface RangeCopier {
+        void copy(long from, long to) throws IOException;
+    }
+}
@@ -0,0 +1,333 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import com.hierynomus.mssmb2.messages.SMB2Echo;
+import com.hierynomus.smbj.SMBClient;
+import com.hierynomus.smbj.connection.Connection;
+import com.hierynomus.smbj.session.Session;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Provider wide pool of authenticated SMB sessions, keyed by host, port, domain, user and transport settings.
+ * <p>
+ * Sessions are leased by {@link SessionFactory} and shared between every {@link DiskShareManager} using the same key,
+ * so connecting to another share on a known host only costs a TREE_CONNECT. Idle sessions are logged off and
+ * connections are kept alive with SMB2 ECHO by a single housekeeping thread, which also forgets keys left without
+ * sessions and closes the clients none of the remaining keys connect through.
+ */
+class SmbSessionPool implements Closeable {
+
+    private static final long HOUSEKEEPING_INTERVAL_MILLIS = 5_000L;
+
+    private final Map<SmbTransportConfig, Map<Integer, SMBClient>> smbClients = new ConcurrentHashMap<>();
+    private final Map<Key, Sessions> sessionsByKey = new ConcurrentHashMap<>();
+    private ScheduledExecutorService housekeeping;
+
+    /**
+     * Leases a session for the given stripe. Every stripe connects through its own {@link SMBClient}, so sessions of
+     * different stripes never share a TCP connection. Clients are also separated by transport settings, sessions only
+     * share connections with file systems configured alike.
+     */
+    Session acquire(SessionFactory sessionFactory, int stripe) throws SmbProviderException {
+        startHousekeeping();
+        SmbTransportConfig transportConfig = sessionFactory.getKey().getTransportConfig();
+        final SMBClient smbClient;
+        final Sessions sessions;
+        synchronized (this) {
+            smbClient = smbClients
+                    .computeIfAbsent(transportConfig, config -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(stripe, index -> new SMBClient(transportConfig.toSmbConfig()));
+            sessions = sessionsByKey.computeIfAbsent(sessionFactory.getKey().forStripe(stripe), key -> new Sessions());
+            // keeps the entry and its client from being pruned while the session connects
+            sessions.acquiring++;
+        }
+        try {
+            return sessions.acquire(sessionFactory, smbClient);
+        } finally {
+            synchronized (this) {
+                sessions.acquiring--;
+            }
+        }
+    }
+
+    void release(SessionFactory sessionFactory, int stripe, Session session) {
+        Sessions sessions = sessionsByKey.get(sessionFactory.getKey().forStripe(stripe));
+        if (Objects.nonNull(sessions)) {
+            sessions.release(session);
+        }
+    }
+
+    private synchronized void startHousekeeping() {
+        if (Objects.isNull(housekeeping)) {
+            housekeeping = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "smb-session-pool");
+                thread.setDaemon(true);
+                return thread;
+            });
+            housekeeping.scheduleWithFixedDelay(this::doHousekeeping, HOUSEKEEPING_INTERVAL_MILLIS, HOUSEKEEPING_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    void doHousekeeping() {
+        long now = System.currentTimeMillis();
+        for (Sessions sessions : sessionsByKey.values()) {
+            sessions.evictAndKeepAlive(now);
+        }
+        prune();
+    }
+
+    /**
+     * Removes the keys without sessions, which hold the credentials, and closes the clients no remaining key uses.
+     */
+    private synchronized void prune() {
+        sessionsByKey.values().removeIf(Sessions::isUnused);
+        Map<SmbTransportConfig, Set<Integer>> stripesInUse = new HashMap<>();
+        for (Key key : sessionsByKey.keySet()) {
+            stripesInUse.computeIfAbsent(key.getTransportConfig(), config -> new HashSet<>()).add(key.getStripe());
+        }
+        Iterator<Map.Entry<SmbTransportConfig, Map<Integer, SMBClient>>> configs = smbClients.entrySet().iterator();
+        while (configs.hasNext()) {
+            Map.Entry<SmbTransportConfig, Map<Integer, SMBClient>> entry = configs.next();
+            Set<Integer> stripes = stripesInUse.getOrDefault(entry.getKey(), Collections.emptySet());
+            Iterator<Map.Entry<Integer, SMBClient>> clients = entry.getValue().entrySet().iterator();
+            while (clients.hasNext()) {
+                Map.Entry<Integer, SMBClient> client = clients.next();
+                if (!stripes.contains(client.getKey())) {
+                    client.getValue().close();
+                    clients.remove();
+                }
+            }
+            if (entry.getValue().isEmpty()) {
+                configs.remove();
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (Objects.nonNull(housekeeping)) {
+            housekeeping.shutdownNow();
+            housekeeping = null;
+        }
+        for (Sessions sessions : sessionsByKey.values()) {
+            sessions.closeAll();
+        }
+        sessionsByKey.clear();
+        for (Map<Integer, SMBClient> smbClientsByStripe : smbClients.values()) {
+            for (SMBClient smbClient : smbClientsByStripe.values()) {
+                smbClient.close();
+            }
+        }
+        smbClients.clear();
+    }
+
+    private class Sessions {
+        private final List<PooledSession> pooled = new ArrayList<>();
+        // callers between the lookup of this entry and the end of its acquire, guarded by the pool
+        private int acquiring;
+
+        synchronized Session acquire(SessionFactory sessionFactory, SMBClient smbClient) throws SmbProviderException {
+            pooled.removeIf(candidate -> {
+                if (candidate.isConnected()) {
+                    return false;
+                }
+                candidate.close();
+                return true;
+            });
+
+            PooledSession leastLeased = null;
+            for (PooledSession candidate : pooled) {
+                if (Objects.isNull(leastLeased) || candidate.leases < leastLeased.leases) {
+                    leastLeased = candidate;
+                }
+            }
+
+            if (Objects.isNull(leastLeased)
+                    || (leastLeased.leases > 0 && pooled.size() < sessionFactory.getMaxSessions())) {
+                Session session = sessionFactory.connect(smbClient);
+                leastLeased = new PooledSession(session, sessionFactory);
+                pooled.add(leastLeased);
+            }
+
+            leastLeased.leases++;
+            return leastLeased.session;
+        }
+
+        synchronized void release(Session session) {
+            for (PooledSession candidate : pooled) {
+                if (candidate.session == session) {
+                    candidate.leases = Math.max(0, candidate.leases - 1);
+                    candidate.lastUsed = System.currentTimeMillis();
+                    return;
+                }
+            }
+        }
+
+        synchronized void evictAndKeepAlive(long now) {
+            Iterator<PooledSession> iterator = pooled.iterator();
+            while (iterator.hasNext()) {
+                PooledSession candidate = iterator.next();
+                if (!candidate.isConnected() || (candidate.leases == 0 && candidate.isIdle(now))) {
+                    candidate.close();
+                    iterator.remove();
+                } else if (candidate.isKeepAliveDue(now) && !candidate.sendKeepAlive(now)) {
+                    candidate.close();
+                    iterator.remove();
+                }
+            }
+        }
+
+        // called with the pool locked, does not wait for a session that is connecting
+        boolean isUnused() {
+            if (acquiring > 0) {
+                return false;
+            }
+            synchronized (this) {
+                return pooled.isEmpty();
+            }
+        }
+
+        synchronized void closeAll() {
+            for (PooledSession candidate : pooled) {
+                candidate.close();
+            }
+            pooled.clear();
+        }
+    }
+
+    private static class PooledSession {
+        private final Session session;
+        private final long idleTimeoutMillis;
+        private final long keepAliveIntervalMillis;
+        private int leases;
+        private long lastUsed;
+        private long lastKeepAlive;
+
+        private PooledSession(Session session, SessionFactory sessionFactory) {
+            this.session = session;
+            this.idleTimeoutMillis = sessionFactory.getIdleTimeout().toMillis();
+            this.keepAliveIntervalMillis = sessionFactory.getKeepAliveInterval().toMillis();
+            this.lastUsed = System.currentTimeMillis();
+            this.lastKeepAlive = this.lastUsed;
+        }
+
+        private boolean isConnected() {
+            return session.getConnection().isConnected();
+        }
+
+        private boolean isIdle(long now) {
+            return now - lastUsed >= idleTimeoutMillis;
+        }
+
+        private boolean isKeepAliveDue(long now) {
+            return keepAliveIntervalMillis > 0 && now - lastKeepAlive >= keepAliveIntervalMillis;
+        }
+
+        private boolean sendKeepAlive(long now) {
+            Connection connection = session.getConnection();
+            try {
+                connection.send(new SMB2Echo(connection.getNegotiatedProtocol().getDialect()));
+                lastKeepAlive = now;
+                return true;
+            } catch (Exception e) {
+                return false;
+            }
+        }
+
+        private void close() {
+            Connection connection = session.getConnection();
+            try {
+                session.close();
+            } catch (Exception ignored) {
+                // the session is being discarded, a failed logoff leaves nothing to clean up
+            }
+            try {
+                connection.close();
+            } catch (IOException ignored) {
+                // releases this session's lease on the shared connection
+            }
+        }
+    }
+
+    static final class Key {
+        private final String hostname;
+        private final int port;
+        private final String domain;
+        private final String username;
+        private final String password;
+        private final SmbTransportConfig transportConfig;
+        private final int stripe;
+
+        Key(String hostname, int port, String domain, String username, String password, SmbTransportConfig transportConfig) {
+            this(hostname, port, domain, username, password, transportConfig, 0);
+        }
+
+        private Key(String hostname, int port, String domain, String username, String password, SmbTransportConfig transportConfig, int stripe) {
+            this.hostname = hostname;
+            this.port = port;
+            this.domain = domain;
+            this.username = username;
+            this.password = password;
+            this.transportConfig = transportConfig;
+            this.stripe = stripe;
+        }
+
+        Key forStripe(int stripe) {
+            return this.stripe == stripe ? this : new Key(hostname, port, domain, username, password, transportConfig, stripe);
+        }
+
+        String getHostname() {
+            return hostname;
+        }
+
+        int getPort() {
+            return port;
+        }
+
+        SmbTransportConfig getTransportConfig() {
+            return transportConfig;
+        }
+
+        int getStripe() {
+            return stripe;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return port == key.port
+                    && stripe == key.stripe
+                    && hostname.equalsIgnoreCase(key.hostname)
+                    && Objects.equals(domain, key.domain)
+                    && Objects.equals(username, key.username)
+                    && Objects.equals(password, key.password)
+                    && transportConfig.equals(key.transportConfig);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(hostname.toLowerCase(), port, domain, username, transportConfig, stripe);
+        }
+
+        @Override
+        public String toString() {
+            return (Objects.isNull(username) ? "" : username + "@") + hostname + ":" + port;
+        }
+    }
+}
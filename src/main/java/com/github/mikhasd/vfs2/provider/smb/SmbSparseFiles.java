@@ -0,0 +1,148 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import com.hierynomus.msfscc.FileAttributes;
+import com.hierynomus.mssmb2.SMBApiException;
+import com.hierynomus.smbj.share.File;
+import com.hierynomus.smbj.share.TreeConnect;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import static com.hierynomus.mserref.NtStatus.STATUS_BUFFER_OVERFLOW;
+
+/**
+ * Sparse file support through the file system controls of MS-FSCC: listing the ranges of a file that hold data, marking
+ * a file sparse and deallocating ranges of it.
+ * <p>
+ * Copies of sparse files only move the allocated ranges of the source and leave the rest of the destination as holes,
+ * so virtual disks or database files made mostly of holes copy in the time their data takes.
+ */
+final class SmbSparseFiles {
+
+    static final int FSCTL_SET_SPARSE = 0x000900C4;
+    static final int FSCTL_SET_ZERO_DATA = 0x000980C8;
+    static final int FSCTL_QUERY_ALLOCATED_RANGES = 0x000940CF;
+    private static final int RANGE_ENCODED_SIZE = Long.BYTES + Long.BYTES;
+
+    private SmbSparseFiles() {
+    }
+
+    static boolean isSparse(long fileAttributes) {
+        return (FileAttributes.FILE_ATTRIBUTE_SPARSE_FILE.getValue() & fileAttributes) != 0;
+    }
+
+    /**
+     * @return the allocated ranges within the first {@code size} bytes of {@code file}, in order and without overlaps.
+     * Everything outside of them reads as zeros.
+     */
+    static List<Range> allocatedRanges(File file, long size, SmbMetricsListener metrics) {
+        final TreeConnect treeConnect = file.getDiskShare().getTreeConnect();
+        final int maxOutput = Math.min(treeConnect.getConfig().getTransactBufferSize(), treeConnect.getNegotiatedProtocol().getMaxTransactSize());
+        final List<Range> ranges = new ArrayList<>();
+        final Deque<Range> queries = new ArrayDeque<>();
+        if (size > 0) {
+            queries.push(new Range(0, size));
+        }
+        while (!queries.isEmpty()) {
+            Range query = queries.pop();
+            final byte[] output;
+            try {
+                output = ioctl(file, FSCTL_QUERY_ALLOCATED_RANGES, encode(query.offset, query.length), maxOutput, metrics);
+            } catch (SMBApiException e) {
+                if (!STATUS_BUFFER_OVERFLOW.equals(e.getStatus()) || query.length < 2) {
+                    throw e;
+                }
+                // too many ranges for one response, the halves are queried in order
+                long half = query.length / 2;
+                queries.push(new Range(query.offset + half, query.length - half));
+                queries.push(new Range(query.offset, half));
+                continue;
+            }
+            ByteBuffer entries = ByteBuffer.wrap(output).order(ByteOrder.LITTLE_ENDIAN);
+            while (entries.remaining() >= RANGE_ENCODED_SIZE) {
+                long start = Math.max(query.offset, entries.getLong());
+                long end = Math.min(query.end(), start + entries.getLong());
+                if (start < end) {
+                    add(ranges, start, end);
+                }
+            }
+        }
+        return ranges;
+    }
+
+    private static void add(List<Range> ranges, long start, long end) {
+        int last = ranges.size() - 1;
+        if (last >= 0 && ranges.get(last).end() >= start) {
+            Range previous = ranges.get(last);
+            ranges.set(last, new Range(previous.offset, Math.max(previous.end(), end) - previous.offset));
+        } else {
+            ranges.add(new Range(start, end - start));
+        }
+    }
+
+    static void setSparse(File file, SmbMetricsListener metrics) {
+        ioctl(file, FSCTL_SET_SPARSE, new byte[0], 0, metrics);
+    }
+
+    /**
+     * Deallocates the bytes of {@code file} from {@code from} up to {@code to}, excluded, which read as zeros afterwards.
+     */
+    static void zero(File file, long from, long to, SmbMetricsListener metrics) {
+        if (from < to) {
+            ioctl(file, FSCTL_SET_ZERO_DATA, encode(from, to), 0, metrics);
+        }
+    }
+
+    /**
+     * Prepares {@code destination} to receive the {@code allocated} ranges of a sparse file of {@code size} bytes: it is
+     * marked sparse, sized and every byte outside of the ranges is zeroed, so only the ranges are left to copy.
+     */
+    static void prepareCopy(File destination, long size, List<Range> allocated, SmbMetricsListener metrics) {
+        setSparse(destination, metrics);
+        destination.setLength(size);
+        long position = 0;
+        for (Range range : allocated) {
+            zero(destination, position, range.offset, metrics);
+            position = range.end();
+        }
+        zero(destination, position, size, metrics);
+    }
+
+    /**
+     * Sends file system control {@code ctlCode} on {@code file}, reported as one {@link SmbOperation#IOCTL}.
+     */
+    static byte[] ioctl(File file, int ctlCode, byte[] input, int maxOutput, SmbMetricsListener metrics) {
+        final long start = System.nanoTime();
+        final byte[] output;
+        try {
+            output = file.ioctl(ctlCode, true, input, 0, input.length, maxOutput);
+        } catch (RuntimeException e) {
+            SmbOperation.IOCTL.failed(metrics, start, e);
+            throw e;
+        }
+        SmbOperation.IOCTL.succeeded(metrics, start);
+        return output;
+    }
+
+    private static byte[] encode(long first, long second) {
+        return ByteBuffer.allocate(RANGE_ENCODED_SIZE).order(ByteOrder.LITTLE_ENDIAN).putLong(first).putLong(second).array();
+    }
+
+    static final class Range {
+        final long offset;
+        final long length;
+
+        Range(long offset, long length) {
+            this.offset = offset;
+            this.length = length;
+        }
+
+        long end() {
+            return offset + length;
+        }
+    }
+}
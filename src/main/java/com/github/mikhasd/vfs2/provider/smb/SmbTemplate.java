@@ -1,20 +1,27 @@
 package com.github.mikhasd.vfs2.provider.smb;
 
+import com.hierynomus.mserref.NtStatus;
 import com.hierynomus.msfscc.fileinformation.FileAllInformation;
-import com.hierynomus.msfscc.fileinformation.FileIdBothDirectoryInformation;
+import com.hierynomus.mssmb2.SMBApiException;
 import com.hierynomus.smbj.share.Directory;
+import com.hierynomus.smbj.share.DiskEntry;
 import com.hierynomus.smbj.share.File;
 
-import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
 
 import static com.hierynomus.msdtyp.AccessMask.*;
+import static com.hierynomus.mserref.NtStatus.STATUS_FILE_IS_A_DIRECTORY;
+import static com.hierynomus.mserref.NtStatus.STATUS_OBJECT_NAME_NOT_FOUND;
+import static com.hierynomus.mserref.NtStatus.STATUS_OBJECT_PATH_NOT_FOUND;
 import static com.hierynomus.msfscc.FileAttributes.FILE_ATTRIBUTE_NORMAL;
 import static com.hierynomus.mssmb2.SMB2CreateDisposition.FILE_OPEN;
 import static com.hierynomus.mssmb2.SMB2CreateDisposition.FILE_OPEN_IF;
+import static com.hierynomus.mssmb2.SMB2CreateDisposition.FILE_OVERWRITE_IF;
 import static com.hierynomus.mssmb2.SMB2CreateOptions.*;
+import static com.hierynomus.mssmb2.SMB2ShareAccess.FILE_SHARE_DELETE;
 import static com.hierynomus.mssmb2.SMB2ShareAccess.FILE_SHARE_READ;
 import static com.hierynomus.mssmb2.SMB2ShareAccess.FILE_SHARE_WRITE;
 import static java.util.EnumSet.of;
@@ -26,14 +33,26 @@ public class SmbTemplate {
         this.diskShareWrapper = diskShareWrapper;
     }
 
-    boolean exists(String path) throws SmbProviderException {
-        return this.diskShareWrapper.fileExists(path) || this.diskShareWrapper.folderExists(path);
-    }
-
     FileAllInformation getFileInfo(String path) throws SmbProviderException {
         return diskShareWrapper.getFileInformation(path);
     }
 
+    /**
+     * @return the information of {@code path}, or {@code null} when it does not exist.
+     */
+    SmbFileInfo loadFileInfo(String path) throws SmbProviderException {
+        try {
+            FileAllInformation allInfo = getFileInfo(path);
+            return Objects.isNull(allInfo) ? null : SmbFileInfo.from(allInfo);
+        } catch (SMBApiException saex) {
+            NtStatus status = saex.getStatus();
+            if (!STATUS_OBJECT_NAME_NOT_FOUND.equals(status) && !STATUS_OBJECT_PATH_NOT_FOUND.equals(status)) {
+                throw SmbProviderException.fileInformationError(path, saex);
+            }
+            return null;
+        }
+    }
+
     void createFolder(String path) throws SmbProviderException {
         diskShareWrapper.mkdir(path);
     }
@@ -49,56 +68,87 @@ public class SmbTemplate {
         );
     }
 
-    private File openDestFileForCopy(String path) throws SmbProviderException {
+    File openDestFileForCopy(String path) throws SmbProviderException {
         return this.diskShareWrapper.openFile(
                 path,
-                of(GENERIC_READ),
+                of(GENERIC_READ, GENERIC_WRITE),
                 of(FILE_ATTRIBUTE_NORMAL),
                 of(FILE_SHARE_READ),
-                FILE_OPEN,
+                FILE_OVERWRITE_IF,
                 of(FILE_NON_DIRECTORY_FILE)
         );
     }
 
-    private File openSourceFileForCopy(String path) throws SmbProviderException {
+    File openSourceFileForCopy(String path) throws SmbProviderException {
         return this.diskShareWrapper.openFile(
                 path,
-                of(GENERIC_WRITE),
+                of(GENERIC_READ),
                 of(FILE_ATTRIBUTE_NORMAL),
-                of(FILE_SHARE_WRITE),
-                FILE_OPEN_IF,
+                of(FILE_SHARE_READ),
+                FILE_OPEN,
                 of(FILE_NON_DIRECTORY_FILE)
         );
     }
 
-    void serverSideCopy(String source, String destination) throws SmbProviderException {
-        try (File sourceFile = openSourceFileForCopy(source); File deestFile = openDestFileForCopy(destination)) {
-            sourceFile.remoteCopyTo(deestFile);
-        } catch (Throwable e) {
-            throw SmbProviderException.remoteCopy(source, destination, e);
-        }
+    static boolean isSelfOrParent(String name) {
+        return name.equals(".") || name.equals("..") || name.equals("./") || name.equals("../");
     }
 
-    Collection<FileIdBothDirectoryInformation> getChildrenInfo(String path) throws SmbProviderException {
-        List<FileIdBothDirectoryInformation> infos = diskShareWrapper.list(path);
-        List<FileIdBothDirectoryInformation> children = new ArrayList<>(infos.size());
-        for (FileIdBothDirectoryInformation child : children) {
-            String name = child.getFileName();
-            if (name.equals(".") || name.equals("..") || name.equals("./") || name.equals("../")) {
-                continue;
+    Directory openFolderForRead(String path) throws SmbProviderException {
+        return this.diskShareWrapper.openDirectory(
+                path,
+                of(FILE_LIST_DIRECTORY, FILE_READ_ATTRIBUTES),
+                null,
+                of(FILE_SHARE_READ, FILE_SHARE_WRITE, FILE_SHARE_DELETE),
+                FILE_OPEN,
+                of(FILE_DIRECTORY_FILE)
+        );
+    }
+
+    SmbDirectoryStream openDirectoryStream(String path) throws SmbProviderException {
+        return new SmbDirectoryStream(openFolderForRead(path), getMetrics());
+    }
+
+    /**
+     * @return the children of folder {@code path} by name, in listing order.
+     */
+    Map<String, SmbFileInfo> loadChildrenInfo(String path) throws SmbProviderException {
+        Map<String, SmbFileInfo> children = new LinkedHashMap<>();
+        try (SmbDirectoryStream entries = openDirectoryStream(path)) {
+            for (SmbDirectoryEntry entry : entries) {
+                children.put(entry.getName(), entry.getInfo());
             }
-            infos.add(child);
         }
-        return Collections.unmodifiableCollection(infos);
+        return Collections.unmodifiableMap(children);
+    }
+
+    /**
+     * Gives the open {@code entry} its new name {@code newPath}.
+     */
+    void rename(DiskEntry entry, String newPath) {
+        final long start = System.nanoTime();
+        try {
+            entry.rename(newPath);
+        } catch (RuntimeException e) {
+            SmbOperation.RENAME.failed(getMetrics(), start, e);
+            throw e;
+        }
+        SmbOperation.RENAME.succeeded(getMetrics(), start);
     }
 
+    /**
+     * Deletes {@code path} as a file and only falls back to removing an empty folder when the server reports one, so
+     * deleting a file costs a single CREATE and CLOSE instead of a type lookup followed by the delete.
+     */
     void delete(String path) throws SmbProviderException {
         try {
-            FileAllInformation info = diskShareWrapper.getFileInformation(path);
-            if(info.getStandardInformation().isDirectory()){
-                diskShareWrapper.rmdir(path, true);
-            } else {
+            try {
                 diskShareWrapper.rm(path);
+            } catch (SMBApiException e) {
+                if (!STATUS_FILE_IS_A_DIRECTORY.equals(e.getStatus())) {
+                    throw e;
+                }
+                diskShareWrapper.rmdir(path);
             }
         } catch (SmbProviderException e) {
             throw e;
@@ -107,6 +157,14 @@ public class SmbTemplate {
         }
     }
 
+    void deleteFile(String path) throws SmbProviderException {
+        diskShareWrapper.rm(path);
+    }
+
+    void deleteEmptyFolder(String path) throws SmbProviderException {
+        diskShareWrapper.rmdir(path);
+    }
+
     File openFileForWrite(String path) throws SmbProviderException {
         return this.diskShareWrapper.openFile(
                 path,
@@ -118,6 +176,28 @@ public class SmbTemplate {
         );
     }
 
+    File openFileForOverwrite(String path) throws SmbProviderException {
+        return this.diskShareWrapper.openFile(
+                path,
+                of(GENERIC_WRITE),
+                of(FILE_ATTRIBUTE_NORMAL),
+                of(FILE_SHARE_WRITE),
+                FILE_OVERWRITE_IF,
+                of(FILE_NON_DIRECTORY_FILE, FILE_NO_COMPRESSION)
+        );
+    }
+
+    File openFileForReadWrite(String path) throws SmbProviderException {
+        return this.diskShareWrapper.openFile(
+                path,
+                of(GENERIC_READ, GENERIC_WRITE),
+                of(FILE_ATTRIBUTE_NORMAL),
+                of(FILE_SHARE_READ, FILE_SHARE_WRITE),
+                FILE_OPEN_IF,
+                of(FILE_NON_DIRECTORY_FILE, FILE_NO_COMPRESSION)
+        );
+    }
+
     File openFileForRead(String path) throws SmbProviderException {
         return this.diskShareWrapper.openFile(
                 path,
@@ -128,4 +208,27 @@ public class SmbTemplate {
                 of(FILE_NON_DIRECTORY_FILE, FILE_NO_COMPRESSION)
         );
     }
+
+    /**
+     * Opens {@code path} for reading without denying other readers, writers or deletes, so the handle can be kept open
+     * and shared between readers.
+     */
+    File openFileForSharedRead(String path) throws SmbProviderException {
+        return this.diskShareWrapper.openFile(
+                path,
+                of(GENERIC_READ),
+                of(FILE_ATTRIBUTE_NORMAL),
+                of(FILE_SHARE_READ, FILE_SHARE_WRITE, FILE_SHARE_DELETE),
+                FILE_OPEN,
+                of(FILE_NON_DIRECTORY_FILE, FILE_NO_COMPRESSION)
+        );
+    }
+
+    SmbMetricsListener getMetrics() {
+        return this.diskShareWrapper.getMetrics();
+    }
+
+    void close() {
+        this.diskShareWrapper.close();
+    }
 }
@@ -0,0 +1,88 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import com.hierynomus.smbj.SmbConfig;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transport settings of a file system, turned into the {@link SmbConfig} of the clients connecting it.
+ * <p>
+ * File systems with equal settings share clients, and therefore connections, through {@link SmbSessionPool}.
+ */
+final class SmbTransportConfig {
+
+    static final SmbConfig DEFAULTS = SmbConfig.createDefaultConfig();
+
+    private final int readBufferSize;
+    private final int writeBufferSize;
+    private final int transactBufferSize;
+    private final Duration requestTimeout;
+    private final Duration socketTimeout;
+    private final Duration connectTimeout;
+    private final int socketReceiveBufferSize;
+    private final int socketSendBufferSize;
+    private final boolean signingRequired;
+    private final boolean encryptData;
+
+    SmbTransportConfig(int readBufferSize,
+                       int writeBufferSize,
+                       int transactBufferSize,
+                       Duration requestTimeout,
+                       Duration socketTimeout,
+                       Duration connectTimeout,
+                       int socketReceiveBufferSize,
+                       int socketSendBufferSize,
+                       boolean signingRequired,
+                       boolean encryptData) {
+        this.readBufferSize = readBufferSize;
+        this.writeBufferSize = writeBufferSize;
+        this.transactBufferSize = transactBufferSize;
+        this.requestTimeout = requestTimeout;
+        this.socketTimeout = socketTimeout;
+        this.connectTimeout = connectTimeout;
+        this.socketReceiveBufferSize = socketReceiveBufferSize;
+        this.socketSendBufferSize = socketSendBufferSize;
+        this.signingRequired = signingRequired;
+        this.encryptData = encryptData;
+    }
+
+    SmbConfig toSmbConfig() {
+        return SmbConfig.builder()
+                .withDfsEnabled(true)
+                .withMultiProtocolNegotiate(true)
+                .withReadBufferSize(readBufferSize)
+                .withWriteBufferSize(writeBufferSize)
+                .withTransactBufferSize(transactBufferSize)
+                .withTimeout(requestTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                .withSoTimeout(socketTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                .withSocketFactory(new SmbSocketFactory((int) connectTimeout.toMillis(), socketReceiveBufferSize, socketSendBufferSize))
+                .withSigningRequired(signingRequired)
+                .withEncryptData(encryptData)
+                .build();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SmbTransportConfig that = (SmbTransportConfig) o;
+        return readBufferSize == that.readBufferSize
+                && writeBufferSize == that.writeBufferSize
+                && transactBufferSize == that.transactBufferSize
+                && socketReceiveBufferSize == that.socketReceiveBufferSize
+                && socketSendBufferSize == that.socketSendBufferSize
+                && signingRequired == that.signingRequired
+                && encryptData == that.encryptData
+                && requestTimeout.equals(that.requestTimeout)
+                && socketTimeout.equals(that.socketTimeout)
+                && connectTimeout.equals(that.connectTimeout);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(readBufferSize, writeBufferSize, transactBufferSize, requestTimeout, socketTimeout,
+                connectTimeout, socketReceiveBufferSize, socketSendBufferSize, signingRequired, encryptData);
+    }
+}
@@ -0,0 +1,118 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSelector;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileType;
+import org.apache.commons.vfs2.NameScope;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.apache.commons.vfs2.FileType.FOLDER;
+import static org.apache.commons.vfs2.FileType.IMAGINARY;
+
+/**
+ * Copies a selection of files into an SMB folder.
+ * <p>
+ * Folders are created first, in traversal order, then files are copied concurrently with bounded parallelism.
+ * Destination types are taken from one listing per destination folder instead of probing every file, and a failing
+ * file does not stop the others.
+ */
+class SmbTreeCopier {
+
+    private final SmbFileObject destinationRoot;
+    private final int parallelism;
+    private final Map<String, Map<String, SmbFileInfo>> destinationListings = new ConcurrentHashMap<>();
+
+    SmbTreeCopier(SmbFileObject destinationRoot, int parallelism) {
+        this.destinationRoot = destinationRoot;
+        this.parallelism = parallelism;
+    }
+
+    SmbCopyReport copy(FileObject source, FileSelector selector) throws FileSystemException {
+        if (!source.exists()) {
+            throw SmbProviderException.missingSourceFile(source);
+        }
+
+        final List<FileObject> files = new ArrayList<>();
+        source.findFiles(selector, false, files);
+
+        final SmbCopyReport report = new SmbCopyReport();
+        final List<Transfer> transfers = new ArrayList<>();
+        for (FileObject srcFile : files) {
+            try {
+                final String relativePath = source.getName().getRelativeName(srcFile.getName());
+                final SmbFileObject destinationFile = (SmbFileObject) destinationRoot.resolveFile(relativePath, NameScope.DESCENDENT_OR_SELF);
+                final FileType srcFileType = srcFile.getType();
+
+                FileType destinationType = existingType(destinationFile);
+                if (!IMAGINARY.equals(destinationType) && !destinationType.equals(srcFileType)) {
+                    destinationFile.deleteAll();
+                    destinationType = IMAGINARY;
+                }
+
+                if (srcFileType.hasContent()) {
+                    transfers.add(new Transfer(srcFile, destinationFile));
+                } else if (srcFileType.hasChildren() && !FOLDER.equals(destinationType)) {
+                    destinationFile.createFolder();
+                    destinationListings.put(destinationFile.getSmbPath(), Collections.emptyMap());
+                    report.folderCreated();
+                }
+            } catch (Exception e) {
+                report.failed(srcFile.getName(), e);
+            }
+        }
+
+        try {
+            Map<Transfer, Exception> failures = SmbExecutors.forEach(transfers, parallelism, transfer -> {
+                report.fileCopied(transfer.destination.copyContentFrom(transfer.source));
+            });
+            failures.forEach((transfer, cause) -> report.failed(transfer.source.getName(), cause));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FileSystemException(e);
+        }
+        return report;
+    }
+
+    private FileType existingType(SmbFileObject destination) throws FileSystemException {
+        final String path = destination.getSmbPath();
+        if (path.isEmpty()) {
+            return destination.getType();
+        }
+        final int separator = path.lastIndexOf('\\');
+        final String parentPath = separator < 0 ? "" : path.substring(0, separator);
+        Map<String, SmbFileInfo> siblings = destinationListings.get(parentPath);
+        if (Objects.isNull(siblings)) {
+            siblings = listDestination(destination.getParent());
+            destinationListings.put(parentPath, siblings);
+        }
+        SmbFileInfo info = siblings.get(path.substring(separator + 1));
+        return Objects.isNull(info) ? IMAGINARY : info.getFileType();
+    }
+
+    private Map<String, SmbFileInfo> listDestination(FileObject folder) throws FileSystemException {
+        if (Objects.isNull(folder) || !FOLDER.equals(folder.getType())) {
+            return Collections.emptyMap();
+        }
+        Map<String, SmbFileInfo> children = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        children.putAll(((SmbFileObject) folder).getChildrenInfo());
+        return children;
+    }
+
+    private static final class Transfer {
+        private final FileObject source;
+        private final SmbFileObject destination;
+
+        private Transfer(FileObject source, SmbFileObject destination) {
+            this.source = source;
+            this.destination = destination;
+        }
+    }
+}
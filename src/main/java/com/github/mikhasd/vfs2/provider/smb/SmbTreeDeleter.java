@@ -0,0 +1,119 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import org.apache.commons.vfs2.FileSystemException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.apache.commons.vfs2.FileType.FOLDER;
+
+/**
+ * Deletes a file or a whole folder tree on an SMB share.
+ * <p>
+ * Folders are listed level by level and the types returned by the listings decide how each entry is deleted, so
+ * nothing is probed. Every entry costs one CREATE with FILE_DELETE_ON_CLOSE and its CLOSE. Files are deleted
+ * concurrently as their level is listed, folders once emptied, deepest level first. A failing entry does not stop the
+ * others, the folders above it are left in place.
+ */
+class SmbTreeDeleter {
+
+    private final SmbTemplate smbTemplate;
+    private final SmbFileSystem fileSystem;
+    private final int parallelism;
+    private final Set<String> incompleteFolders = ConcurrentHashMap.newKeySet();
+
+    SmbTreeDeleter(SmbTemplate smbTemplate, SmbFileSystem fileSystem, int parallelism) {
+        this.smbTemplate = smbTemplate;
+        this.fileSystem = fileSystem;
+        this.parallelism = parallelism;
+    }
+
+    SmbDeleteReport delete(String path) throws FileSystemException {
+        final SmbDeleteReport report = new SmbDeleteReport();
+        fileSystem.invalidateTree(path);
+        try {
+            SmbFileInfo info = smbTemplate.loadFileInfo(path);
+            if (Objects.isNull(info)) {
+                return report;
+            }
+            if (FOLDER.equals(info.getFileType())) {
+                deleteFolder(path, report);
+            } else {
+                deleteFiles(Collections.singletonList(path), report);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FileSystemException(e);
+        } finally {
+            fileSystem.invalidateTree(path);
+        }
+        return report;
+    }
+
+    private void deleteFolder(String root, SmbDeleteReport report) throws InterruptedException {
+        final List<List<String>> levels = new ArrayList<>();
+        List<String> level = Collections.singletonList(root);
+        while (!level.isEmpty()) {
+            levels.add(level);
+            final List<String> files = Collections.synchronizedList(new ArrayList<>());
+            final List<String> folders = Collections.synchronizedList(new ArrayList<>());
+            Map<String, Exception> failures = SmbExecutors.forEach(level, parallelism, folder -> {
+                for (Map.Entry<String, SmbFileInfo> child : smbTemplate.loadChildrenInfo(folder).entrySet()) {
+                    String childPath = folder.isEmpty() ? child.getKey() : folder + '\\' + child.getKey();
+                    (FOLDER.equals(child.getValue().getFileType()) ? folders : files).add(childPath);
+                }
+            });
+            failed(failures, report);
+            deleteFiles(files, report);
+            level = folders;
+        }
+
+        for (int i = levels.size() - 1; i >= 0; i--) {
+            List<String> emptied = new ArrayList<>();
+            for (String folder : levels.get(i)) {
+                // the root of the share is emptied but cannot be deleted itself
+                if (!folder.isEmpty() && !incompleteFolders.contains(folder)) {
+                    emptied.add(folder);
+                }
+            }
+            Map<String, Exception> failures = SmbExecutors.forEach(emptied, parallelism, folder -> {
+                smbTemplate.deleteEmptyFolder(folder);
+                report.folderDeleted();
+            });
+            failed(failures, report);
+        }
+    }
+
+    private void deleteFiles(Collection<String> files, SmbDeleteReport report) throws InterruptedException {
+        Map<String, Exception> failures = SmbExecutors.forEach(files, parallelism, file -> {
+            smbTemplate.deleteFile(file);
+            report.fileDeleted();
+        });
+        failed(failures, report);
+    }
+
+    private void failed(Map<String, Exception> failures, SmbDeleteReport report) {
+        failures.forEach((path, cause) -> {
+            report.failed(path, cause);
+            for (String incomplete = path; Objects.nonNull(incomplete); incomplete = parentOf(incomplete)) {
+                if (!incompleteFolders.add(incomplete)) {
+                    break;
+                }
+            }
+        });
+    }
+
+    private static String parentOf(String path) {
+        if (path.isEmpty()) {
+            return null;
+        }
+        int separator = path.lastIndexOf('\\');
+        return separator < 0 ? "" : path.substring(0, separator);
+    }
+}
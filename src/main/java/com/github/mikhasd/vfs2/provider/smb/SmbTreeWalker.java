@@ -0,0 +1,163 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSelectInfo;
+import org.apache.commons.vfs2.FileSelector;
+import org.apache.commons.vfs2.FileSystemException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Finds the files selected below an SMB folder, listing sibling folders concurrently.
+ * <p>
+ * Every folder is a fork/join task, so up to the pool parallelism QUERY_DIRECTORY requests are in flight instead of
+ * one. A worker waiting for a listing is a managed blocker, the pool keeps running forked visits on a spare thread
+ * meanwhile. Depth, traversal and inclusion decisions and the order of the selected files are
+ * the same as {@link FileObject#findFiles(FileSelector, boolean, List)}, but the selector may be called from several
+ * threads at once.
+ */
+class SmbTreeWalker {
+
+    private final FileSelector selector;
+    private final boolean depthwise;
+    private final ForkJoinPool pool;
+    // spare threads would otherwise raise the number of listings in flight above the parallelism
+    private final Semaphore listings;
+
+    SmbTreeWalker(FileSelector selector, boolean depthwise, ForkJoinPool pool) {
+        this.selector = selector;
+        this.depthwise = depthwise;
+        this.pool = pool;
+        this.listings = new Semaphore(pool.getParallelism());
+    }
+
+    List<FileObject> walk(SmbFileObject baseFolder) throws Exception {
+        try {
+            return pool.invoke(new Visit(baseFolder, baseFolder, 0));
+        } catch (WalkException e) {
+            throw e.getCause();
+        }
+    }
+
+    private final class Visit extends RecursiveTask<List<FileObject>> implements FileSelectInfo {
+        private static final long serialVersionUID = 1L;
+
+        private final SmbFileObject baseFolder;
+        private final SmbFileObject file;
+        private final int depth;
+
+        private Visit(SmbFileObject baseFolder, SmbFileObject file, int depth) {
+            this.baseFolder = baseFolder;
+            this.file = file;
+            this.depth = depth;
+        }
+
+        @Override
+        protected List<FileObject> compute() {
+            try {
+                return visit();
+            } catch (Exception e) {
+                throw new WalkException(e);
+            }
+        }
+
+        private List<FileObject> visit() throws Exception {
+            final List<FileObject> selected = new ArrayList<>();
+            if (file.getType().hasChildren() && selector.traverseDescendents(this)) {
+                final SmbFileObject[] children = list(file);
+                final Visit[] visits = new Visit[children.length];
+                final boolean[] forked = new boolean[children.length];
+                for (int i = 0; i < children.length; i++) {
+                    visits[i] = new Visit(baseFolder, children[i], depth + 1);
+                    if (children[i].getType().hasChildren()) {
+                        visits[i].fork();
+                        forked[i] = true;
+                    }
+                }
+                for (int i = 0; i < visits.length; i++) {
+                    selected.addAll(forked[i] ? visits[i].join() : visits[i].visit());
+                }
+            }
+            if (selector.includeFile(this)) {
+                selected.add(depthwise ? selected.size() : 0, file);
+            }
+            return selected;
+        }
+
+        private SmbFileObject[] list(SmbFileObject folder) throws Exception {
+            listings.acquire();
+            try {
+                Listing listing = new Listing(folder);
+                ForkJoinPool.managedBlock(listing);
+                return listing.get();
+            } finally {
+                listings.release();
+            }
+        }
+
+        @Override
+        public FileObject getBaseFolder() {
+            return baseFolder;
+        }
+
+        @Override
+        public FileObject getFile() {
+            return file;
+        }
+
+        @Override
+        public int getDepth() {
+            return depth;
+        }
+    }
+
+    private static final class Listing implements ForkJoinPool.ManagedBlocker {
+        private final SmbFileObject folder;
+        private SmbFileObject[] children;
+        private FileSystemException failure;
+
+        private Listing(SmbFileObject folder) {
+            this.folder = folder;
+        }
+
+        @Override
+        public boolean block() {
+            try {
+                children = folder.resolveChildren();
+            } catch (FileSystemException e) {
+                failure = e;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return Objects.nonNull(children) || Objects.nonNull(failure);
+        }
+
+        private SmbFileObject[] get() throws FileSystemException {
+            if (Objects.nonNull(failure)) {
+                throw failure;
+            }
+            return children;
+        }
+    }
+
+    private static final class WalkException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private WalkException(Exception cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized Exception getCause() {
+            return (Exception) super.getCause();
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import com.hierynomus.smbj.SmbConfig;
+import com.hierynomus.smbj.session.Session;
+import com.hierynomus.smbj.share.DiskShare;
+import com.hierynomus.smbj.share.InMemoryDiskShare;
+import com.hierynomus.smbj.share.Share;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class DiskShareManagerTest {
+
+    @Test(timeout = 5_000)
+    public void connectsAgainAfterAnError() throws Exception {
+        FailingSessionFactory sessionFactory = new FailingSessionFactory(new StackOverflowError(), new IllegalStateException("refused"));
+        DiskShareManager manager = new DiskShareManager(sessionFactory, "share", 1, SmbMetricsListener.NONE, new SmbBackoff(Duration.ofMillis(1), Duration.ofMillis(1)));
+
+        try {
+            manager.getDiskShare();
+            fail("The error was swallowed");
+        } catch (StackOverflowError expected) {
+            // thrown to the caller that was connecting
+        }
+        Thread.sleep(10);
+        try {
+            manager.getDiskShare();
+            fail("The second attempt did not fail");
+        } catch (SmbProviderException e) {
+            assertEquals("refused", e.getCause().getMessage());
+        }
+
+        assertEquals(2, sessionFactory.attempts);
+    }
+
+    @Test
+    public void wrapsTheSharedFailureForEveryCaller() {
+        IllegalStateException refused = new IllegalStateException("refused");
+        FailingSessionFactory sessionFactory = new FailingSessionFactory(refused);
+        DiskShareManager manager = new DiskShareManager(sessionFactory, "share", 1, SmbMetricsListener.NONE, new SmbBackoff(Duration.ofMinutes(1), Duration.ofMinutes(1)));
+
+        SmbProviderException first = connectionFailure(manager);
+        SmbProviderException second = connectionFailure(manager);
+
+        assertNotSame(first, second);
+        assertSame(refused, first.getCause());
+        assertSame(refused, second.getCause());
+        assertEquals(1, sessionFactory.attempts);
+    }
+
+    @Test
+    public void spreadsCallsOverTheStripesRoundRobin() throws SmbProviderException {
+        StripedSessionFactory sessionFactory = new StripedSessionFactory();
+        DiskShareManager manager = new DiskShareManager(sessionFactory, "share", 3);
+
+        List<Integer> stripes = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            stripes.add(sessionFactory.stripeOf(manager.getDiskShare()));
+        }
+
+        assertEquals(Arrays.asList(0, 1, 2, 0, 1, 2), stripes);
+        assertEquals(Arrays.asList(1, 1, 1), sessionFactory.sessions());
+    }
+
+    @Test
+    public void reconnectsOnlyTheStripeThatLostItsConnection() throws SmbProviderException {
+        StripedSessionFactory sessionFactory = new StripedSessionFactory();
+        SmbMetrics metrics = new SmbMetrics();
+        DiskShareManager manager = new DiskShareManager(sessionFactory, "share", 3, metrics);
+        List<InMemoryDiskShare> shares = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            shares.add((InMemoryDiskShare) manager.getDiskShare());
+        }
+
+        shares.get(1).setConnected(false);
+        for (int i = 0; i < 3; i++) {
+            manager.getDiskShare();
+        }
+
+        assertEquals(Arrays.asList(1, 2, 1), sessionFactory.sessions());
+        assertEquals(1, sessionFactory.released.get());
+        assertEquals(1, metrics.getReconnects());
+    }
+
+    @Test
+    public void connectsAgainOnceTheBackoffHasPassed() throws Exception {
+        StripedSessionFactory sessionFactory = new StripedSessionFactory(new IllegalStateException("refused"));
+        DiskShareManager manager = new DiskShareManager(sessionFactory, "share", 1, SmbMetricsListener.NONE, new SmbBackoff(Duration.ofMillis(200), Duration.ofMillis(200)));
+
+        connectionFailure(manager);
+        connectionFailure(manager);
+        assertEquals(Arrays.asList(1), sessionFactory.sessions());
+
+        Thread.sleep(250);
+        manager.getDiskShare();
+
+        assertEquals(Arrays.asList(2), sessionFactory.sessions());
+    }
+
+    @Test(timeout = 5_000)
+    public void connectsOnceForCallersArrivingTogether() throws Exception {
+        StripedSessionFactory sessionFactory = new StripedSessionFactory();
+        sessionFactory.gate = new CountDownLatch(1);
+        DiskShareManager manager = new DiskShareManager(sessionFactory, "share");
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<DiskShare>> shares = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                shares.add(callers.submit(manager::getDiskShare));
+            }
+            Thread.sleep(100);
+            sessionFactory.gate.countDown();
+
+            for (Future<DiskShare> share : shares) {
+                assertSame(shares.get(0).get(), share.get());
+            }
+            assertEquals(Arrays.asList(1), sessionFactory.sessions());
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    private static SmbProviderException connectionFailure(DiskShareManager manager) {
+        try {
+            manager.getDiskShare();
+            throw new AssertionError("The connection did not fail");
+        } catch (SmbProviderException e) {
+            return e;
+        }
+    }
+
+    /**
+     * Hands out sessions whose share is an in-memory share of their own, after the given failures.
+     */
+    private static final class StripedSessionFactory extends SessionFactory {
+        private final Deque<RuntimeException> failures;
+        // shares of the same path are equal, tell them apart by identity
+        private final Map<DiskShare, Integer> stripes = Collections.synchronizedMap(new IdentityHashMap<>());
+        private final AtomicIntegerArray attempts = new AtomicIntegerArray(3);
+        private final AtomicInteger released = new AtomicInteger();
+        private volatile CountDownLatch gate = new CountDownLatch(0);
+
+        private StripedSessionFactory(RuntimeException... failures) {
+            super(null, "localhost", 445, null, null, null, null, 1, Duration.ZERO, Duration.ZERO);
+            this.failures = new ArrayDeque<>(Arrays.asList(failures));
+        }
+
+        @Override
+        Session create(int stripe) {
+            attempts.incrementAndGet(stripe);
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            RuntimeException failure = failures.poll();
+            if (Objects.nonNull(failure)) {
+                throw failure;
+            }
+            InMemoryDiskShare share = new InMemoryDiskShare("share", SimulatedLink.unlimited());
+            stripes.put(share, stripe);
+            return new Session(null, SmbConfig.createDefaultConfig(), null, null, null, null, null) {
+                @Override
+                public Share connectShare(String shareName) {
+                    return share;
+                }
+            };
+        }
+
+        @Override
+        void release(int stripe, Session session) {
+            released.incrementAndGet();
+        }
+
+        private int stripeOf(DiskShare share) {
+            return stripes.get(share);
+        }
+
+        /**
+         * @return the connection attempts of each stripe used so far.
+         */
+        private List<Integer> sessions() {
+            List<Integer> sessions = new ArrayList<>();
+            for (int i = 0; i < attempts.length() && attempts.get(i) > 0; i++) {
+                sessions.add(attempts.get(i));
+            }
+            return sessions;
+        }
+    }
+
+    private static final class FailingSessionFactory extends SessionFactory {
+        private final Deque<Throwable> failures;
+        private int attempts;
+
+        private FailingSessionFactory(Throwable... failures) {
+            super(null, "localhost", 445, null, null, null, null, 1, Duration.ZERO, Duration.ZERO);
+            this.failures = new ArrayDeque<>(Arrays.asList(failures));
+        }
+
+        @Override
+        Session create(int stripe) {
+            attempts++;
+            Throwable failure = failures.poll();
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+            throw (RuntimeException) failure;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import com.hierynomus.msdtyp.AccessMask;
+import com.hierynomus.msfscc.FileAttributes;
+import com.hierynomus.mssmb2.SMB2CreateDisposition;
+import com.hierynomus.mssmb2.SMB2CreateOptions;
+import com.hierynomus.mssmb2.SMB2ShareAccess;
+import com.hierynomus.protocol.transport.TransportException;
+import com.hierynomus.smbj.common.SMBRuntimeException;
+import com.hierynomus.smbj.share.DiskEntry;
+import com.hierynomus.smbj.share.DiskShare;
+import com.hierynomus.smbj.share.InMemoryDiskShare;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DiskShareWrapperTest {
+
+    @Test
+    public void retriesRequestsWhoseConnectionFailed() throws SmbProviderException {
+        FailingShare share = new FailingShare(
+                new SMBRuntimeException(new TransportException("connection reset")),
+                new SMBRuntimeException(new TransportException("connection reset"))
+        );
+
+        assertEquals(3, wrapper(share).getFileInformation("file.bin").getStandardInformation().getEndOfFile());
+        assertEquals(3, share.opens);
+    }
+
+    @Test
+    public void doesNotRetryOtherFailures() throws SmbProviderException {
+        NullPointerException bug = new NullPointerException();
+        FailingShare share = new FailingShare(bug);
+
+        try {
+            wrapper(share).getFileInformation("file.bin");
+            fail("The failure was not reported");
+        } catch (NullPointerException e) {
+            assertSame(bug, e);
+        }
+        assertEquals(1, share.opens);
+    }
+
+    @Test
+    public void givesUpAfterTheConfiguredRetries() throws SmbProviderException {
+        FailingShare share = new FailingShare(
+                new SMBRuntimeException(new TransportException("connection reset")),
+                new SMBRuntimeException(new TransportException("connection reset")),
+                new SMBRuntimeException(new TransportException("connection reset"))
+        );
+
+        try {
+            wrapper(share).getFileInformation("file.bin");
+            fail("The failure was not reported");
+        } catch (SMBRuntimeException expected) {
+            // two retries after the first attempt
+        }
+        assertEquals(3, share.opens);
+    }
+
+    @Test
+    public void leavesTheReconnectOutOfTheRequestLatency() throws SmbProviderException {
+        InMemoryDiskShare share = new InMemoryDiskShare("share", SimulatedLink.unlimited());
+        DiskShareManager diskShareManager = new DiskShareManager(null, "share") {
+            @Override
+            public DiskShare getDiskShare() {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return share;
+            }
+        };
+        SmbMetrics metrics = new SmbMetrics();
+
+        new DiskShareWrapper(diskShareManager, metrics).mkdir("folder");
+
+        assertEquals(1, metrics.getCount(SmbOperation.MKDIR));
+        assertTrue(metrics.getTotalTime(SmbOperation.MKDIR).compareTo(Duration.ofMillis(100)) < 0);
+    }
+
+    private static DiskShareWrapper wrapper(DiskShare share) {
+        DiskShareManager diskShareManager = new DiskShareManager(null, "share") {
+            @Override
+            public DiskShare getDiskShare() {
+                return share;
+            }
+        };
+        return new DiskShareWrapper(diskShareManager, SmbMetricsListener.NONE, 2, new SmbBackoff(Duration.ofMillis(1), Duration.ofMillis(1)));
+    }
+
+    private static final class FailingShare extends InMemoryDiskShare {
+        private final Deque<RuntimeException> failures;
+        private int opens;
+
+        private FailingShare(RuntimeException... failures) {
+            super("share", SimulatedLink.unlimited());
+            this.failures = new ArrayDeque<>(Arrays.asList(failures));
+            createFile("file.bin", new byte[3]);
+        }
+
+        @Override
+        public DiskEntry open(String path, Set<AccessMask> accessMask, Set<FileAttributes> attributes, Set<SMB2ShareAccess> shareAccesses, SMB2CreateDisposition createDisposition, Set<SMB2CreateOptions> createOptions) {
+            opens++;
+            RuntimeException failure = failures.poll();
+            if (Objects.nonNull(failure)) {
+                throw failure;
+            }
+            return super.open(path, accessMask, attributes, shareAccesses, createDisposition, createOptions);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import com.hierynomus.smbj.share.DiskShare;
+import com.hierynomus.smbj.share.InMemoryDiskShare;
+import org.apache.commons.vfs2.FileName;
+import org.apache.commons.vfs2.FileSystem;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.impl.DefaultFileSystemManager;
+import org.apache.commons.vfs2.provider.local.DefaultLocalFileProvider;
+
+/**
+ * Serves every {@code smb://} file system from the same {@link InMemoryDiskShare}, leaving the provider code above
+ * {@link DiskShareManager} unchanged.
+ */
+public class InMemorySmbFileProvider extends SmbFileProvider {
+
+    private final InMemoryDiskShare diskShare;
+
+    public InMemorySmbFileProvider(InMemoryDiskShare diskShare) {
+        this.diskShare = diskShare;
+    }
+
+    /**
+     * Creates a file system manager resolving {@code smb://} against {@code diskShare} and {@code file://} locally.
+     */
+    public static DefaultFileSystemManager createManager(InMemoryDiskShare diskShare) throws FileSystemException {
+        DefaultFileSystemManager manager = new DefaultFileSystemManager();
+        manager.addProvider("smb", new InMemorySmbFileProvider(diskShare));
+        manager.addProvider("file", new DefaultLocalFileProvider());
+        manager.init();
+        return manager;
+    }
+
+    @Override
+    protected FileSystem doCreateFileSystem(FileName rootName, FileSystemOptions fileSystemOptions) throws FileSystemException {
+        DiskShareManager diskShareManager = new DiskShareManager(null, ((SmbFileName) rootName).getShare()) {
+            @Override
+            public DiskShare getDiskShare() {
+                return diskShare;
+            }
+
+            @Override
+            public void close() {
+                // the in-memory share outlives the file systems mounted on it
+            }
+        };
+        SmbMetricsListener metrics = SmbFileSystemConfigBuilder.getInstance().getMetricsListener(fileSystemOptions);
+        return new SmbFileSystem(rootName, fileSystemOptions, new SmbTemplate(new DiskShareWrapper(diskShareManager, metrics)));
+    }
+}
@@ -0,0 +1,56 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import java.time.Duration;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Network between the client and the in-memory share: every request pays one round trip of latency and its payload
+ * is serialized over a link of limited bandwidth shared by all concurrent requests, so pipelining hides latency but not
+ * bandwidth, as on a real wire.
+ */
+public final class SimulatedLink {
+
+    private final long roundTripNanos;
+    private final long bytesPerSecond;
+    private long busyUntil;
+
+    /**
+     * @param bytesPerSecond link bandwidth, zero or less for unlimited.
+     */
+    public SimulatedLink(Duration roundTrip, long bytesPerSecond) {
+        this.roundTripNanos = roundTrip.toNanos();
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    public static SimulatedLink unlimited() {
+        return new SimulatedLink(Duration.ZERO, 0);
+    }
+
+    /**
+     * Blocks for one request without payload.
+     */
+    public void roundTrip() {
+        transfer(0);
+    }
+
+    /**
+     * Blocks for one request carrying {@code bytes} of payload in either direction.
+     */
+    public void transfer(long bytes) {
+        final long wireNanos = bytesPerSecond <= 0 ? 0L : (long) (bytes * 1_000_000_000d / bytesPerSecond);
+        final long transferred;
+        synchronized (this) {
+            long start = Math.max(System.nanoTime(), busyUntil);
+            busyUntil = start + wireNanos;
+            transferred = busyUntil;
+        }
+        pauseUntil(transferred + roundTripNanos);
+    }
+
+    private static void pauseUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import com.hierynomus.smbj.share.InMemoryDiskShare;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.impl.DefaultFileSystemManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SmbAsyncOperationsTest {
+
+    private final InMemoryDiskShare share = new InMemoryDiskShare("share", SimulatedLink.unlimited());
+    private final FileSystemOptions options = new FileSystemOptions();
+    private DefaultFileSystemManager manager;
+
+    @Before
+    public void setUp() throws FileSystemException {
+        SmbFileSystemConfigBuilder configBuilder = SmbFileSystemConfigBuilder.getInstance();
+        configBuilder.setAsyncMaxConcurrency(options, 2);
+        configBuilder.setMetadataCacheTimeToLive(options, Duration.ofMinutes(1));
+        configBuilder.setListingCacheTimeToLive(options, Duration.ofMinutes(1));
+        configBuilder.setHandleCacheMaxEntries(options, 10);
+        manager = InMemorySmbFileProvider.createManager(share);
+    }
+
+    @After
+    public void tearDown() {
+        manager.close();
+    }
+
+    @Test(timeout = 10_000)
+    public void queuesRequestsBeyondTheConfiguredConcurrency() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            share.createFile("file" + i + ".txt", new byte[]{(byte) i});
+        }
+        CountDownLatch released = new CountDownLatch(1);
+        AtomicInteger inProgress = new AtomicInteger();
+        share.setOpenFault(path -> {
+            inProgress.incrementAndGet();
+            try {
+                released.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        });
+        SmbAsyncOperations operations = operations();
+
+        List<CompletableFuture<byte[]>> reads = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            reads.add(operations.readAll("file" + i + ".txt"));
+        }
+        Thread.sleep(200);
+
+        assertEquals(2, inProgress.get());
+        assertFalse(reads.stream().anyMatch(CompletableFuture::isDone));
+        released.countDown();
+        for (int i = 0; i < 5; i++) {
+            assertArrayEquals(new byte[]{(byte) i}, reads.get(i).get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(5, inProgress.get());
+    }
+
+    @Test
+    public void seesItsOwnWrites() throws Exception {
+        share.createFile("folder\\file.txt", new byte[1]);
+        SmbAsyncOperations operations = operations();
+        assertEquals(1, operations.stat("folder/file.txt").get().get().getSize());
+        assertEquals(1, operations.readAll("folder/file.txt").get().length);
+        assertEquals(1, operations.list("folder").get().size());
+
+        operations.writeAll("folder/file.txt", new byte[5]).get();
+        operations.writeAll("folder/other.txt", new byte[3]).get();
+
+        assertEquals(5, operations.stat("folder/file.txt").get().get().getSize());
+        assertEquals(5, operations.readAll("folder/file.txt").get().length);
+        assertEquals(2, operations.list("folder").get().size());
+    }
+
+    @Test
+    public void seesItsOwnRenames() throws Exception {
+        share.createFile("folder\\before.txt", new byte[1]);
+        share.createFolders("target");
+        SmbAsyncOperations operations = operations();
+        assertTrue(operations.stat("folder/before.txt").get().isPresent());
+        assertEquals(1, operations.list("folder").get().size());
+        assertEquals(0, operations.list("target").get().size());
+
+        operations.rename("folder/before.txt", "target/after.txt").get();
+
+        assertFalse(operations.stat("folder/before.txt").get().isPresent());
+        assertTrue(operations.stat("target/after.txt").get().isPresent());
+        assertEquals(0, operations.list("folder").get().size());
+        assertEquals(1, operations.list("target").get().size());
+        assertEquals("after.txt", operations.list("target").get().stream().map(SmbDirectoryEntry::getName).collect(Collectors.joining()));
+    }
+
+    private SmbAsyncOperations operations() throws FileSystemException {
+        return ((SmbFileSystem) manager.resolveFile("smb://localhost/share/", options).getFileSystem()).getAsyncOperations();
+    }
+}
@@ -0,0 +1,102 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import com.hierynomus.smbj.share.InMemoryDiskShare;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.impl.DefaultFileSystemManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class SmbDeltaUploaderTest {
+
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final InMemoryDiskShare share = new InMemoryDiskShare("share", SimulatedLink.unlimited());
+    private final FileSystemOptions options = new FileSystemOptions();
+    private final byte[] content = new byte[16 * BLOCK_SIZE];
+    private DefaultFileSystemManager manager;
+
+    @Before
+    public void setUp() throws FileSystemException {
+        SmbFileSystemConfigBuilder.getInstance().setDeltaBlockSize(options, BLOCK_SIZE);
+        manager = InMemorySmbFileProvider.createManager(share);
+        new Random(1).nextBytes(content);
+        share.createFile("file.bin", content);
+    }
+
+    @After
+    public void tearDown() {
+        manager.close();
+    }
+
+    @Test
+    public void writesOnlyTheBlocksThatChanged() throws IOException {
+        byte[] changed = content.clone();
+        changed[3 * BLOCK_SIZE + 10]++;
+        changed[11 * BLOCK_SIZE]++;
+        changed[11 * BLOCK_SIZE + 1]++;
+
+        SmbDeltaReport report = resolve("file.bin").deltaUploadFrom(local(changed));
+
+        assertEquals(16, report.getBlocks());
+        assertEquals(2, report.getBlocksWritten());
+        assertEquals(2L * BLOCK_SIZE, share.getBytesWritten());
+        assertArrayEquals(changed, remoteContent());
+    }
+
+    @Test
+    public void appendsAndTruncatesToTheSizeOfTheSource() throws IOException {
+        byte[] longer = Arrays.copyOf(content, content.length + BLOCK_SIZE / 2);
+        longer[content.length] = 1;
+
+        SmbDeltaReport report = resolve("file.bin").deltaUploadFrom(local(longer));
+
+        assertEquals(1, report.getBlocksWritten());
+        assertArrayEquals(longer, remoteContent());
+
+        byte[] shorter = Arrays.copyOf(content, 5 * BLOCK_SIZE + 7);
+        report = resolve("file.bin").deltaUploadFrom(local(shorter));
+
+        assertEquals(0, report.getBlocksWritten());
+        assertArrayEquals(shorter, remoteContent());
+    }
+
+    @Test
+    public void createsAMissingFile() throws IOException {
+        SmbDeltaReport report = resolve("new.bin").deltaUploadFrom(local(content));
+
+        assertEquals(16, report.getBlocksWritten());
+        assertArrayEquals(content, resolve("new.bin").getContent().getByteArray());
+    }
+
+    private Path local(byte[] bytes) throws IOException {
+        Path path = folder.newFile().toPath();
+        Files.write(path, bytes);
+        return path;
+    }
+
+    private byte[] remoteContent() throws IOException {
+        SmbFileObject file = resolve("file.bin");
+        file.refresh();
+        return file.getContent().getByteArray();
+    }
+
+    private SmbFileObject resolve(String path) throws FileSystemException {
+        return (SmbFileObject) manager.resolveFile("smb://localhost/share/" + path, options);
+    }
+}
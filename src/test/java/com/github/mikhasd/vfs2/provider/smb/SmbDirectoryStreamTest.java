@@ -0,0 +1,121 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import com.hierynomus.smbj.share.InMemoryDiskShare;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.impl.DefaultFileSystemManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.hierynomus.smbj.share.InMemoryDiskShare.DEFAULT_MAX_IO_SIZE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SmbDirectoryStreamTest {
+
+    // three entries per QUERY_DIRECTORY response, "." and ".." fill most of the first one
+    private final InMemoryDiskShare share = new InMemoryDiskShare("share", SimulatedLink.unlimited(), DEFAULT_MAX_IO_SIZE, 3);
+    private DefaultFileSystemManager manager;
+
+    @Before
+    public void setUp() throws FileSystemException {
+        manager = InMemorySmbFileProvider.createManager(share);
+        for (int i = 0; i < 7; i++) {
+            share.createFile("folder\\file" + i + ".txt", new byte[i]);
+        }
+        share.createFolders("folder\\sub");
+        share.createFolders("empty");
+    }
+
+    @After
+    public void tearDown() {
+        manager.close();
+    }
+
+    @Test
+    public void listsEveryChildButTheDotEntries() throws FileSystemException {
+        List<String> names = new ArrayList<>();
+        try (SmbDirectoryStream entries = open("folder")) {
+            for (SmbDirectoryEntry entry : entries) {
+                names.add(entry.getName());
+            }
+        }
+
+        assertEquals(8, names.size());
+        assertTrue(names.contains("sub"));
+        assertFalse(names.contains("."));
+        assertFalse(names.contains(".."));
+        assertEquals(0, share.getOpenDirectories());
+    }
+
+    @Test
+    public void listsNothingInAnEmptyFolder() throws FileSystemException {
+        try (SmbDirectoryStream entries = open("empty")) {
+            assertFalse(entries.iterator().hasNext());
+        }
+    }
+
+    @Test
+    public void releasesTheHandleWhenLeftEarly() throws FileSystemException {
+        try (SmbDirectoryStream entries = open("folder")) {
+            for (SmbDirectoryEntry entry : entries) {
+                if (entry.getName().startsWith("file")) {
+                    break;
+                }
+            }
+            assertEquals(1, share.getOpenDirectories());
+        }
+
+        assertEquals(0, share.getOpenDirectories());
+    }
+
+    @Test
+    public void closingTheStreamClosesTheListing() throws FileSystemException {
+        final Optional<SmbDirectoryEntry> first;
+        try (Stream<SmbDirectoryEntry> entries = open("folder").stream()) {
+            first = entries.findFirst();
+        }
+
+        assertTrue(first.isPresent());
+        assertEquals(0, share.getOpenDirectories());
+    }
+
+    @Test
+    public void endsTheIterationOnceClosed() throws FileSystemException {
+        SmbDirectoryStream entries = open("folder");
+        Iterator<SmbDirectoryEntry> iterator = entries.iterator();
+        iterator.next();
+
+        entries.close();
+
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void canOnlyBeIteratedOnce() throws FileSystemException {
+        try (SmbDirectoryStream entries = open("folder")) {
+            List<String> names = entries.stream().map(SmbDirectoryEntry::getName).collect(Collectors.toList());
+            assertEquals(8, names.size());
+            try {
+                entries.iterator();
+                fail("A second iteration was allowed");
+            } catch (IllegalStateException expected) {
+                // the entries were consumed by the first one
+            }
+        }
+    }
+
+    private SmbDirectoryStream open(String path) throws FileSystemException {
+        return ((SmbFileObject) manager.resolveFile("smb://localhost/share/" + path, new FileSystemOptions())).openDirectoryStream();
+    }
+}
@@ -0,0 +1,94 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SmbExecutorsTest {
+
+    @Test
+    public void runsEveryItemAndCollectsTheFailures() throws InterruptedException {
+        Set<Integer> done = ConcurrentHashMap.newKeySet();
+
+        Map<Integer, Exception> failures = SmbExecutors.forEach(range(100), 4, item -> {
+            if (item % 10 == 0) {
+                throw new IllegalArgumentException(String.valueOf(item));
+            }
+            done.add(item);
+        });
+
+        assertEquals(90, done.size());
+        assertEquals(10, failures.size());
+        assertEquals("30", failures.get(30).getMessage());
+    }
+
+    @Test
+    public void stopsAndWaitsForItemsInProgressWhenInterrupted() throws Exception {
+        AtomicInteger started = new AtomicInteger();
+        AtomicInteger running = new AtomicInteger();
+        Thread caller = Thread.currentThread();
+        Thread interrupter = new Thread(() -> {
+            sleep(100);
+            caller.interrupt();
+        });
+        interrupter.start();
+
+        try {
+            SmbExecutors.forEach(range(1000), 4, item -> {
+                started.incrementAndGet();
+                running.incrementAndGet();
+                try {
+                    sleep(20);
+                } finally {
+                    running.decrementAndGet();
+                }
+            });
+            fail("The interruption was not reported");
+        } catch (InterruptedException expected) {
+            assertEquals(0, running.get());
+        } finally {
+            interrupter.join();
+        }
+
+        int startedWhenInterrupted = started.get();
+        sleep(100);
+        assertEquals(startedWhenInterrupted, started.get());
+        assertTrue(startedWhenInterrupted < 1000);
+        assertFalse(Thread.currentThread().isInterrupted());
+    }
+
+    private static List<Integer> range(int size) {
+        List<Integer> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            items.add(i);
+        }
+        return Collections.unmodifiableList(items);
+    }
+
+    private static void sleep(long millis) {
+        // items run to completion like smbj requests in progress do
+        boolean interrupted = false;
+        long end = System.nanoTime() + millis * 1_000_000L;
+        for (long left = millis; left > 0; left = (end - System.nanoTime()) / 1_000_000L) {
+            try {
+                Thread.sleep(left);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class SmbExpiringCacheTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private final SmbExpiringCache.Loader<String> loader = path -> {
+        loads.incrementAndGet();
+        return path.startsWith("missing") ? null : path.toUpperCase();
+    };
+
+    @Test
+    public void loadsEachPathOnceWithinItsTimeToLive() throws SmbProviderException {
+        SmbExpiringCache<String> cache = new SmbExpiringCache<>(Duration.ofMinutes(1), 10);
+
+        assertEquals("A\\B", cache.get("a\\b", loader));
+        assertEquals("A\\B", cache.get("a\\b", loader));
+        assertNull(cache.get("missing", loader));
+        assertNull(cache.get("missing", loader));
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void loadsAgainOnceExpired() throws Exception {
+        SmbExpiringCache<String> cache = new SmbExpiringCache<>(Duration.ofMillis(20), 10);
+
+        cache.get("a", loader);
+        Thread.sleep(50);
+        cache.get("a", loader);
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsedPath() throws SmbProviderException {
+        SmbExpiringCache<String> cache = new SmbExpiringCache<>(Duration.ofMinutes(1), 2);
+
+        cache.get("a", loader);
+        cache.get("b", loader);
+        cache.get("a", loader);
+        cache.get("c", loader);
+
+        assertEquals("A", cache.getIfPresent("a"));
+        assertNull(cache.getIfPresent("b"));
+        assertEquals("C", cache.getIfPresent("c"));
+    }
+
+    @Test
+    public void invalidatesATreeButNotItsSiblings() throws SmbProviderException {
+        SmbExpiringCache<String> cache = new SmbExpiringCache<>(Duration.ofMinutes(1), 10);
+        for (String path : new String[]{"dir", "dir\\a", "dir\\a\\b", "directory", "other"}) {
+            cache.get(path, loader);
+        }
+
+        cache.invalidateTree("dir");
+
+        assertNull(cache.getIfPresent("dir"));
+        assertNull(cache.getIfPresent("dir\\a"));
+        assertNull(cache.getIfPresent("dir\\a\\b"));
+        assertEquals("DIRECTORY", cache.getIfPresent("directory"));
+        assertEquals("OTHER", cache.getIfPresent("other"));
+    }
+
+    @Test
+    public void doesNotCacheAValueLoadedDuringAnInvalidation() throws SmbProviderException {
+        SmbExpiringCache<String> cache = new SmbExpiringCache<>(Duration.ofMinutes(1), 10);
+
+        assertEquals("stale", cache.get("a", path -> {
+            // the path changes while its previous state is being loaded
+            cache.invalidate(path);
+            return "stale";
+        }));
+
+        assertNull(cache.getIfPresent("a"));
+        assertEquals("A", cache.get("a", loader));
+        assertEquals("A", cache.getIfPresent("a"));
+    }
+
+    @Test
+    public void doesNotCacheAValueLoadedDuringATreeInvalidation() throws SmbProviderException {
+        SmbExpiringCache<String> cache = new SmbExpiringCache<>(Duration.ofMinutes(1), 10);
+
+        cache.get("dir\\a", path -> {
+            cache.invalidateTree("dir");
+            return "stale";
+        });
+
+        assertNull(cache.getIfPresent("dir\\a"));
+    }
+
+    @Test
+    public void cachesNothingWithoutATimeToLive() throws SmbProviderException {
+        SmbExpiringCache<String> cache = new SmbExpiringCache<>(Duration.ZERO, 10);
+
+        cache.get("a", loader);
+        cache.get("a", loader);
+
+        assertEquals(2, loads.get());
+    }
+}
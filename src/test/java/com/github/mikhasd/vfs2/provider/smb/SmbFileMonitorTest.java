@@ -0,0 +1,159 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import com.hierynomus.smbj.share.InMemoryDiskShare;
+import org.apache.commons.vfs2.FileChangeEvent;
+import org.apache.commons.vfs2.FileListener;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.impl.DefaultFileSystemManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The in-memory share does not serve CHANGE_NOTIFY, so these tests exercise the listing fallback of the monitor.
+ */
+public class SmbFileMonitorTest {
+
+    private final InMemoryDiskShare share = new InMemoryDiskShare("share", SimulatedLink.unlimited());
+    private final List<String> created = new CopyOnWriteArrayList<>();
+    private DefaultFileSystemManager manager;
+    private SmbFileMonitor monitor;
+
+    @Before
+    public void setUp() throws FileSystemException {
+        manager = InMemorySmbFileProvider.createManager(share);
+        share.createFolders("watched");
+        monitor = new SmbFileMonitor(new FileListener() {
+            @Override
+            public void fileCreated(FileChangeEvent event) {
+                created.add(event.getFileObject().getName().getBaseName());
+                if (event.getFileObject().getName().getBaseName().startsWith("failing")) {
+                    throw new IllegalStateException("listener failure");
+                }
+            }
+
+            @Override
+            public void fileDeleted(FileChangeEvent event) {
+            }
+
+            @Override
+            public void fileChanged(FileChangeEvent event) {
+            }
+        });
+        monitor.setDelay(50);
+    }
+
+    @After
+    public void tearDown() {
+        monitor.stop();
+        manager.close();
+    }
+
+    @Test
+    public void keepsReportingAfterAListenerFailed() throws Exception {
+        monitor.addFile(resolve("watched"));
+        startWatching();
+
+        share.createFile("watched\\failing.txt", new byte[1]);
+        awaitCreated(1);
+        share.createFile("watched\\next.txt", new byte[1]);
+        awaitCreated(2);
+
+        assertEquals("next.txt", created.get(1));
+    }
+
+    @Test
+    public void stopsReportingOnceRemoved() throws Exception {
+        FileObject folder = resolve("watched");
+        monitor.addFile(folder);
+        startWatching();
+        share.createFile("watched\\first.txt", new byte[1]);
+        awaitCreated(1);
+
+        monitor.removeFile(folder);
+        share.createFile("watched\\second.txt", new byte[1]);
+        Thread.sleep(300);
+
+        assertEquals(1, created.size());
+    }
+
+    @Test
+    public void reportsOnlyTheWatchedFilesOfAFolder() throws Exception {
+        monitor.addFile(resolve("watched/a.txt"));
+        monitor.addFile(resolve("watched/b.txt"));
+        startWatching();
+
+        share.createFile("watched\\c.txt", new byte[1]);
+        share.createFile("watched\\b.txt", new byte[1]);
+        share.createFile("watched\\a.txt", new byte[1]);
+        awaitCreated(2);
+        Thread.sleep(300);
+
+        assertEquals(Arrays.asList("a.txt", "b.txt"), created.stream().sorted().collect(Collectors.toList()));
+    }
+
+    @Test
+    public void watchesAFolderOnceForAllItsFiles() throws Exception {
+        AtomicInteger folderOpens = new AtomicInteger();
+        share.setOpenFault(path -> {
+            if ("watched".equals(path)) {
+                folderOpens.incrementAndGet();
+            }
+            return false;
+        });
+        monitor.setDelay(60_000);
+        monitor.addFile(resolve("watched/a.txt"));
+        assertEquals(0, folderOpens.get());
+        monitor.start();
+        Thread.sleep(300);
+        monitor.stop();
+        int oneFile = folderOpens.getAndSet(0);
+
+        SmbFileMonitor twoFiles = new SmbFileMonitor(monitor.getFileListener());
+        twoFiles.setDelay(60_000);
+        twoFiles.addFile(resolve("watched/a.txt"));
+        twoFiles.addFile(resolve("watched/b.txt"));
+        assertEquals(0, folderOpens.get());
+        twoFiles.start();
+        Thread.sleep(300);
+        twoFiles.stop();
+
+        assertTrue(oneFile > 0);
+        assertEquals(oneFile, folderOpens.get());
+    }
+
+    /**
+     * Starts the monitor and waits for the first listing, the baseline later changes are compared with.
+     */
+    private void startWatching() throws InterruptedException {
+        monitor.start();
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (share.getDirectoryQueries() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(50);
+    }
+
+    private void awaitCreated(int events) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (created.size() < events && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue("Missed a creation, reported " + created, created.size() >= events);
+    }
+
+    private FileObject resolve(String path) throws FileSystemException {
+        return manager.resolveFile("smb://localhost/share/" + path, new FileSystemOptions());
+    }
+}
@@ -0,0 +1,89 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import com.hierynomus.smbj.share.InMemoryDiskShare;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.impl.DefaultFileSystemManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SmbFileSystemCacheTest {
+
+    private final InMemoryDiskShare share = new InMemoryDiskShare("share", SimulatedLink.unlimited());
+    private final FileSystemOptions options = new FileSystemOptions();
+    private DefaultFileSystemManager manager;
+
+    @Before
+    public void setUp() throws FileSystemException {
+        SmbFileSystemConfigBuilder.getInstance().setMetadataCacheTimeToLive(options, Duration.ofMinutes(1));
+        SmbFileSystemConfigBuilder.getInstance().setListingCacheTimeToLive(options, Duration.ofMinutes(1));
+        manager = InMemorySmbFileProvider.createManager(share);
+        share.createFile("dir\\a.txt", new byte[3]);
+    }
+
+    @After
+    public void tearDown() {
+        manager.close();
+    }
+
+    @Test
+    public void servesMetadataFromTheCacheWithinItsTimeToLive() throws FileSystemException {
+        FileObject file = resolve("dir/a.txt");
+        assertEquals(3, file.getContent().getSize());
+
+        share.createFile("dir\\a.txt", new byte[5]);
+        file.refresh();
+
+        assertEquals(3, file.getContent().getSize());
+    }
+
+    @Test
+    public void dropsMetadataWrittenThroughTheProvider() throws IOException {
+        FileObject file = resolve("dir/a.txt");
+        assertEquals(3, file.getContent().getSize());
+
+        try (OutputStream out = file.getContent().getOutputStream()) {
+            out.write(new byte[7]);
+        }
+        file.refresh();
+
+        assertEquals(7, file.getContent().getSize());
+    }
+
+    @Test
+    public void dropsTheListingOfTheParentOfACreatedFile() throws IOException {
+        FileObject folder = resolve("dir");
+        assertEquals(1, folder.getChildren().length);
+
+        resolve("dir/b.txt").createFile();
+        folder.refresh();
+
+        assertEquals(2, folder.getChildren().length);
+    }
+
+    @Test
+    public void dropsEverythingBelowADeletedFolder() throws IOException {
+        share.createFile("dir\\sub\\c.txt", new byte[1]);
+        FileObject nested = resolve("dir/sub/c.txt");
+        assertTrue(nested.getType().hasContent());
+
+        resolve("dir").deleteAll();
+        nested.refresh();
+
+        assertFalse(nested.exists());
+    }
+
+    private FileObject resolve(String path) throws FileSystemException {
+        return manager.resolveFile("smb://localhost/share/" + path, options);
+    }
+}
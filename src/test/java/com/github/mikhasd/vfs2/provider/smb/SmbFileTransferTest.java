@@ -0,0 +1,116 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import com.hierynomus.msdtyp.AccessMask;
+import com.hierynomus.mssmb2.SMB2CreateDisposition;
+import com.hierynomus.smbj.share.File;
+import com.hierynomus.smbj.share.InMemoryDiskShare;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.impl.DefaultFileSystemManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Random;
+
+import static com.hierynomus.smbj.share.InMemoryDiskShare.ALLOCATION_UNIT;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SmbFileTransferTest {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final InMemoryDiskShare share = new InMemoryDiskShare("share", SimulatedLink.unlimited());
+    private final FileSystemOptions options = new FileSystemOptions();
+    private final byte[] content = new byte[10 * CHUNK_SIZE + 123];
+    private DefaultFileSystemManager manager;
+
+    @Before
+    public void setUp() throws FileSystemException {
+        SmbFileSystemConfigBuilder.getInstance().setWriteChunkSize(options, CHUNK_SIZE);
+        SmbFileSystemConfigBuilder.getInstance().setReadChunkSize(options, CHUNK_SIZE);
+        SmbFileSystemConfigBuilder.getInstance().setMaxWritesInFlight(options, 3);
+        SmbFileSystemConfigBuilder.getInstance().setReadAheadWindow(options, 3);
+        manager = InMemorySmbFileProvider.createManager(share);
+        new Random(1).nextBytes(content);
+    }
+
+    @After
+    public void tearDown() {
+        manager.close();
+    }
+
+    @Test
+    public void uploadsOverLongerContent() throws IOException {
+        share.createFile("file.bin", new byte[2 * content.length]);
+        Path source = folder.getRoot().toPath().resolve("file.bin");
+        Files.write(source, content);
+
+        assertEquals(content.length, resolve("file.bin").uploadFrom(source));
+
+        assertArrayEquals(content, read("file.bin"));
+    }
+
+    @Test
+    public void downloadsOverLongerContent() throws IOException {
+        share.createFile("file.bin", content);
+        Path target = folder.getRoot().toPath().resolve("file.bin");
+        Files.write(target, new byte[2 * content.length]);
+
+        assertEquals(content.length, resolve("file.bin").downloadTo(target));
+
+        assertArrayEquals(content, Files.readAllBytes(target));
+    }
+
+    @Test
+    public void downloadsOnlyTheAllocatedRangesAndKeepsTheTrailingHole() throws IOException {
+        byte[] sparse = new byte[6 * ALLOCATION_UNIT + 10];
+        Arrays.fill(sparse, ALLOCATION_UNIT, 2 * ALLOCATION_UNIT, (byte) 7);
+        share.createFile("sparse.bin", sparse);
+        try (File file = share.openFile("sparse.bin", EnumSet.of(AccessMask.GENERIC_ALL), null, null, SMB2CreateDisposition.FILE_OPEN, null)) {
+            SmbSparseFiles.setSparse(file, SmbMetricsListener.NONE);
+        }
+        Path target = folder.getRoot().toPath().resolve("sparse.bin");
+
+        assertEquals(ALLOCATION_UNIT, resolve("sparse.bin").downloadTo(target));
+
+        assertEquals(ALLOCATION_UNIT, share.getBytesRead());
+        assertArrayEquals(sparse, Files.readAllBytes(target));
+    }
+
+    @Test
+    public void reportsAWriteTheServerOnlyPartlyAcknowledged() throws IOException {
+        share.setWriteLimit(CHUNK_SIZE - 1);
+        Path source = folder.getRoot().toPath().resolve("file.bin");
+        Files.write(source, content);
+
+        try {
+            resolve("file.bin").uploadFrom(source);
+            fail("The short write was not reported");
+        } catch (FileSystemException e) {
+            String message = e.getCause().getMessage();
+            assertTrue(message, message.startsWith("Short WRITE at offset "));
+        }
+    }
+
+    private SmbFileObject resolve(String path) throws FileSystemException {
+        return (SmbFileObject) manager.resolveFile("smb://localhost/share/" + path, options);
+    }
+
+    private byte[] read(String path) throws IOException {
+        return resolve(path).getContent().getByteArray();
+    }
+}
@@ -0,0 +1,103 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import com.hierynomus.msdtyp.AccessMask;
+import com.hierynomus.mssmb2.SMB2CreateDisposition;
+import com.hierynomus.smbj.share.File;
+import com.hierynomus.smbj.share.InMemoryDiskShare;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class SmbHandleCacheTest {
+
+    private final InMemoryDiskShare share = new InMemoryDiskShare("share", SimulatedLink.unlimited());
+    private final SmbHandleCache cache = new SmbHandleCache(Duration.ofMinutes(1), 2);
+    private final AtomicInteger opens = new AtomicInteger();
+    private final SmbHandleCache.Opener opener = path -> {
+        opens.incrementAndGet();
+        return share.openFile(path, EnumSet.of(AccessMask.GENERIC_READ), null, null, SMB2CreateDisposition.FILE_OPEN, null);
+    };
+
+    @Before
+    public void setUp() {
+        share.createFile("a.bin", new byte[10]);
+        share.createFile("b.bin", new byte[10]);
+        share.createFile("c.bin", new byte[10]);
+    }
+
+    @After
+    public void tearDown() {
+        cache.close();
+    }
+
+    @Test
+    public void sharesOneHandleBetweenReaders() throws SmbProviderException {
+        try (SmbHandleCache.Lease first = cache.acquire("a.bin", opener);
+             SmbHandleCache.Lease second = cache.acquire("a.bin", opener)) {
+            assertSame(first.getFile(), second.getFile());
+        }
+        cache.acquire("a.bin", opener).close();
+
+        assertEquals(1, opens.get());
+        assertEquals(1, share.getOpenFiles());
+    }
+
+    @Test
+    public void closesIdleHandlesOnInvalidation() throws SmbProviderException {
+        SmbHandleCache.Lease lease = cache.acquire("a.bin", opener);
+        cache.invalidate("a.bin");
+        assertEquals(1, share.getOpenFiles());
+
+        lease.close();
+
+        assertEquals(0, share.getOpenFiles());
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsedIdleHandle() throws SmbProviderException {
+        cache.acquire("a.bin", opener).close();
+        cache.acquire("b.bin", opener).close();
+        cache.acquire("a.bin", opener).close();
+        cache.acquire("c.bin", opener).close();
+
+        assertEquals(2, share.getOpenFiles());
+        cache.acquire("a.bin", opener).close();
+        assertEquals(3, opens.get());
+    }
+
+    @Test
+    public void reopensAfterReconnectWhileTheStaleHandleIsLeased() throws SmbProviderException {
+        SmbHandleCache.Lease stale = cache.acquire("a.bin", opener);
+        share.setConnected(false);
+
+        SmbHandleCache.Lease fresh = cache.acquire("a.bin", opener);
+        share.setConnected(true);
+
+        assertNotSame(stale.getFile(), fresh.getFile());
+        assertEquals(2, opens.get());
+        stale.close();
+        assertEquals(1, share.getOpenFiles());
+        fresh.close();
+        cache.close();
+        assertEquals(0, share.getOpenFiles());
+    }
+
+    @Test
+    public void reopensAfterReconnectOnceTheStaleHandleIsIdle() throws SmbProviderException {
+        cache.acquire("a.bin", opener).close();
+        share.setConnected(false);
+
+        cache.acquire("a.bin", opener).close();
+
+        assertEquals(2, opens.get());
+        assertEquals(1, share.getOpenFiles());
+    }
+}
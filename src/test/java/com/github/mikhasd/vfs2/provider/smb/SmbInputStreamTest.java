@@ -0,0 +1,160 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import com.hierynomus.msdtyp.AccessMask;
+import com.hierynomus.mssmb2.SMB2CreateDisposition;
+import com.hierynomus.smbj.share.File;
+import com.hierynomus.smbj.share.InMemoryDiskShare;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SmbInputStreamTest {
+
+    private static final int CHUNK_SIZE = 16 * 1024;
+
+    private final InMemoryDiskShare share = new InMemoryDiskShare("share", SimulatedLink.unlimited());
+    private final byte[] content = new byte[20 * CHUNK_SIZE + 321];
+
+    @Before
+    public void setUp() {
+        new Random(1).nextBytes(content);
+        share.createFile("file.bin", content);
+    }
+
+    @Test
+    public void readsTheWholeFileInOrder() throws IOException {
+        try (InputStream in = new SmbInputStream(open(), CHUNK_SIZE, 4)) {
+            assertArrayEquals(content, readAll(in));
+        }
+    }
+
+    @Test
+    public void readsWhatFollowsASkip() throws IOException {
+        try (InputStream in = new SmbInputStream(open(), CHUNK_SIZE, 4)) {
+            long position = 0;
+            byte[] buffer = new byte[100];
+            for (long skip : new long[]{3 * CHUNK_SIZE + 17, 10, CHUNK_SIZE, 5 * CHUNK_SIZE - 1}) {
+                int read = in.read(buffer);
+                assertArrayEquals(Arrays.copyOfRange(content, (int) position, (int) position + read), Arrays.copyOf(buffer, read));
+                position += read;
+                assertEquals(skip, in.skip(skip));
+                position += skip;
+            }
+            assertArrayEquals(Arrays.copyOfRange(content, (int) position, content.length), readAll(in));
+        }
+    }
+
+    @Test
+    public void skipsPastReadsStillInProgress() throws Exception {
+        // the reads ahead of the first chunk are still in progress when skipping
+        share.setReadFault(offset -> {
+            if (offset > 0 && offset < 4 * CHUNK_SIZE) {
+                sleep(200);
+            }
+            return false;
+        });
+        try (InputStream in = new SmbInputStream(open(), CHUNK_SIZE, 4)) {
+            assertEquals(100, in.read(new byte[100]));
+            assertEquals(10 * CHUNK_SIZE, in.skip(10 * CHUNK_SIZE));
+            // leaves the abandoned reads time to complete before the chunks are consumed
+            Thread.sleep(400);
+
+            assertArrayEquals(Arrays.copyOfRange(content, 10 * CHUNK_SIZE + 100, content.length), readAll(in));
+        }
+    }
+
+    @Test
+    public void skipsNoFurtherThanTheSizeKnownAtOpen() throws IOException {
+        File file = open();
+        try (InputStream in = new SmbInputStream(file, file, 5 * CHUNK_SIZE, CHUNK_SIZE, 4, SmbMetricsListener.NONE)) {
+            assertEquals(100, in.read(new byte[100]));
+
+            assertEquals(5 * CHUNK_SIZE - 100, in.skip(10 * CHUNK_SIZE));
+            assertEquals(content[5 * CHUNK_SIZE] & 0xFF, in.read());
+        }
+    }
+
+    @Test(timeout = 30_000)
+    public void sharesABoundedPoolBetweenStreams() throws IOException {
+        AtomicInteger reading = new AtomicInteger();
+        AtomicInteger mostReading = new AtomicInteger();
+        share.setReadFault(offset -> {
+            mostReading.accumulateAndGet(reading.incrementAndGet(), Math::max);
+            sleep(20);
+            reading.decrementAndGet();
+            return false;
+        });
+        List<InputStream> streams = new ArrayList<>();
+        try {
+            for (int i = 0; i < SmbExecutors.READ_AHEAD_THREADS; i++) {
+                streams.add(new SmbInputStream(open(), CHUNK_SIZE, 4));
+            }
+            for (InputStream in : streams) {
+                assertArrayEquals(Arrays.copyOf(content, 4 * CHUNK_SIZE), readFully(in, 4 * CHUNK_SIZE));
+            }
+        } finally {
+            for (InputStream in : streams) {
+                in.close();
+            }
+        }
+
+        assertTrue(mostReading.get() > 1);
+        assertTrue(mostReading.get() <= SmbExecutors.READ_AHEAD_THREADS);
+    }
+
+    @Test
+    public void reportsAFailedRead() throws IOException {
+        share.setReadFault(offset -> offset == 5L * CHUNK_SIZE);
+        try (InputStream in = new SmbInputStream(open(), CHUNK_SIZE, 4)) {
+            readAll(in);
+            fail("The failed read was not reported");
+        } catch (IOException expected) {
+            // reported when the failed chunk is reached
+        }
+    }
+
+    private File open() {
+        return share.openFile("file.bin", EnumSet.of(AccessMask.GENERIC_READ), null, null, SMB2CreateDisposition.FILE_OPEN, null);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static byte[] readFully(InputStream in, int length) throws IOException {
+        byte[] buffer = new byte[length];
+        for (int total = 0; total < length; ) {
+            int read = in.read(buffer, total, length - total);
+            assertTrue(read > 0);
+            total += read;
+        }
+        return buffer;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1000];
+        for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
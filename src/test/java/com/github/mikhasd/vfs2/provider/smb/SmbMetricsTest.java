@@ -0,0 +1,73 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import com.hierynomus.smbj.share.InMemoryDiskShare;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.Selectors;
+import org.apache.commons.vfs2.impl.DefaultFileSystemManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.hierynomus.smbj.share.InMemoryDiskShare.DEFAULT_MAX_IO_SIZE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SmbMetricsTest {
+
+    // four entries per QUERY_DIRECTORY response
+    private final InMemoryDiskShare share = new InMemoryDiskShare("share", SimulatedLink.unlimited(), DEFAULT_MAX_IO_SIZE, 4);
+    private final FileSystemOptions options = new FileSystemOptions();
+    private final SmbMetrics metrics = new SmbMetrics();
+    private DefaultFileSystemManager manager;
+
+    @Before
+    public void setUp() throws FileSystemException {
+        SmbFileSystemConfigBuilder.getInstance().setMetricsListener(options, metrics);
+        manager = InMemorySmbFileProvider.createManager(share);
+    }
+
+    @After
+    public void tearDown() {
+        manager.close();
+    }
+
+    @Test
+    public void countsEveryPageOfAListing() throws FileSystemException {
+        for (int i = 0; i < 10; i++) {
+            share.createFile("folder\\file" + i + ".txt", new byte[1]);
+        }
+
+        assertEquals(10, resolve("folder").getChildren().length);
+
+        assertTrue(share.getDirectoryQueries() > 1);
+        assertEquals(share.getDirectoryQueries(), metrics.getCount(SmbOperation.QUERY_DIRECTORY));
+        assertEquals(0, metrics.getFailureCount(SmbOperation.QUERY_DIRECTORY));
+    }
+
+    @Test
+    public void countsRenames() throws FileSystemException {
+        share.createFile("before.txt", new byte[1]);
+
+        resolve("before.txt").moveTo(resolve("after.txt"));
+
+        assertTrue(share.fileExists("after.txt"));
+        assertEquals(1, metrics.getCount(SmbOperation.RENAME));
+    }
+
+    @Test
+    public void countsTheControlRequestsOfAServerSideCopy() throws FileSystemException {
+        share.createFile("source.bin", new byte[3 * InMemoryDiskShare.ALLOCATION_UNIT]);
+
+        resolve("copy.bin").copyFrom(resolve("source.bin"), Selectors.SELECT_SELF);
+
+        assertEquals(0, share.getBytesWritten());
+        assertTrue(metrics.getCount(SmbOperation.IOCTL) > 0);
+        assertEquals(0, metrics.getFailureCount(SmbOperation.IOCTL));
+    }
+
+    private FileObject resolve(String path) throws FileSystemException {
+        return manager.resolveFile("smb://localhost/share/" + path, options);
+    }
+}
@@ -0,0 +1,130 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import com.hierynomus.msdtyp.AccessMask;
+import com.hierynomus.mssmb2.SMB2CreateDisposition;
+import com.hierynomus.smbj.share.File;
+import com.hierynomus.smbj.share.InMemoryDiskShare;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.EnumSet;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SmbOutputStreamTest {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final InMemoryDiskShare share = new InMemoryDiskShare("share", SimulatedLink.unlimited());
+
+    @Test
+    public void writesEveryChunkInOrder() throws IOException {
+        byte[] content = new byte[10 * CHUNK_SIZE + 123];
+        new Random(1).nextBytes(content);
+
+        try (SmbOutputStream out = new SmbOutputStream(open("file.bin"), false, CHUNK_SIZE, 4)) {
+            for (int offset = 0; offset < content.length; offset += 1000) {
+                out.write(content, offset, Math.min(1000, content.length - offset));
+            }
+        }
+
+        assertArrayEquals(content, read("file.bin", content.length));
+    }
+
+    @Test
+    public void reportsTheFirstFailedWriteOnEveryLaterCall() throws IOException {
+        share.setWriteFault(offset -> offset == 2L * CHUNK_SIZE);
+        SmbOutputStream out = new SmbOutputStream(open("file.bin"), false, CHUNK_SIZE, 4);
+
+        IOException failure = null;
+        try {
+            for (int i = 0; i < 10; i++) {
+                out.write(new byte[CHUNK_SIZE]);
+            }
+            out.flush();
+            fail("The failed write was not reported");
+        } catch (IOException e) {
+            failure = e;
+        }
+
+        try {
+            out.write(1);
+            fail("The stream accepted a write after a failure");
+        } catch (IOException e) {
+            assertSame(failure, e);
+        }
+        try {
+            out.close();
+            fail("The failure was not reported by close");
+        } catch (IOException e) {
+            assertSame(failure, e);
+        }
+    }
+
+    @Test
+    public void reportsAWriteTheServerOnlyPartlyAcknowledged() throws IOException {
+        share.setWriteLimit(CHUNK_SIZE - 1);
+        SmbOutputStream out = new SmbOutputStream(open("file.bin"), false, CHUNK_SIZE, 4);
+        out.write(new byte[3 * CHUNK_SIZE]);
+
+        try {
+            out.close();
+            fail("The short write was not reported");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Short write at offset 0"));
+        }
+    }
+
+    @Test
+    public void closesTheHandleOnlyOnceTheWritesInFlightAreDoneWhenInterrupted() throws IOException {
+        share.setWriteFault(offset -> {
+            sleep(50);
+            return false;
+        });
+        byte[] content = new byte[4 * CHUNK_SIZE];
+        new Random(2).nextBytes(content);
+        SmbOutputStream out = new SmbOutputStream(open("file.bin"), false, CHUNK_SIZE, 4);
+        out.write(content);
+
+        Thread.currentThread().interrupt();
+        try {
+            out.close();
+            fail("The interrupt was not reported");
+        } catch (InterruptedIOException expected) {
+            // the writes in flight are still awaited
+        } finally {
+            assertTrue("The interrupt was not restored", Thread.interrupted());
+        }
+
+        share.setWriteFault(offset -> false);
+        assertArrayEquals(content, read("file.bin", content.length));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private File open(String path) {
+        return share.openFile(path, EnumSet.of(AccessMask.GENERIC_ALL), null, null, SMB2CreateDisposition.FILE_OVERWRITE_IF, null);
+    }
+
+    private byte[] read(String path, int length) {
+        byte[] content = new byte[length];
+        try (File file = share.openFile(path, EnumSet.of(AccessMask.GENERIC_READ), null, null, SMB2CreateDisposition.FILE_OPEN, null)) {
+            int position = 0;
+            while (position < length) {
+                position += file.read(content, position, position, length - position);
+            }
+        }
+        return content;
+    }
+}
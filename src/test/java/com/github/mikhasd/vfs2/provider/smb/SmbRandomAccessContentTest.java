@@ -0,0 +1,58 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import com.hierynomus.msdtyp.AccessMask;
+import com.hierynomus.mssmb2.SMB2CreateDisposition;
+import com.hierynomus.smbj.share.File;
+import com.hierynomus.smbj.share.InMemoryDiskShare;
+import org.apache.commons.vfs2.util.RandomAccessMode;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.EnumSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SmbRandomAccessContentTest {
+
+    private static final int BLOCK_SIZE = 16;
+
+    private final InMemoryDiskShare share = new InMemoryDiskShare("share", SimulatedLink.unlimited());
+
+    @Test
+    public void readsZerosInTheGapLeftByAWritePastTheEnd() throws IOException {
+        share.createFile("file.bin", new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20});
+
+        try (SmbRandomAccessContent content = open("file.bin")) {
+            content.seek(17);
+            assertEquals(18, content.readByte());
+            content.seek(2 * BLOCK_SIZE + 8);
+            content.writeByte(99);
+
+            assertEquals(2 * BLOCK_SIZE + 9, content.length());
+            content.seek(BLOCK_SIZE + 9);
+            assertEquals(0, content.readByte());
+            content.seek(2 * BLOCK_SIZE + 8);
+            assertEquals(99, content.readByte());
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void reportsAWriteTheServerDoesNotAcknowledge() throws IOException {
+        share.createFile("file.bin", new byte[BLOCK_SIZE]);
+        share.setWriteLimit(0);
+
+        try (SmbRandomAccessContent content = open("file.bin")) {
+            content.write(new byte[]{1, 2, 3});
+            fail("The write was not reported");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("No bytes written at offset 0"));
+        }
+    }
+
+    private SmbRandomAccessContent open(String path) {
+        File file = share.openFile(path, EnumSet.of(AccessMask.GENERIC_ALL), null, null, SMB2CreateDisposition.FILE_OPEN, null);
+        return new SmbRandomAccessContent(file, RandomAccessMode.READWRITE, BLOCK_SIZE, 4, SmbMetricsListener.NONE, () -> { });
+    }
+}
@@ -0,0 +1,105 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import com.hierynomus.smbj.share.InMemoryDiskShare;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.impl.DefaultFileSystemManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SmbRangeDownloaderTest {
+
+    private static final int RANGE_SIZE = 64 * 1024;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final InMemoryDiskShare share = new InMemoryDiskShare("share", SimulatedLink.unlimited());
+    private final FileSystemOptions options = new FileSystemOptions();
+    private final byte[] content = new byte[10 * RANGE_SIZE + 100];
+    private DefaultFileSystemManager manager;
+
+    @Before
+    public void setUp() throws FileSystemException {
+        SmbFileSystemConfigBuilder.getInstance().setDownloadRangeSize(options, RANGE_SIZE);
+        SmbFileSystemConfigBuilder.getInstance().setDownloadParallelism(options, 3);
+        manager = InMemorySmbFileProvider.createManager(share);
+        new Random(1).nextBytes(content);
+        share.createFile("file.bin", content);
+    }
+
+    @After
+    public void tearDown() {
+        manager.close();
+    }
+
+    @Test
+    public void downloadsEveryRange() throws IOException {
+        Path target = folder.getRoot().toPath().resolve("file.bin");
+
+        assertEquals(content.length, resolve("file.bin").downloadRanges(target));
+
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertFalse(Files.exists(SmbRangeDownloader.journalOf(target)));
+    }
+
+    @Test
+    public void resumesWithTheRangesThatFailed() throws IOException {
+        Path target = folder.getRoot().toPath().resolve("file.bin");
+        share.setReadFault(offset -> offset >= 3 * RANGE_SIZE && offset < 4 * RANGE_SIZE);
+        try {
+            resolve("file.bin").downloadRanges(target);
+            fail("The failed range was not reported");
+        } catch (FileSystemException e) {
+            assertTrue(Files.exists(SmbRangeDownloader.journalOf(target)));
+        }
+
+        share.setReadFault(offset -> false);
+        long readBefore = share.getBytesRead();
+        resolve("file.bin").downloadRanges(target);
+
+        assertEquals(RANGE_SIZE, share.getBytesRead() - readBefore);
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertFalse(Files.exists(SmbRangeDownloader.journalOf(target)));
+    }
+
+    @Test
+    public void startsOverOnceTheRemoteFileChanged() throws Exception {
+        Path target = folder.getRoot().toPath().resolve("file.bin");
+        share.setReadFault(offset -> offset >= 3 * RANGE_SIZE && offset < 4 * RANGE_SIZE);
+        try {
+            resolve("file.bin").downloadRanges(target);
+            fail("The failed range was not reported");
+        } catch (FileSystemException expected) {
+            // the journal is left for the next attempt
+        }
+
+        share.setReadFault(offset -> false);
+        Thread.sleep(10);
+        content[0]++;
+        share.createFile("file.bin", content);
+        long readBefore = share.getBytesRead();
+        resolve("file.bin").downloadRanges(target);
+
+        assertEquals(content.length, share.getBytesRead() - readBefore);
+        assertArrayEquals(content, Files.readAllBytes(target));
+    }
+
+    private SmbFileObject resolve(String path) throws FileSystemException {
+        return (SmbFileObject) manager.resolveFile("smb://localhost/share/" + path, options);
+    }
+}
@@ -0,0 +1,108 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import com.hierynomus.smbj.share.InMemoryDiskShare;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.impl.DefaultFileSystemManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SmbRemoteCopyTest {
+
+    private static final int RANGE_SIZE = 256 * 1024;
+
+    private final InMemoryDiskShare source = new InMemoryDiskShare("source", SimulatedLink.unlimited());
+    private final InMemoryDiskShare destination = new InMemoryDiskShare("destination", SimulatedLink.unlimited());
+    private final FileSystemOptions options = new FileSystemOptions();
+    private final byte[] content = new byte[20 * RANGE_SIZE + 123];
+    private DefaultFileSystemManager sourceManager;
+    private DefaultFileSystemManager destinationManager;
+
+    @Before
+    public void setUp() throws FileSystemException {
+        SmbFileSystemConfigBuilder.getInstance().setRemoteCopyRangeSize(options, RANGE_SIZE);
+        sourceManager = InMemorySmbFileProvider.createManager(source);
+        destinationManager = InMemorySmbFileProvider.createManager(destination);
+        new Random(1).nextBytes(content);
+        source.createFile("file.bin", content);
+    }
+
+    @After
+    public void tearDown() {
+        sourceManager.close();
+        destinationManager.close();
+    }
+
+    @Test
+    public void copiesBetweenSharesOnTheServer() throws Exception {
+        SmbRemoteCopy copy = destinationFile().remoteCopyFrom(sourceFile());
+
+        assertEquals(content.length, (long) copy.get());
+        assertTrue(copy.isServerSide());
+        assertEquals(0, source.getBytesRead());
+        assertEquals(0, destination.getBytesWritten());
+        assertArrayEquals(content, destinationFile().getContent().getByteArray());
+    }
+
+    @Test
+    public void streamsWhenTheServerRefusesToCopy() throws Exception {
+        destination.setServerSideCopySupported(false);
+
+        SmbRemoteCopy copy = destinationFile().remoteCopyFrom(sourceFile());
+
+        assertEquals(content.length, (long) copy.get());
+        assertFalse(copy.isServerSide());
+        assertEquals(content.length, destination.getBytesWritten());
+        assertArrayEquals(content, destinationFile().getContent().getByteArray());
+    }
+
+    @Test
+    public void stopsOnceCancelled() throws Exception {
+        InMemoryDiskShare slow = new InMemoryDiskShare("slow", new SimulatedLink(Duration.ofMillis(20), 0));
+        slow.createFile("file.bin", content);
+        SmbFileSystemConfigBuilder.getInstance().setRemoteCopyParallelism(options, 1);
+        DefaultFileSystemManager slowManager = InMemorySmbFileProvider.createManager(slow);
+        try {
+            SmbFileObject sourceFile = (SmbFileObject) slowManager.resolveFile("smb://localhost/slow/file.bin", options);
+            SmbFileObject destinationFile = (SmbFileObject) slowManager.resolveFile("smb://localhost/slow/copy.bin", options);
+            SmbRemoteCopy copy = destinationFile.remoteCopyFrom(sourceFile);
+            Thread.sleep(100);
+
+            assertTrue(copy.cancel(false));
+            try {
+                copy.get();
+                fail("A cancelled copy completed");
+            } catch (CancellationException expected) {
+                // the ranges in progress complete in the background
+            }
+            Thread.sleep(200);
+            long copied = copy.getBytesCopied();
+            Thread.sleep(200);
+
+            assertTrue(copy.isCancelled());
+            assertEquals(copied, copy.getBytesCopied());
+            assertTrue(copied < content.length);
+        } finally {
+            slowManager.close();
+        }
+    }
+
+    private SmbFileObject sourceFile() throws FileSystemException {
+        return (SmbFileObject) sourceManager.resolveFile("smb://localhost/source/file.bin", options);
+    }
+
+    private SmbFileObject destinationFile() throws FileSystemException {
+        return (SmbFileObject) destinationManager.resolveFile("smb://localhost/destination/copy.bin", options);
+    }
+}
@@ -0,0 +1,93 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import com.hierynomus.smbj.SMBClient;
+import com.hierynomus.smbj.session.Session;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class SmbSessionPoolTest {
+
+    private static final SmbTransportConfig TRANSPORT_CONFIG = new SmbTransportConfig(
+            SmbTransportConfig.DEFAULTS.getReadBufferSize(),
+            SmbTransportConfig.DEFAULTS.getWriteBufferSize(),
+            SmbTransportConfig.DEFAULTS.getTransactBufferSize(),
+            Duration.ofSeconds(1),
+            Duration.ofSeconds(1),
+            Duration.ofSeconds(1),
+            0,
+            0,
+            false,
+            false);
+
+    private SmbSessionPool pool;
+
+    @Before
+    public void setUp() {
+        pool = new SmbSessionPool();
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    public void forgetsKeysLeftWithoutSessions() {
+        RefusedSessionFactory sessionFactory = new RefusedSessionFactory(pool, "secret");
+
+        refused(sessionFactory);
+        refused(sessionFactory);
+        assertSame(sessionFactory.clients.get(0), sessionFactory.clients.get(1));
+
+        pool.doHousekeeping();
+        refused(sessionFactory);
+
+        assertNotSame(sessionFactory.clients.get(1), sessionFactory.clients.get(2));
+    }
+
+    @Test
+    public void keepsClientsOtherKeysUse() {
+        RefusedSessionFactory first = new RefusedSessionFactory(pool, "first");
+        RefusedSessionFactory second = new RefusedSessionFactory(pool, "second");
+
+        refused(first);
+        pool.doHousekeeping();
+        refused(second);
+        refused(first);
+
+        assertSame(second.clients.get(0), first.clients.get(1));
+    }
+
+    private static void refused(SessionFactory sessionFactory) {
+        try {
+            sessionFactory.create();
+            fail("The connection was not refused");
+        } catch (SmbProviderException expected) {
+            // no server to connect to
+        }
+    }
+
+    private static final class RefusedSessionFactory extends SessionFactory {
+        private final List<SMBClient> clients = new CopyOnWriteArrayList<>();
+
+        private RefusedSessionFactory(SmbSessionPool pool, String password) {
+            super(pool, "localhost", 445, null, "user", password, TRANSPORT_CONFIG, 1, Duration.ZERO, Duration.ZERO);
+        }
+
+        @Override
+        Session connect(SMBClient smbClient) throws SmbProviderException {
+            clients.add(smbClient);
+            throw SmbProviderException.connectionError(getKey().toString(), new ConnectException("Connection refused"));
+        }
+    }
+}
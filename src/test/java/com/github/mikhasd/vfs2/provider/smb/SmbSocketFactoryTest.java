@@ -0,0 +1,79 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SmbSocketFactoryTest {
+
+    private ServerSocket server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void connectsWithTheConfiguredBufferSizes() throws IOException {
+        SmbSocketFactory factory = new SmbSocketFactory(1_000, 256 * 1024, 128 * 1024);
+
+        try (Socket socket = factory.createSocket(InetAddress.getLoopbackAddress(), server.getLocalPort())) {
+            assertTrue(socket.isConnected());
+            assertEquals(granted(256 * 1024, true), socket.getReceiveBufferSize());
+            assertEquals(granted(128 * 1024, false), socket.getSendBufferSize());
+        }
+    }
+
+    @Test
+    public void keepsTheSystemDefaultsForSizesOfZero() throws IOException {
+        SmbSocketFactory factory = new SmbSocketFactory(1_000, 0, 0);
+
+        try (Socket socket = factory.createSocket(InetAddress.getLoopbackAddress(), server.getLocalPort());
+             Socket plain = new Socket(InetAddress.getLoopbackAddress(), server.getLocalPort())) {
+            assertEquals(plain.getReceiveBufferSize(), socket.getReceiveBufferSize());
+            assertEquals(plain.getSendBufferSize(), socket.getSendBufferSize());
+        }
+    }
+
+    @Test
+    public void reportsARefusedConnection() throws IOException {
+        int port = server.getLocalPort();
+        server.close();
+        SmbSocketFactory factory = new SmbSocketFactory(1_000, 0, 0);
+
+        try {
+            factory.createSocket(InetAddress.getLoopbackAddress(), port).close();
+            fail("Connected to a closed port");
+        } catch (IOException expected) {
+            // nothing listens on the port anymore
+        }
+    }
+
+    /**
+     * @return the size the operating system grants for a requested buffer size, which it may round or double.
+     */
+    private static int granted(int requested, boolean receive) throws IOException {
+        try (Socket socket = new Socket()) {
+            if (receive) {
+                socket.setReceiveBufferSize(requested);
+                return socket.getReceiveBufferSize();
+            }
+            socket.setSendBufferSize(requested);
+            return socket.getSendBufferSize();
+        }
+    }
+}
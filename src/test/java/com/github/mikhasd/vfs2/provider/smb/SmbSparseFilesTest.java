@@ -0,0 +1,100 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import com.hierynomus.msdtyp.AccessMask;
+import com.hierynomus.mssmb2.SMB2CreateDisposition;
+import com.hierynomus.smbj.share.File;
+import com.hierynomus.smbj.share.InMemoryDiskShare;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+import static com.hierynomus.smbj.share.InMemoryDiskShare.ALLOCATION_UNIT;
+import static org.junit.Assert.assertEquals;
+
+public class SmbSparseFilesTest {
+
+    @Test
+    public void listsTheAllocatedRangesOfASparseFile() {
+        InMemoryDiskShare share = new InMemoryDiskShare("share", SimulatedLink.unlimited());
+        byte[] content = new byte[8 * ALLOCATION_UNIT + 100];
+        content[10] = 1;
+        content[ALLOCATION_UNIT + 10] = 1;
+        content[5 * ALLOCATION_UNIT] = 1;
+        content[8 * ALLOCATION_UNIT + 99] = 1;
+        share.createFile("sparse.bin", content);
+
+        try (File file = open(share, "sparse.bin")) {
+            SmbSparseFiles.setSparse(file, SmbMetricsListener.NONE);
+            List<SmbSparseFiles.Range> ranges = SmbSparseFiles.allocatedRanges(file, content.length, SmbMetricsListener.NONE);
+
+            assertEquals(3, ranges.size());
+            assertRange(0, 2 * ALLOCATION_UNIT, ranges.get(0));
+            assertRange(5 * ALLOCATION_UNIT, ALLOCATION_UNIT, ranges.get(1));
+            assertRange(8 * ALLOCATION_UNIT, 100, ranges.get(2));
+        }
+    }
+
+    @Test
+    public void splitsQueriesWhoseRangesOverflowTheResponse() {
+        // room for two ranges per response
+        InMemoryDiskShare share = new InMemoryDiskShare("share", SimulatedLink.unlimited(), 32, 512);
+        int units = 9;
+        byte[] content = new byte[2 * units * ALLOCATION_UNIT];
+        for (int unit = 0; unit < units; unit++) {
+            content[2 * unit * ALLOCATION_UNIT + 7] = 1;
+        }
+        share.createFile("sparse.bin", content);
+
+        try (File file = open(share, "sparse.bin")) {
+            SmbSparseFiles.setSparse(file, SmbMetricsListener.NONE);
+            List<SmbSparseFiles.Range> ranges = SmbSparseFiles.allocatedRanges(file, content.length, SmbMetricsListener.NONE);
+
+            assertEquals(units, ranges.size());
+            for (int unit = 0; unit < units; unit++) {
+                assertRange(2L * unit * ALLOCATION_UNIT, ALLOCATION_UNIT, ranges.get(unit));
+            }
+        }
+    }
+
+    @Test
+    public void reportsAllOfARegularFile() {
+        InMemoryDiskShare share = new InMemoryDiskShare("share", SimulatedLink.unlimited());
+        share.createFile("plain.bin", new byte[3 * ALLOCATION_UNIT]);
+
+        try (File file = open(share, "plain.bin")) {
+            List<SmbSparseFiles.Range> ranges = SmbSparseFiles.allocatedRanges(file, 3 * ALLOCATION_UNIT, SmbMetricsListener.NONE);
+
+            assertEquals(1, ranges.size());
+            assertRange(0, 3 * ALLOCATION_UNIT, ranges.get(0));
+        }
+    }
+
+    @Test
+    public void preparesADestinationWithHolesOutsideOfTheRanges() {
+        InMemoryDiskShare share = new InMemoryDiskShare("share", SimulatedLink.unlimited());
+        byte[] junk = new byte[6 * ALLOCATION_UNIT];
+        Arrays.fill(junk, (byte) 9);
+        share.createFile("copy.bin", junk);
+
+        try (File file = open(share, "copy.bin")) {
+            SmbSparseFiles.prepareCopy(file, 4 * ALLOCATION_UNIT, Collections.singletonList(new SmbSparseFiles.Range(ALLOCATION_UNIT, ALLOCATION_UNIT)), SmbMetricsListener.NONE);
+            List<SmbSparseFiles.Range> ranges = SmbSparseFiles.allocatedRanges(file, 4 * ALLOCATION_UNIT, SmbMetricsListener.NONE);
+
+            assertEquals(4L * ALLOCATION_UNIT, file.getFileInformation().getStandardInformation().getEndOfFile());
+            assertEquals(1, ranges.size());
+            assertRange(ALLOCATION_UNIT, ALLOCATION_UNIT, ranges.get(0));
+        }
+    }
+
+    private static File open(InMemoryDiskShare share, String path) {
+        return share.openFile(path, EnumSet.of(AccessMask.GENERIC_ALL), null, null, SMB2CreateDisposition.FILE_OPEN, null);
+    }
+
+    private static void assertRange(long offset, long length, SmbSparseFiles.Range range) {
+        assertEquals(offset, range.offset);
+        assertEquals(length, range.length);
+    }
+}
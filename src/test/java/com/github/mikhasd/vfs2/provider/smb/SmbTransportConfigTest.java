@@ -0,0 +1,67 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import com.hierynomus.smbj.SmbConfig;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SmbTransportConfigTest {
+
+    private final SmbFileSystemConfigBuilder builder = SmbFileSystemConfigBuilder.getInstance();
+
+    @Test
+    public void keepsTheSmbjDefaultsWhenNothingIsConfigured() {
+        SmbConfig config = builder.getTransportConfig(new FileSystemOptions()).toSmbConfig();
+
+        assertEquals(SmbTransportConfig.DEFAULTS.getReadBufferSize(), config.getReadBufferSize());
+        assertEquals(SmbTransportConfig.DEFAULTS.getWriteBufferSize(), config.getWriteBufferSize());
+        assertEquals(SmbTransportConfig.DEFAULTS.getTransactBufferSize(), config.getTransactBufferSize());
+        assertEquals(SmbTransportConfig.DEFAULTS.getReadTimeout(), config.getReadTimeout());
+        assertEquals(SmbTransportConfig.DEFAULTS.getSoTimeout(), config.getSoTimeout());
+        assertEquals(SmbTransportConfig.DEFAULTS.isSigningRequired(), config.isSigningRequired());
+        assertEquals(SmbTransportConfig.DEFAULTS.isEncryptData(), config.isEncryptData());
+    }
+
+    @Test
+    public void passesTheConfiguredSettingsToSmbj() {
+        FileSystemOptions options = new FileSystemOptions();
+        builder.setMaxReadSize(options, 1 << 20);
+        builder.setMaxWriteSize(options, 2 << 20);
+        builder.setMaxTransactSize(options, 3 << 20);
+        builder.setRequestTimeout(options, Duration.ofSeconds(7));
+        builder.setSocketTimeout(options, Duration.ofSeconds(9));
+        builder.setSigningRequired(options, true);
+        builder.setEncryptData(options, true);
+
+        SmbConfig config = builder.getTransportConfig(options).toSmbConfig();
+
+        assertEquals(1 << 20, config.getReadBufferSize());
+        assertEquals(2 << 20, config.getWriteBufferSize());
+        assertEquals(3 << 20, config.getTransactBufferSize());
+        assertEquals(7_000, config.getReadTimeout());
+        assertEquals(7_000, config.getWriteTimeout());
+        assertEquals(9_000, config.getSoTimeout());
+        assertTrue(config.isSigningRequired());
+        assertTrue(config.isEncryptData());
+        assertTrue(config.getSocketFactory() instanceof SmbSocketFactory);
+    }
+
+    @Test
+    public void equalSettingsShareClients() {
+        FileSystemOptions first = new FileSystemOptions();
+        builder.setSocketReceiveBufferSize(first, 1 << 20);
+        FileSystemOptions second = new FileSystemOptions();
+        builder.setSocketReceiveBufferSize(second, 1 << 20);
+        FileSystemOptions other = new FileSystemOptions();
+        builder.setSocketReceiveBufferSize(other, 2 << 20);
+
+        assertEquals(builder.getTransportConfig(first), builder.getTransportConfig(second));
+        assertEquals(builder.getTransportConfig(first).hashCode(), builder.getTransportConfig(second).hashCode());
+        assertNotEquals(builder.getTransportConfig(first), builder.getTransportConfig(other));
+    }
+}
@@ -0,0 +1,117 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import com.hierynomus.smbj.share.InMemoryDiskShare;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.Selectors;
+import org.apache.commons.vfs2.impl.DefaultFileSystemManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SmbTreeCopierTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final InMemoryDiskShare share = new InMemoryDiskShare("share", SimulatedLink.unlimited());
+    private final FileSystemOptions options = new FileSystemOptions();
+    private final byte[] content = new byte[100_000];
+    private DefaultFileSystemManager manager;
+
+    @Before
+    public void setUp() throws FileSystemException {
+        SmbFileSystemConfigBuilder.getInstance().setCopyParallelism(options, 2);
+        manager = InMemorySmbFileProvider.createManager(share);
+        new Random(1).nextBytes(content);
+        share.createFolders("copy");
+    }
+
+    @After
+    public void tearDown() {
+        manager.close();
+    }
+
+    @Test
+    public void copiesALocalTreeAndReportsIt() throws IOException {
+        Path tree = folder.newFolder("tree").toPath();
+        Files.write(tree.resolve("a.txt"), "hello".getBytes());
+        Files.createDirectories(tree.resolve("one"));
+        Files.write(tree.resolve("one").resolve("b.bin"), content);
+        Files.createDirectories(tree.resolve("empty"));
+
+        SmbCopyReport report = resolve("copy").copyTree(manager.resolveFile(tree.toUri()), Selectors.EXCLUDE_SELF);
+
+        assertFalse(report.hasFailures());
+        assertEquals(2, report.getFoldersCreated());
+        assertEquals(2, report.getFilesCopied());
+        assertEquals(5 + content.length, report.getBytesCopied());
+        assertArrayEquals("hello".getBytes(), read("copy/a.txt"));
+        assertArrayEquals(content, read("copy/one/b.bin"));
+        assertTrue(share.folderExists("copy\\empty"));
+    }
+
+    @Test
+    public void copiesWithinTheShareOnTheServer() throws IOException {
+        share.createFile("tree\\a.bin", content);
+        share.createFile("tree\\one\\b.bin", content);
+
+        SmbCopyReport report = resolve("copy").copyTree(resolve("tree"), Selectors.EXCLUDE_SELF);
+
+        assertFalse(report.hasFailures());
+        assertEquals(1, report.getFoldersCreated());
+        assertEquals(2L * content.length, report.getBytesCopied());
+        assertEquals(0, share.getBytesWritten());
+        assertArrayEquals(content, read("copy/a.bin"));
+        assertArrayEquals(content, read("copy/one/b.bin"));
+    }
+
+    @Test
+    public void replacesADestinationOfAnotherType() throws IOException {
+        share.createFile("tree\\one\\b.bin", content);
+        share.createFile("copy\\one", new byte[10]);
+
+        SmbCopyReport report = resolve("copy").copyTree(resolve("tree"), Selectors.EXCLUDE_SELF);
+
+        assertFalse(report.hasFailures());
+        assertTrue(share.folderExists("copy\\one"));
+        assertArrayEquals(content, read("copy/one/b.bin"));
+    }
+
+    @Test
+    public void keepsCopyingPastAFailedFile() throws IOException {
+        share.createFile("tree\\a.bin", content);
+        share.createFile("tree\\b.bin", content);
+        share.createFile("tree\\c.bin", content);
+        share.setOpenFault("copy\\b.bin"::equals);
+
+        SmbCopyReport report = resolve("copy").copyTree(resolve("tree"), Selectors.EXCLUDE_SELF);
+
+        assertEquals(1, report.getFailures().size());
+        assertEquals("/tree/b.bin", report.getFailures().keySet().iterator().next().getPath());
+        assertEquals(2, report.getFilesCopied());
+        assertEquals(2L * content.length, report.getBytesCopied());
+        share.setOpenFault(path -> false);
+        assertArrayEquals(content, read("copy/c.bin"));
+    }
+
+    private SmbFileObject resolve(String path) throws FileSystemException {
+        return (SmbFileObject) manager.resolveFile("smb://localhost/share/" + path, options);
+    }
+
+    private byte[] read(String path) throws IOException {
+        return resolve(path).getContent().getByteArray();
+    }
+}
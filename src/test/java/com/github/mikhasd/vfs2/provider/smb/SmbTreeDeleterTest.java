@@ -0,0 +1,64 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import com.hierynomus.smbj.share.InMemoryDiskShare;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.impl.DefaultFileSystemManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SmbTreeDeleterTest {
+
+    private final InMemoryDiskShare share = new InMemoryDiskShare("share", SimulatedLink.unlimited());
+    private DefaultFileSystemManager manager;
+
+    @Before
+    public void setUp() throws FileSystemException {
+        manager = InMemorySmbFileProvider.createManager(share);
+        share.createFile("tree\\a.txt", new byte[1]);
+        share.createFile("tree\\one\\b.txt", new byte[1]);
+        share.createFile("tree\\one\\two\\c.txt", new byte[1]);
+        share.createFile("tree\\other\\d.txt", new byte[1]);
+        share.createFolders("tree\\empty");
+    }
+
+    @After
+    public void tearDown() {
+        manager.close();
+    }
+
+    @Test
+    public void deletesEveryFileAndFolderOfTheTree() throws FileSystemException {
+        SmbDeleteReport report = resolve("tree").deleteTree();
+
+        assertFalse(report.hasFailures());
+        assertEquals(4, report.getFilesDeleted());
+        assertEquals(5, report.getFoldersDeleted());
+        assertFalse(share.folderExists("tree"));
+    }
+
+    @Test
+    public void reportsFailuresAndKeepsTheFoldersAboveThem() throws FileSystemException {
+        share.setOpenFault("tree\\one\\two\\c.txt"::equals);
+
+        SmbDeleteReport report = resolve("tree").deleteTree();
+
+        assertEquals(Collections.singleton("tree/one/two/c.txt"), report.getFailures().keySet());
+        assertEquals(3, report.getFilesDeleted());
+        assertEquals(2, report.getFoldersDeleted());
+        assertTrue(share.fileExists("tree\\one\\two\\c.txt"));
+        assertFalse(share.fileExists("tree\\one\\b.txt"));
+        assertFalse(share.folderExists("tree\\other"));
+    }
+
+    private SmbFileObject resolve(String path) throws FileSystemException {
+        return (SmbFileObject) manager.resolveFile("smb://localhost/share/" + path, new FileSystemOptions());
+    }
+}
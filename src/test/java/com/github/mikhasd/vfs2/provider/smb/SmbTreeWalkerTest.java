@@ -0,0 +1,102 @@
+package com.github.mikhasd.vfs2.provider.smb;
+
+import com.hierynomus.smbj.share.InMemoryDiskShare;
+import org.apache.commons.vfs2.FileDepthSelector;
+import org.apache.commons.vfs2.FileName;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSelectInfo;
+import org.apache.commons.vfs2.FileSelector;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.FileSystemOptions;
+import org.apache.commons.vfs2.FileType;
+import org.apache.commons.vfs2.Selectors;
+import org.apache.commons.vfs2.impl.DefaultFileSystemManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SmbTreeWalkerTest {
+
+    private static final FileSelector FILES_OUTSIDE_FOLDER_2 = new FileSelector() {
+        @Override
+        public boolean includeFile(FileSelectInfo fileInfo) throws Exception {
+            return fileInfo.getFile().getType() == FileType.FILE;
+        }
+
+        @Override
+        public boolean traverseDescendents(FileSelectInfo fileInfo) {
+            return !fileInfo.getFile().getName().getBaseName().equals("folder2");
+        }
+    };
+
+    private final InMemoryDiskShare share = new InMemoryDiskShare("share", SimulatedLink.unlimited());
+    private DefaultFileSystemManager manager;
+
+    @Before
+    public void setUp() throws FileSystemException {
+        manager = InMemorySmbFileProvider.createManager(share);
+        for (int i = 0; i < 5; i++) {
+            for (int j = 0; j < 4; j++) {
+                share.createFile("tree\\folder" + i + "\\sub" + j + "\\file.txt", new byte[1]);
+            }
+            share.createFile("tree\\folder" + i + "\\file.txt", new byte[1]);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        manager.close();
+    }
+
+    @Test
+    public void selectsTheSameFilesInTheSameOrderAsTheSequentialFindFiles() throws FileSystemException {
+        FileObject sequentialTree = resolveTree(1);
+        FileObject parallelTree = resolveTree(4);
+        FileSelector[] selectors = {Selectors.SELECT_ALL, Selectors.EXCLUDE_SELF, new FileDepthSelector(1, 2), FILES_OUTSIDE_FOLDER_2};
+        for (FileSelector selector : selectors) {
+            for (boolean depthwise : new boolean[]{false, true}) {
+                List<FileObject> sequential = new ArrayList<>();
+                sequentialTree.findFiles(selector, depthwise, sequential);
+                List<FileObject> parallel = new ArrayList<>();
+                parallelTree.findFiles(selector, depthwise, parallel);
+
+                assertFalse(sequential.isEmpty());
+                assertEquals(namesOf(sequential), namesOf(parallel));
+            }
+        }
+    }
+
+    @Test
+    public void shutsItsPoolDownWithTheFileSystem() throws FileSystemException {
+        FileObject tree = resolveTree(4);
+        tree.findFiles(Selectors.SELECT_ALL, false, new ArrayList<>());
+        SmbFileSystem fileSystem = (SmbFileSystem) tree.getFileSystem();
+        ForkJoinPool pool = fileSystem.getTraversalPool();
+
+        assertEquals(4, pool.getParallelism());
+        manager.closeFileSystem(fileSystem);
+        assertTrue(pool.isShutdown());
+    }
+
+    private FileObject resolveTree(int parallelism) throws FileSystemException {
+        FileSystemOptions options = new FileSystemOptions();
+        SmbFileSystemConfigBuilder.getInstance().setTraversalParallelism(options, parallelism);
+        return manager.resolveFile("smb://localhost/share/tree", options);
+    }
+
+    private static List<FileName> namesOf(List<FileObject> files) {
+        List<FileName> names = new ArrayList<>();
+        for (FileObject file : files) {
+            names.add(file.getName());
+        }
+        return names;
+    }
+}
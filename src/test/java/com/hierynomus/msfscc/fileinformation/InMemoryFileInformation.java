@@ -0,0 +1,50 @@
+package com.hierynomus.msfscc.fileinformation;
+
+import com.hierynomus.msdtyp.FileTime;
+import com.hierynomus.msfscc.FileAttributes;
+
+/**
+ * Builds the information classes smbj only instantiates while decoding server responses.
+ */
+public final class InMemoryFileInformation {
+
+    private InMemoryFileInformation() {
+    }
+
+    public static FileAllInformation all(String name, boolean directory, long size, long lastModified) {
+        return all(name, directory, false, size, lastModified);
+    }
+
+    public static FileAllInformation all(String name, boolean directory, boolean sparse, long size, long lastModified) {
+        FileTime time = FileTime.ofEpochMillis(lastModified);
+        FileBasicInformation basic = new FileBasicInformation(time, time, time, time, attributes(directory, sparse));
+        return new FileAllInformation(basic, standard(directory, size), null, null, null, null, null, null, name);
+    }
+
+    public static FileStandardInformation standard(boolean directory, long size) {
+        return new FileStandardInformation(size, size, 1, false, directory);
+    }
+
+    public static FileIdBothDirectoryInformation directoryEntry(long index, String name, boolean directory, long size, long lastModified) {
+        return directoryEntry(index, name, directory, false, size, lastModified);
+    }
+
+    public static FileIdBothDirectoryInformation directoryEntry(long index, String name, boolean directory, boolean sparse, long size, long lastModified) {
+        return directoryEntry(0, index, name, directory, sparse, size, lastModified);
+    }
+
+    /**
+     * @param nextOffset offset of the next entry in the QUERY_DIRECTORY response, 0 for the last entry of a response.
+     */
+    public static FileIdBothDirectoryInformation directoryEntry(long nextOffset, long index, String name, boolean directory, boolean sparse, long size, long lastModified) {
+        FileTime time = FileTime.ofEpochMillis(lastModified);
+        return new FileIdBothDirectoryInformation(nextOffset, index, name, time, time, time, time, size, size, attributes(directory, sparse), 0, "", new byte[8]);
+    }
+
+    private static long attributes(boolean directory, boolean sparse) {
+        if (directory) {
+            return FileAttributes.FILE_ATTRIBUTE_DIRECTORY.getValue();
+        }
+        return sparse ? FileAttributes.FILE_ATTRIBUTE_SPARSE_FILE.getValue() : FileAttributes.FILE_ATTRIBUTE_NORMAL.getValue();
+    }
+}
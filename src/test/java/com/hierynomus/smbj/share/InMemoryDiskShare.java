@@ -0,0 +1,877 @@
+package com.hierynomus.smbj.share;
+
+import com.github.mikhasd.vfs2.provider.smb.SimulatedLink;
+import com.hierynomus.msdtyp.AccessMask;
+import com.hierynomus.mserref.NtStatus;
+import com.hierynomus.msfscc.FileAttributes;
+import com.hierynomus.msfscc.fileinformation.FileAllInformation;
+import com.hierynomus.msfscc.fileinformation.FileIdBothDirectoryInformation;
+import com.hierynomus.msfscc.fileinformation.FileQueryableInformation;
+import com.hierynomus.msfscc.fileinformation.FileStandardInformation;
+import com.hierynomus.msfscc.fileinformation.InMemoryFileInformation;
+import com.hierynomus.mssmb2.SMB2CreateDisposition;
+import com.hierynomus.mssmb2.SMB2CreateOptions;
+import com.hierynomus.mssmb2.SMB2Dialect;
+import com.hierynomus.mssmb2.SMB2FileId;
+import com.hierynomus.mssmb2.SMB2MessageCommandCode;
+import com.hierynomus.mssmb2.SMB2ShareAccess;
+import com.hierynomus.mssmb2.SMBApiException;
+import com.hierynomus.smbj.SmbConfig;
+import com.hierynomus.smbj.common.SmbPath;
+import com.hierynomus.smbj.connection.ConnectionContext;
+import com.hierynomus.smbj.connection.NegotiatedProtocol;
+import com.hierynomus.smbj.io.ByteChunkProvider;
+import com.hierynomus.smbj.session.Session;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongPredicate;
+import java.util.function.Predicate;
+
+/**
+ * A {@link DiskShare} kept in memory, standing in for a server when testing or measuring the provider.
+ * <p>
+ * Every operation costs the round trips a real server would need, paid on a {@link SimulatedLink}: a CREATE and a
+ * CLOSE per handle, a READ or WRITE per chunk and a QUERY_DIRECTORY per page of entries. It lives in smbj's package
+ * because {@link File} and {@link Directory} can only be constructed from there.
+ */
+public class InMemoryDiskShare extends DiskShare {
+
+    public static final int DEFAULT_MAX_IO_SIZE = 1024 * 1024;
+    public static final int DEFAULT_ENTRIES_PER_PAGE = 512;
+    /** Granularity of the allocated ranges reported for sparse files. */
+    public static final int ALLOCATION_UNIT = 64 * 1024;
+    private static final int FSCTL_SET_SPARSE = 0x000900C4;
+    private static final int FSCTL_SET_ZERO_DATA = 0x000980C8;
+    private static final int FSCTL_QUERY_ALLOCATED_RANGES = 0x000940CF;
+    private static final int FSCTL_SRV_REQUEST_RESUME_KEY = 0x00140078;
+    private static final int FSCTL_SRV_COPYCHUNK_WRITE = 0x001480F2;
+    /** Open source files by resume key, shared by every share of the simulated server. */
+    private static final Map<String, Node> RESUME_KEYS = new ConcurrentHashMap<>();
+
+    private final SimulatedLink link;
+    private volatile boolean serverSideCopySupported = true;
+    private volatile boolean connected = true;
+    private volatile Predicate<String> openFault = path -> false;
+    private volatile LongPredicate readFault = offset -> false;
+    private volatile LongPredicate writeFault = offset -> false;
+    private volatile int writeLimit = Integer.MAX_VALUE;
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicInteger openFiles = new AtomicInteger();
+    private final AtomicInteger openDirectories = new AtomicInteger();
+    private final AtomicInteger directoryQueries = new AtomicInteger();
+    private final int entriesPerPage;
+    private final AtomicLong nextIndex = new AtomicLong();
+    private final Node root = new Node("", true);
+    private final ExecutorService asyncWrites = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "in-memory-share");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public InMemoryDiskShare(String shareName, SimulatedLink link) {
+        this(shareName, link, DEFAULT_MAX_IO_SIZE, DEFAULT_ENTRIES_PER_PAGE);
+    }
+
+    public InMemoryDiskShare(String shareName, SimulatedLink link, int maxIoSize, int entriesPerPage) {
+        super(new SmbPath("localhost", shareName), treeConnect(shareName, maxIoSize), null);
+        this.link = link;
+        this.entriesPerPage = entriesPerPage;
+    }
+
+    private static TreeConnect treeConnect(String shareName, int maxIoSize) {
+        final SmbConfig config = SmbConfig.builder().withBufferSize(maxIoSize).build();
+        final NegotiatedProtocol protocol = new NegotiatedProtocol(SMB2Dialect.SMB_3_1_1, maxIoSize, maxIoSize, maxIoSize, true);
+        final Session session = new Session(null, config, null, null, null, null, null);
+        final ConnectionContext context;
+        try {
+            Constructor<ConnectionContext> constructor = ConnectionContext.class.getDeclaredConstructor(UUID.class, String.class, int.class, SmbConfig.class);
+            constructor.setAccessible(true);
+            context = constructor.newInstance(UUID.randomUUID(), "localhost", 445, config);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+        return new TreeConnect(0, new SmbPath("localhost", shareName), session, Collections.emptySet(), config, context, null, Collections.emptySet(), Collections.emptySet()) {
+            @Override
+            public NegotiatedProtocol getNegotiatedProtocol() {
+                return protocol;
+            }
+        };
+    }
+
+    /**
+     * Creates a folder and its missing parents without paying any latency, for setting up a test or benchmark.
+     */
+    public void createFolders(String path) {
+        Node folder = root;
+        for (String name : split(path)) {
+            folder = folder.children.computeIfAbsent(key(name), k -> new Node(name, true));
+        }
+    }
+
+    /**
+     * Creates or replaces a file without paying any latency, for setting up a test or benchmark.
+     */
+    public void createFile(String path, byte[] content) {
+        List<String> names = split(path);
+        String name = names.get(names.size() - 1);
+        createFolders(String.join("\\", names.subList(0, names.size() - 1)));
+        Node file = new Node(name, false);
+        file.content = content.clone();
+        file.length = content.length;
+        lookup(parentOf(path)).children.put(key(name), file);
+    }
+
+    /**
+     * Whether SRV_COPYCHUNK requests are served, like most servers, or refused like the server-side copy of some NAS.
+     */
+    public void setServerSideCopySupported(boolean supported) {
+        this.serverSideCopySupported = supported;
+    }
+
+    /**
+     * Makes CREATE requests for a path matching {@code fault} fail with STATUS_ACCESS_DENIED.
+     */
+    public void setOpenFault(Predicate<String> fault) {
+        this.openFault = fault;
+    }
+
+    /**
+     * Makes READ requests at a file offset matching {@code fault} fail with STATUS_UNEXPECTED_IO_ERROR.
+     */
+    public void setReadFault(LongPredicate fault) {
+        this.readFault = fault;
+    }
+
+    /**
+     * Makes WRITE requests at a file offset matching {@code fault} fail with STATUS_UNEXPECTED_IO_ERROR.
+     */
+    public void setWriteFault(LongPredicate fault) {
+        this.writeFault = fault;
+    }
+
+    /**
+     * Makes WRITE requests store and acknowledge at most {@code limit} bytes, like a server answering with a short count.
+     */
+    public void setWriteLimit(int limit) {
+        this.writeLimit = limit;
+    }
+
+    /**
+     * @return the number of bytes returned by READ requests so far.
+     */
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    /**
+     * @return the number of bytes sent with WRITE requests so far, server-side copies excluded.
+     */
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    /**
+     * @return the number of QUERY_DIRECTORY requests so far.
+     */
+    public int getDirectoryQueries() {
+        return directoryQueries.get();
+    }
+
+    /**
+     * @return the number of file handles opened and not closed yet.
+     */
+    public int getOpenFiles() {
+        return openFiles.get();
+    }
+
+    /**
+     * @return the number of directory handles opened and not closed yet.
+     */
+    public int getOpenDirectories() {
+        return openDirectories.get();
+    }
+
+    /**
+     * Simulates a dropped connection, handles opened before keep working but report their share as disconnected.
+     */
+    public void setConnected(boolean connected) {
+        this.connected = connected;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public void close() {
+        // nothing to disconnect, the share lives as long as the test or benchmark
+    }
+
+    @Override
+    public DiskEntry open(String path,
+                          Set<AccessMask> accessMask,
+                          Set<FileAttributes> attributes,
+                          Set<SMB2ShareAccess> shareAccesses,
+                          SMB2CreateDisposition createDisposition,
+                          Set<SMB2CreateOptions> createOptions) {
+        link.roundTrip();
+        if (openFault.test(path)) {
+            throw failure(NtStatus.STATUS_ACCESS_DENIED, SMB2MessageCommandCode.SMB2_CREATE, path);
+        }
+        final boolean wantsDirectory = Objects.nonNull(createOptions) && createOptions.contains(SMB2CreateOptions.FILE_DIRECTORY_FILE);
+        final boolean wantsFile = Objects.nonNull(createOptions) && createOptions.contains(SMB2CreateOptions.FILE_NON_DIRECTORY_FILE);
+        Node node = find(path);
+        if (Objects.isNull(node)) {
+            if (createDisposition == SMB2CreateDisposition.FILE_OPEN || createDisposition == SMB2CreateDisposition.FILE_OVERWRITE) {
+                throw failure(NtStatus.STATUS_OBJECT_NAME_NOT_FOUND, SMB2MessageCommandCode.SMB2_CREATE, path);
+            }
+            node = create(path, wantsDirectory);
+        } else {
+            if (createDisposition == SMB2CreateDisposition.FILE_CREATE) {
+                throw failure(NtStatus.STATUS_OBJECT_NAME_COLLISION, SMB2MessageCommandCode.SMB2_CREATE, path);
+            }
+            if (wantsDirectory && !node.directory) {
+                throw failure(NtStatus.STATUS_NOT_A_DIRECTORY, SMB2MessageCommandCode.SMB2_CREATE, path);
+            }
+            if (wantsFile && node.directory) {
+                throw failure(NtStatus.STATUS_FILE_IS_A_DIRECTORY, SMB2MessageCommandCode.SMB2_CREATE, path);
+            }
+            if (!node.directory && (createDisposition == SMB2CreateDisposition.FILE_OVERWRITE
+                    || createDisposition == SMB2CreateDisposition.FILE_OVERWRITE_IF
+                    || createDisposition == SMB2CreateDisposition.FILE_SUPERSEDE)) {
+                node.setLength(0);
+            }
+        }
+        SmbPath smbPath = new SmbPath(getSmbPath().getHostname(), getSmbPath().getShareName(), path);
+        SMB2FileId fileId = new SMB2FileId();
+        final boolean deleteOnClose = Objects.nonNull(createOptions) && createOptions.contains(SMB2CreateOptions.FILE_DELETE_ON_CLOSE);
+        if (node.directory) {
+            if (deleteOnClose && !node.children.isEmpty()) {
+                throw failure(NtStatus.STATUS_DIRECTORY_NOT_EMPTY, SMB2MessageCommandCode.SMB2_CREATE, path);
+            }
+            InMemoryDirectory directory = new InMemoryDirectory(fileId, smbPath, node);
+            directory.deleteOnClose = deleteOnClose;
+            openDirectories.incrementAndGet();
+            return directory;
+        }
+        InMemoryFile file = new InMemoryFile(fileId, smbPath, node);
+        file.deleteOnClose = deleteOnClose;
+        openFiles.incrementAndGet();
+        return file;
+    }
+
+    @Override
+    public boolean fileExists(String path) {
+        return exists(path, false);
+    }
+
+    @Override
+    public boolean folderExists(String path) {
+        return exists(path, true);
+    }
+
+    private boolean exists(String path, boolean directory) {
+        link.roundTrip();
+        Node node = find(path);
+        if (Objects.nonNull(node)) {
+            link.roundTrip();
+        }
+        return Objects.nonNull(node) && node.directory == directory;
+    }
+
+    @Override
+    public List<FileIdBothDirectoryInformation> list(String path) {
+        List<FileIdBothDirectoryInformation> entries = new ArrayList<>();
+        try (Directory directory = openDirectory(path, null, null, null, SMB2CreateDisposition.FILE_OPEN, null)) {
+            for (FileIdBothDirectoryInformation entry : directory) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    @Override
+    public void mkdir(String path) {
+        openDirectory(path, null, null, null, SMB2CreateDisposition.FILE_CREATE, Collections.singleton(SMB2CreateOptions.FILE_DIRECTORY_FILE)).close();
+    }
+
+    @Override
+    public FileAllInformation getFileInformation(String path) {
+        return getFileInformation(path, FileAllInformation.class);
+    }
+
+    @Override
+    public <F extends FileQueryableInformation> F getFileInformation(String path, Class<F> informationClass) {
+        try (DiskEntry entry = open(path, null, null, null, SMB2CreateDisposition.FILE_OPEN, null)) {
+            return entry.getFileInformation(informationClass);
+        }
+    }
+
+    @Override
+    public void rm(String path) {
+        link.roundTrip();
+        Node node = find(path);
+        if (Objects.isNull(node)) {
+            throw failure(NtStatus.STATUS_OBJECT_NAME_NOT_FOUND, SMB2MessageCommandCode.SMB2_CREATE, path);
+        }
+        if (node.directory) {
+            throw failure(NtStatus.STATUS_FILE_IS_A_DIRECTORY, SMB2MessageCommandCode.SMB2_CREATE, path);
+        }
+        remove(path);
+        link.roundTrip();
+    }
+
+    @Override
+    public void rmdir(String path, boolean recursive) {
+        Node node = find(path);
+        if (Objects.nonNull(node) && recursive) {
+            for (FileIdBothDirectoryInformation child : list(path)) {
+                if (child.getFileName().equals(".") || child.getFileName().equals("..")) {
+                    continue;
+                }
+                String childPath = path.isEmpty() ? child.getFileName() : path + "\\" + child.getFileName();
+                if ((child.getFileAttributes() & FileAttributes.FILE_ATTRIBUTE_DIRECTORY.getValue()) != 0) {
+                    rmdir(childPath, true);
+                } else {
+                    rm(childPath);
+                }
+            }
+        }
+        link.roundTrip();
+        if (Objects.isNull(node) || !node.directory) {
+            throw failure(NtStatus.STATUS_OBJECT_NAME_NOT_FOUND, SMB2MessageCommandCode.SMB2_CREATE, path);
+        }
+        if (!node.children.isEmpty()) {
+            throw failure(NtStatus.STATUS_DIRECTORY_NOT_EMPTY, SMB2MessageCommandCode.SMB2_CREATE, path);
+        }
+        remove(path);
+        link.roundTrip();
+    }
+
+    private Node find(String path) {
+        Node node = root;
+        for (String name : split(path)) {
+            node = node.children.get(key(name));
+            if (Objects.isNull(node)) {
+                return null;
+            }
+        }
+        return node;
+    }
+
+    private Node lookup(String path) {
+        Node node = find(path);
+        if (Objects.isNull(node) || !node.directory) {
+            throw failure(NtStatus.STATUS_OBJECT_PATH_NOT_FOUND, SMB2MessageCommandCode.SMB2_CREATE, path);
+        }
+        return node;
+    }
+
+    private Node create(String path, boolean directory) {
+        List<String> names = split(path);
+        String name = names.get(names.size() - 1);
+        Node parent = lookup(parentOf(path));
+        return parent.children.computeIfAbsent(key(name), k -> new Node(name, directory));
+    }
+
+    private void remove(String path) {
+        List<String> names = split(path);
+        lookup(parentOf(path)).children.remove(key(names.get(names.size() - 1)));
+    }
+
+    private static String parentOf(String path) {
+        List<String> names = split(path);
+        return String.join("\\", names.subList(0, Math.max(0, names.size() - 1)));
+    }
+
+    private static List<String> split(String path) {
+        List<String> names = new ArrayList<>();
+        for (String name : path.split("[\\\\/]")) {
+            if (!name.isEmpty()) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+
+    private static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    private static SMBApiException failure(NtStatus status, SMB2MessageCommandCode command, String path) {
+        return new SMBApiException(status.getValue(), command, status + " " + path, null);
+    }
+
+    private final class Node {
+        private final String name;
+        private final boolean directory;
+        private final long index = nextIndex.incrementAndGet();
+        private final Map<String, Node> children = new ConcurrentSkipListMap<>();
+        private byte[] content = new byte[0];
+        private long length;
+        private volatile boolean sparse;
+        private volatile long lastModified = System.currentTimeMillis();
+
+        private Node(String name, boolean directory) {
+            this.name = name;
+            this.directory = directory;
+        }
+
+        private synchronized int read(byte[] buffer, long offset, int bufferOffset, int len) {
+            if (offset >= length) {
+                return -1;
+            }
+            int count = (int) Math.min(len, length - offset);
+            System.arraycopy(content, (int) offset, buffer, bufferOffset, count);
+            return count;
+        }
+
+        private synchronized void write(byte[] buffer, long offset, int bufferOffset, int len) {
+            ensureCapacity(offset + len);
+            System.arraycopy(buffer, bufferOffset, content, (int) offset, len);
+            length = Math.max(length, offset + len);
+            lastModified = System.currentTimeMillis();
+        }
+
+        private synchronized void setLength(long newLength) {
+            ensureCapacity(newLength);
+            if (newLength > length) {
+                Arrays.fill(content, (int) length, (int) newLength, (byte) 0);
+            }
+            length = newLength;
+            lastModified = System.currentTimeMillis();
+        }
+
+        private void ensureCapacity(long capacity) {
+            if (capacity > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException("In-memory files are limited to 2 GiB");
+            }
+            if (capacity > content.length) {
+                content = Arrays.copyOf(content, (int) Math.max(capacity, Math.min(Integer.MAX_VALUE - 8L, content.length * 2L)));
+            }
+        }
+
+        private synchronized long length() {
+            return length;
+        }
+
+        private synchronized void zero(long from, long to) {
+            long end = Math.min(to, length);
+            if (from < end) {
+                Arrays.fill(content, (int) from, (int) end, (byte) 0);
+                lastModified = System.currentTimeMillis();
+            }
+        }
+
+        /**
+         * Allocation units of a sparse file holding anything but zeros count as allocated, all of a regular file is.
+         */
+        private synchronized List<long[]> allocatedRanges(long offset, long len) {
+            List<long[]> ranges = new ArrayList<>();
+            long end = Math.min(length, offset + len);
+            if (!sparse) {
+                if (offset < end) {
+                    ranges.add(new long[]{offset, end - offset});
+                }
+                return ranges;
+            }
+            for (long unit = offset - offset % ALLOCATION_UNIT; unit < end; unit += ALLOCATION_UNIT) {
+                long unitEnd = Math.min(end, unit + ALLOCATION_UNIT);
+                boolean allocated = false;
+                for (long i = unit; i < Math.min(length, unit + ALLOCATION_UNIT) && !allocated; i++) {
+                    allocated = content[(int) i] != 0;
+                }
+                if (allocated) {
+                    long start = Math.max(unit, offset);
+                    long[] last = ranges.isEmpty() ? null : ranges.get(ranges.size() - 1);
+                    if (Objects.nonNull(last) && last[0] + last[1] == start) {
+                        last[1] = unitEnd - last[0];
+                    } else {
+                        ranges.add(new long[]{start, unitEnd - start});
+                    }
+                }
+            }
+            return ranges;
+        }
+
+        private FileAllInformation allInformation() {
+            return InMemoryFileInformation.all(name, directory, sparse, length(), lastModified);
+        }
+
+        private FileIdBothDirectoryInformation directoryEntry(String entryName, long nextOffset) {
+            return InMemoryFileInformation.directoryEntry(nextOffset, index, entryName, directory, sparse, length(), lastModified);
+        }
+    }
+
+    private final class InMemoryFile extends File {
+        private final Node node;
+        private boolean deleteOnClose;
+        private String resumeKey;
+        private volatile boolean closed;
+
+        private InMemoryFile(SMB2FileId fileId, SmbPath path, Node node) {
+            super(fileId, InMemoryDiskShare.this, path);
+            this.node = node;
+        }
+
+        @Override
+        public int read(byte[] buffer, long fileOffset) {
+            return read(buffer, fileOffset, 0, buffer.length);
+        }
+
+        @Override
+        public int read(byte[] buffer, long fileOffset, int offset, int length) {
+            if (readFault.test(fileOffset)) {
+                link.roundTrip();
+                throw failure(NtStatus.STATUS_UNEXPECTED_IO_ERROR, SMB2MessageCommandCode.SMB2_READ, getFileName());
+            }
+            int count = node.read(buffer, fileOffset, offset, length);
+            link.transfer(Math.max(0, count));
+            bytesRead.addAndGet(Math.max(0, count));
+            return count;
+        }
+
+        @Override
+        public int write(byte[] buffer, long fileOffset) {
+            return write(buffer, fileOffset, 0, buffer.length);
+        }
+
+        @Override
+        public int write(byte[] buffer, long fileOffset, int offset, int length) {
+            link.transfer(length);
+            if (closed) {
+                throw failure(NtStatus.STATUS_FILE_CLOSED, SMB2MessageCommandCode.SMB2_WRITE, getFileName());
+            }
+            if (writeFault.test(fileOffset)) {
+                throw failure(NtStatus.STATUS_UNEXPECTED_IO_ERROR, SMB2MessageCommandCode.SMB2_WRITE, getFileName());
+            }
+            int count = Math.min(length, writeLimit);
+            node.write(buffer, fileOffset, offset, count);
+            bytesWritten.addAndGet(count);
+            return count;
+        }
+
+        @Override
+        public Future<Integer> writeAsync(byte[] buffer, long fileOffset, int offset, int length) {
+            return CompletableFuture.supplyAsync(() -> write(buffer, fileOffset, offset, length), asyncWrites);
+        }
+
+        @Override
+        public int write(ByteChunkProvider provider) {
+            long fileOffset = provider.getOffset();
+            ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            while (provider.isAvailable()) {
+                provider.writeChunk(payload);
+            }
+            byte[] buffer = payload.toByteArray();
+            return write(buffer, fileOffset, 0, buffer.length);
+        }
+
+        @Override
+        public Future<Integer> writeAsync(ByteChunkProvider provider) {
+            // the payload is taken when the request is sent, like smbj encodes it
+            long fileOffset = provider.getOffset();
+            ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            while (provider.isAvailable() && payload.size() < getDiskShare().getTreeConnect().getConfig().getWriteBufferSize()) {
+                provider.writeChunk(payload);
+            }
+            byte[] buffer = payload.toByteArray();
+            return writeAsync(buffer, fileOffset, 0, buffer.length);
+        }
+
+        @Override
+        public void setLength(long endOfFile) {
+            link.roundTrip();
+            node.setLength(endOfFile);
+        }
+
+        @Override
+        public byte[] ioctl(int ctlCode, boolean isFsCtl, byte[] inData, int inOffset, int inLength, int maxOutputResponse) {
+            link.roundTrip();
+            ByteBuffer input = ByteBuffer.wrap(inData, inOffset, inLength).order(ByteOrder.LITTLE_ENDIAN);
+            switch (ctlCode) {
+                case FSCTL_SET_SPARSE:
+                    node.sparse = !input.hasRemaining() || input.get() != 0;
+                    return new byte[0];
+                case FSCTL_SET_ZERO_DATA:
+                    node.zero(input.getLong(), input.getLong());
+                    return new byte[0];
+                case FSCTL_QUERY_ALLOCATED_RANGES:
+                    List<long[]> ranges = node.allocatedRanges(input.getLong(), input.getLong());
+                    if (ranges.size() * 2L * Long.BYTES > maxOutputResponse) {
+                        throw failure(NtStatus.STATUS_BUFFER_OVERFLOW, SMB2MessageCommandCode.SMB2_IOCTL, name.getPath());
+                    }
+                    ByteBuffer output = ByteBuffer.allocate(ranges.size() * 2 * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                    for (long[] range : ranges) {
+                        output.putLong(range[0]).putLong(range[1]);
+                    }
+                    link.transfer(output.capacity());
+                    return output.array();
+                case FSCTL_SRV_REQUEST_RESUME_KEY:
+                    if (!serverSideCopySupported) {
+                        throw failure(NtStatus.STATUS_NOT_SUPPORTED, SMB2MessageCommandCode.SMB2_IOCTL, name.getPath());
+                    }
+                    if (Objects.isNull(resumeKey)) {
+                        resumeKey = UUID.randomUUID().toString().substring(0, 24);
+                        RESUME_KEYS.put(resumeKey, node);
+                    }
+                    return ByteBuffer.allocate(28).order(ByteOrder.LITTLE_ENDIAN).put(resumeKey.getBytes(StandardCharsets.US_ASCII)).putInt(0).array();
+                case FSCTL_SRV_COPYCHUNK_WRITE:
+                    return copyChunks(input);
+                default:
+                    throw failure(NtStatus.STATUS_NOT_SUPPORTED, SMB2MessageCommandCode.SMB2_IOCTL, name.getPath());
+            }
+        }
+
+        private byte[] copyChunks(ByteBuffer input) {
+            byte[] key = new byte[24];
+            input.get(key);
+            Node source = RESUME_KEYS.get(new String(key, StandardCharsets.US_ASCII));
+            if (!serverSideCopySupported || Objects.isNull(source)) {
+                throw failure(NtStatus.STATUS_OBJECT_NAME_NOT_FOUND, SMB2MessageCommandCode.SMB2_IOCTL, name.getPath());
+            }
+            int chunks = input.getInt();
+            input.getInt();
+            byte[] buffer = new byte[DEFAULT_MAX_IO_SIZE];
+            int lastChunk = 0;
+            long total = 0;
+            for (int i = 0; i < chunks; i++) {
+                long sourceOffset = input.getLong();
+                long targetOffset = input.getLong();
+                int length = input.getInt();
+                input.getInt();
+                byte[] chunk = length <= buffer.length ? buffer : new byte[length];
+                int count = Math.max(0, source.read(chunk, sourceOffset, 0, length));
+                node.write(chunk, targetOffset, 0, count);
+                lastChunk = count;
+                total += count;
+            }
+            return ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN).putInt(chunks).putInt(lastChunk).putInt((int) total).array();
+        }
+
+        @Override
+        public void remoteCopyTo(File destination) {
+            remoteCopyTo(0, destination, 0, node.length());
+        }
+
+        @Override
+        public void remoteCopyTo(long offset, File destination, long destinationOffset, long length) {
+            Node target = ((InMemoryFile) destination).node;
+            byte[] chunk = new byte[DEFAULT_MAX_IO_SIZE];
+            long copied = 0;
+            while (copied < length) {
+                link.roundTrip();
+                int count = node.read(chunk, offset + copied, 0, (int) Math.min(chunk.length, length - copied));
+                if (count <= 0) {
+                    break;
+                }
+                target.write(chunk, destinationOffset + copied, 0, count);
+                copied += count;
+            }
+        }
+
+        @Override
+        public FileAllInformation getFileInformation() {
+            return getFileInformation(FileAllInformation.class);
+        }
+
+        @Override
+        public <F extends FileQueryableInformation> F getFileInformation(Class<F> informationClass) {
+            link.roundTrip();
+            return information(node, informationClass);
+        }
+
+        @Override
+        public void rename(String newName, boolean replaceIfExist, long rootDirectory) {
+            move(node, name.getPath(), newName, replaceIfExist);
+        }
+
+        @Override
+        public void deleteOnClose() {
+            deleteOnClose = true;
+        }
+
+        @Override
+        public void flush() {
+            link.roundTrip();
+        }
+
+        @Override
+        public void close() {
+            link.roundTrip();
+            closeNoWait();
+        }
+
+        @Override
+        public void closeNoWait() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            openFiles.decrementAndGet();
+            if (Objects.nonNull(resumeKey)) {
+                RESUME_KEYS.remove(resumeKey);
+            }
+            if (deleteOnClose) {
+                remove(name.getPath());
+            }
+        }
+    }
+
+    private final class InMemoryDirectory extends Directory {
+        private final Node node;
+        private boolean deleteOnClose;
+        private boolean closed;
+
+        private InMemoryDirectory(SMB2FileId fileId, SmbPath path, Node node) {
+            super(fileId, InMemoryDiskShare.this, path);
+            this.node = node;
+        }
+
+        @Override
+        public List<FileIdBothDirectoryInformation> list() {
+            List<FileIdBothDirectoryInformation> entries = new ArrayList<>();
+            iterator().forEachRemaining(entries::add);
+            return entries;
+        }
+
+        @Override
+        public Iterator<FileIdBothDirectoryInformation> iterator() {
+            return new Listing();
+        }
+
+        /**
+         * Pages through "." and ".." and the children the way smbj does: the first page is requested right away and the
+         * next one while the last entry of the current page, which has no next offset, is handed out. The request after
+         * the last page finds no more files.
+         */
+        private final class Listing implements Iterator<FileIdBothDirectoryInformation> {
+            private final List<Node> children = new ArrayList<>(node.children.values());
+            private final int total = children.size() + 2;
+            private int received;
+            private int position;
+
+            private Listing() {
+                queryDirectory();
+            }
+
+            private void queryDirectory() {
+                directoryQueries.incrementAndGet();
+                int count = Math.min(entriesPerPage, total - received);
+                link.transfer(count * 128L);
+                received += count;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return position < received;
+            }
+
+            @Override
+            public FileIdBothDirectoryInformation next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int index = position++;
+                long nextOffset = position == received ? 0 : 128;
+                FileIdBothDirectoryInformation entry;
+                if (index < 2) {
+                    entry = node.directoryEntry(index == 0 ? "." : "..", nextOffset);
+                } else {
+                    Node child = children.get(index - 2);
+                    entry = child.directoryEntry(child.name, nextOffset);
+                }
+                if (position == received) {
+                    queryDirectory();
+                }
+                return entry;
+            }
+        }
+
+        @Override
+        public FileAllInformation getFileInformation() {
+            return getFileInformation(FileAllInformation.class);
+        }
+
+        @Override
+        public <F extends FileQueryableInformation> F getFileInformation(Class<F> informationClass) {
+            link.roundTrip();
+            return information(node, informationClass);
+        }
+
+        @Override
+        public void rename(String newName, boolean replaceIfExist, long rootDirectory) {
+            move(node, name.getPath(), newName, replaceIfExist);
+        }
+
+        @Override
+        public void close() {
+            link.roundTrip();
+            closeNoWait();
+        }
+
+        @Override
+        public void closeNoWait() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            openDirectories.decrementAndGet();
+            if (deleteOnClose) {
+                remove(name.getPath());
+            }
+        }
+    }
+
+    private void move(Node node, String path, String newPath, boolean replaceIfExist) {
+        link.roundTrip();
+        if (Objects.nonNull(find(newPath)) && !replaceIfExist) {
+            throw failure(NtStatus.STATUS_OBJECT_NAME_COLLISION, SMB2MessageCommandCode.SMB2_SET_INFO, newPath);
+        }
+        remove(path);
+        List<String> names = split(newPath);
+        String name = names.get(names.size() - 1);
+        Node moved = new Node(name, node.directory);
+        moved.children.putAll(node.children);
+        synchronized (node) {
+            moved.content = node.content;
+            moved.length = node.length;
+        }
+        lookup(parentOf(newPath)).children.put(key(name), moved);
+    }
+
+    private static <F extends FileQueryableInformation> F information(Node node, Class<F> informationClass) {
+        if (informationClass == FileAllInformation.class) {
+            return informationClass.cast(node.allInformation());
+        }
+        if (informationClass == FileStandardInformation.class) {
+            return informationClass.cast(node.allInformation().getStandardInformation());
+        }
+        throw new UnsupportedOperationException(informationClass.getSimpleName());
+    }
+}